@@ -0,0 +1,28 @@
+package sinfonia;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ Punto de entrada de los benchmarks. Corre los de RecitalBenchmark y
+ CargarDatosBenchmark (o los que se filtren por linea de comandos) con el
+ perfilador de GC, que agrega al reporte la memoria reservada por operacion
+ (gc.alloc.rate.norm) junto al throughput y la latencia promedio.
+ Acepta las mismas opciones que JMH, por ejemplo:
+   java sinfonia.Benchmarks RecitalBenchmark.contratar -p artistas=10000
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options opciones = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opciones).run();
+    }
+}
@@ -0,0 +1,77 @@
+package sinfonia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Benchmark de la carga completa desde los archivos JSON (CargarDatos),
+ sobre catalogos sinteticos escritos en un directorio temporal.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CargarDatosBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int artistas;
+
+    @Param({ "100", "1000" })
+    public int canciones;
+
+    @Param({ "4", "8" })
+    public int rolesPorCancion;
+
+    @Param({ "0.001", "0.01" })
+    public double fraccionBase;
+
+    private Path directorio;
+    private Path[] rutas;
+    private PrintStream salidaOriginal;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        this.directorio = Files.createTempDirectory("sinfonia-bench");
+        this.rutas = new GeneradorCatalogo(this.artistas, this.canciones, 42L)
+                .conRolesPorCancion(this.rolesPorCancion, this.rolesPorCancion)
+                .conFraccionBase(this.fraccionBase)
+            .escribirJson(this.directorio);
+        this.salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void limpiar() throws IOException {
+        System.setOut(this.salidaOriginal);
+        try (Stream<Path> archivos = Files.walk(this.directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(ruta -> ruta.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Recital cargarRecitalDesdeArchivos() throws IOException {
+        return CargarDatos.cargarRecitalDesdeArchivos(this.rutas[0].toString(), this.rutas[1].toString(), this.rutas[2].toString());
+    }
+}
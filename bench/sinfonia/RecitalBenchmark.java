@@ -0,0 +1,176 @@
+package sinfonia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ Benchmarks de las consultas y las contrataciones de Recital sobre
+ catalogos sinteticos de distintos tamanios.
+ Las consultas usan un recital armado una sola vez; las operaciones que
+ modifican el recital arman uno nuevo antes de cada invocacion (fuera de la
+ medicion). La salida por consola se descarta mientras corren.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecitalBenchmark {
+
+    /*
+     Tamanio del catalogo. Se puede cambiar desde la linea de comandos con -p.
+     */
+    @State(Scope.Benchmark)
+    public static class Catalogo {
+        @Param({ "1000", "10000" })
+        public int artistas;
+
+        @Param({ "100", "1000" })
+        public int canciones;
+
+        @Param({ "4", "8" })
+        public int rolesPorCancion;
+
+        @Param({ "0.001", "0.01" })
+        public double fraccionBase;
+
+        GeneradorCatalogo catalogo;
+        private PrintStream salidaOriginal;
+
+        @Setup(Level.Trial)
+        public void preparar() {
+            this.catalogo = new GeneradorCatalogo(this.artistas, this.canciones, 42L)
+                .conRolesPorCancion(this.rolesPorCancion, this.rolesPorCancion)
+                .conFraccionBase(this.fraccionBase);
+            this.salidaOriginal = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        @TearDown(Level.Trial)
+        public void restaurar() {
+            System.setOut(this.salidaOriginal);
+        }
+    }
+
+    /*
+     Recital sin contratos, compartido por las consultas.
+     */
+    @State(Scope.Benchmark)
+    public static class RecitalArmado {
+        Recital recital;
+        List<Cancion> setlist;
+        int siguiente;
+
+        @Setup(Level.Trial)
+        public void preparar(Catalogo catalogo) {
+            this.recital = catalogo.catalogo.crearRecital();
+            this.setlist = this.recital.getSetlist();
+        }
+
+        Cancion siguienteCancion() {
+            Cancion cancion = this.setlist.get(this.siguiente);
+            this.siguiente = (this.siguiente + 1) % this.setlist.size();
+            return cancion;
+        }
+    }
+
+    /*
+     Recital nuevo para cada invocacion de las operaciones que lo modifican.
+     */
+    @State(Scope.Thread)
+    public static class RecitalNuevo {
+        Recital recital;
+        Cancion cancion;
+
+        @Setup(Level.Invocation)
+        public void preparar(Catalogo catalogo) {
+            this.recital = catalogo.catalogo.crearRecital();
+            this.cancion = this.recital.getSetlist().get(this.recital.getSetlist().size() / 2);
+        }
+    }
+
+    /*
+     Recital con todo lo posible contratado y el artista con mas contratos,
+     para medir las bajas.
+     */
+    @State(Scope.Thread)
+    public static class RecitalContratado {
+        Recital recital;
+        ArtistaExterno masContratado;
+
+        @Setup(Level.Invocation)
+        public void preparar(Catalogo catalogo) {
+            this.recital = catalogo.catalogo.crearRecital();
+            this.recital.intentarContratarParaRecital();
+            this.masContratado = this.recital.getArtistasCandidatos().get(0);
+            for (ArtistaExterno candidato : this.recital.getArtistasCandidatos()) {
+                if (this.recital.getCancionesAsignadas(candidato) > this.recital.getCancionesAsignadas(this.masContratado)) {
+                    this.masContratado = candidato;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Integer> rolesFaltantesCancion(RecitalArmado estado) {
+        return estado.recital.getRolesFaltantesCancion(estado.siguienteCancion());
+    }
+
+    @Benchmark
+    public Map<String, Integer> rolesFaltantesRecital(RecitalArmado estado) {
+        return estado.recital.getRolesFaltantesRecital();
+    }
+
+    @Benchmark
+    public Recital contratarParaCancion(RecitalNuevo estado) {
+        try {
+            estado.recital.contratarParaCancion(estado.cancion);
+        } catch (RuntimeException e) {
+            // Sin candidatos para algun rol: tambien es un resultado valido para medir
+        }
+        return estado.recital;
+    }
+
+    @Benchmark
+    public Recital contratarParaRecital(RecitalNuevo estado) {
+        estado.recital.contratarParaRecital();
+        return estado.recital;
+    }
+
+    @Benchmark
+    public ResultadoContratacion intentarContratarParaRecital(RecitalNuevo estado) {
+        return estado.recital.intentarContratarParaRecital();
+    }
+
+    @Benchmark
+    public Recital quitarTodosLosContratosDeArtista(RecitalContratado estado) {
+        estado.recital.quitarTodosLosContratosDeArtista(estado.masContratado);
+        return estado.recital;
+    }
+
+    @Benchmark
+    public Recital exportarEstado(RecitalContratado estado) throws IOException {
+        // Solo el armado del JSON, sin el costo del disco
+        estado.recital.exportarEstado(Writer.nullWriter());
+        return estado.recital;
+    }
+}
@@ -1,22 +1,28 @@
 package sinfonia;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Scanner;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 public class App {
     private static Recital recital;
     private static Scanner scanner = new Scanner(System.in);
+    private static TrazaSesion traza; // null si no se graba la sesion
+    private static DiarioOperaciones diario;
+    private static final String PREFIJO_CAMBIOS = "recital-cambios-";
 
 
     public static void main(String[] args) {
@@ -25,12 +31,43 @@ public class App {
         // --- Carga de Datos ---
         try {
             System.out.println("Cargando datos desde los archivos...");
-            recital = CargarDatos.cargarRecitalDesdeArchivos(
-                "artistas.json", 
-                "recital.json", 
-                "artistas-discografica.json"
+            // Si solo esta la version comprimida (ej. "artistas.json.gz"), se usa esa.
+            // Mientras los JSON no cambien, se arranca desde la instantanea binaria del catalogo
+            recital = InstantaneaCatalogo.cargar(
+                Archivos.elegirVersion("artistas.json"), 
+                Archivos.elegirVersion("recital.json"), 
+                Archivos.elegirVersion("artistas-discografica.json"),
+                Paths.get("catalogo.instantanea")
             );
             System.out.println("¡Datos cargados exitosamente!");
+            
+            // Se repiten los contratos y entrenamientos de las sesiones anteriores
+            try {
+                diario = DiarioOperaciones.abrir(recital, Paths.get("diario"));
+                if (diario.getRegistrosRecuperados() > 0) {
+                    System.out.println("Se recuperaron " + diario.getRegistrosRecuperados() + " operaciones de sesiones anteriores.");
+                }
+                if (diario.getRegistrosOmitidos() > 0) {
+                    System.out.println(diario.getRegistrosOmitidos() + " operaciones del diario no se pudieron repetir y se omitieron.");
+                }
+            } catch (IOException e) {
+                // El diario no se toca: puede ser de otro catalogo que se quiera volver a usar
+                System.err.println("¡ERROR! No se pudo abrir el diario de operaciones: " + e.getMessage());
+                System.err.println("Esta sesion no se va a grabar en el diario.");
+            }
+
+            // Las exportaciones de cambios siguen a las que dejo la sesion anterior
+            retomarExportaciones();
+
+            // Los mensajes de contratacion y entrenamiento se imprimen desde un hilo aparte,
+            // y cada cambio del recital se graba en el diario
+            recital.setEventos(diario != null ? new EventosCompuestos(new EventosConsola(), diario) : new EventosConsola());
+
+            // Con "--grabar <archivo>" se graban las operaciones para reproducirlas con ReproductorSesion
+            if (args.length >= 2 && args[0].equals("--grabar")) {
+                traza = TrazaSesion.grabar(Paths.get(args[1]));
+                System.out.println("Grabando la sesion en '" + args[1] + "'.");
+            }
             System.out.println("===============================================================");
             
             // --- Mostrar Menu ---
@@ -45,6 +82,20 @@ public class App {
             System.err.println("¡ERROR INESPERADO!");
             e.printStackTrace();
         } finally {
+            if (diario != null) {
+                try {
+                    diario.close();
+                } catch (IOException e) {
+                    System.err.println("No se pudo cerrar el diario de operaciones: " + e.getMessage());
+                }
+            }
+            if (traza != null) {
+                try {
+                    traza.close();
+                } catch (IOException e) {
+                    System.err.println("No se pudo cerrar la traza de la sesion: " + e.getMessage());
+                }
+            }
             scanner.close(); 
             System.out.println("\nGracias por usar 'Sinfonia'. ¡Hasta luego!");
         }
@@ -66,7 +117,13 @@ public class App {
             System.out.println("7. Eliminar contratacion de Artista");
             System.out.println("8. Listar artistas contratados y costo total");
             System.out.println("9. [PROLOG] Calcular entrenamientos minimos");
-            System.out.println("10. Guardar estado del recital en 'recital-out.json'");
+            System.out.println("10. Guardar estado del recital en 'recital-out.json' (o .json.gz)");
+            System.out.println("11. Contratar artistas para TODO el recital (plan de costo minimo)");
+            System.out.println("12. Mejorar contrataciones existentes (busqueda local con tiempo limite)");
+            System.out.println("13. Contratar artistas para TODO el recital (en paralelo por grupos independientes)");
+            System.out.println("14. Contratar artistas para TODO el recital (canciones concurrentes, todo o nada)");
+            System.out.println("15. Guardar solo las canciones modificadas desde la ultima exportacion");
+            System.out.println("16. Combinar la exportacion completa con sus cambios");
             System.out.println("0. Salir");
             System.out.print("\nSeleccione una opcion: ");
 
@@ -75,6 +132,7 @@ public class App {
             try {
                 switch (opcion) {
                     case "1":
+                        registrar(TrazaSesion.Operacion.LISTAR_ESTADO);
                         recital.listarEstadoCanciones();
                         break;
                     case "2":
@@ -87,6 +145,7 @@ public class App {
                         uiContratarParaCancion();
                         break;
                     case "5":
+                        registrar(TrazaSesion.Operacion.CONTRATAR_RECITAL);
                         recital.contratarParaRecital();
                         break;
                     case "6":
@@ -96,6 +155,7 @@ public class App {
                         uiQuitarArtista();   
                         break;
                     case "8":
+                        registrar(TrazaSesion.Operacion.LISTAR_CONTRATADOS);
                         recital.listarArtistasContratados();
                         break;
                     case "9":
@@ -103,7 +163,28 @@ public class App {
                         break;
                     case "10":
                         uiExportarEstadoRecital();
-                        break;           
+                        break;
+                    case "11":
+                        registrar(TrazaSesion.Operacion.CONTRATAR_RECITAL_OPTIMO);
+                        recital.contratarParaRecitalOptimo();
+                        break;
+                    case "12":
+                        uiMejorarContrataciones();
+                        break;
+                    case "13":
+                        registrar(TrazaSesion.Operacion.CONTRATAR_RECITAL_PARALELO);
+                        recital.contratarParaRecitalEnParalelo();
+                        break;
+                    case "14":
+                        registrar(TrazaSesion.Operacion.CONTRATAR_RECITAL_CONCURRENTE);
+                        recital.contratarParaRecitalConcurrente();
+                        break;
+                    case "15":
+                        uiExportarCambiosRecital();
+                        break;
+                    case "16":
+                        uiCombinarExportaciones();
+                        break;
                     case "0":
                         salir = true;
                         break;
@@ -112,10 +193,14 @@ public class App {
                 }
             } catch (RuntimeException e) {
                 // Capturamos cualquier error
+                recital.getEventos().vaciar();
                 System.err.println("\n¡Ha ocurrido un error durante la operacion!");
                 System.err.println("Mensaje: " + e.getMessage());
             }
             
+            // Esperamos a que se impriman los eventos de la operacion antes de seguir
+            recital.getEventos().vaciar();
+            
             if (!salir) {
                 System.out.println("\n(Presione Enter para continuar...)");
                 scanner.nextLine(); // Pausa
@@ -129,6 +214,7 @@ public class App {
      * UI para la opcion 2: Ver roles faltantes del recital.
      */
     private static void uiVerRolesFaltantesRecital() {
+        registrar(TrazaSesion.Operacion.FALTANTES_RECITAL);
         Map<String, Integer> faltantes = recital.getRolesFaltantesRecital();
         
         System.out.println("\n===== Roles Faltantes (Global) =====");
@@ -149,6 +235,7 @@ public class App {
        Cancion cancion = uiBuscarCancion();
        if (cancion == null) return; // El usuario cancelo o hubo error
        
+       registrar(TrazaSesion.Operacion.FALTANTES_CANCION, String.valueOf(cancion.getId()), cancion.getTitulo());
        Map<String, Integer> faltantes = recital.getRolesFaltantesCancion(cancion);
        
        System.out.println("\n===== Roles Faltantes para '" + cancion.getTitulo() + "' =====");
@@ -200,9 +287,28 @@ public class App {
        
        // El usuario cancelo o hubo error
        if (cancion == null) return;
+       registrar(TrazaSesion.Operacion.CONTRATAR_CANCION, String.valueOf(cancion.getId()), cancion.getTitulo());
        recital.contratarParaCancion(cancion);
    }
-   
+
+   /**
+    * UI para la opcion 12: Mejorar las contrataciones con un tiempo limite.
+    */
+   private static void uiMejorarContrataciones() {
+       System.out.print("Ingrese el tiempo maximo de busqueda en segundos: ");
+       try {
+           int segundos = Integer.parseInt(scanner.nextLine());
+           if (segundos <= 0) {
+               System.err.println("El tiempo debe ser mayor a cero.");
+               return;
+           }
+           registrar(TrazaSesion.Operacion.MEJORAR, String.valueOf(segundos * 1000L));
+           recital.mejorarContrataciones(segundos * 1000L);
+       } catch (NumberFormatException e) {
+           System.err.println("Error: Debe ingresar un numero.");
+       }
+   }
+
    
     /**
      * UI para la opcion 6: Entrenar un artista.
@@ -227,6 +333,7 @@ public class App {
        String rol = scanner.nextLine();
        
        // Llamamos al metodo del recital 
+       registrar(TrazaSesion.Operacion.ENTRENAR, artista.getNombre(), rol);
        recital.entrenarArtista(artista.getNombre(), rol);
    }
     
@@ -288,45 +395,28 @@ public class App {
      */
     private static void uiExportarEstadoRecital() {
         System.out.println("\n--- Opcion 9: Exportar Estado del Recital ---");
-        String nombreArchivo = "recital-out.json";
+        // Solo se comprime si el nombre termina en ".gz" (ver Archivos.abrirEscritura)
+        System.out.print("Nombre del archivo (Enter para 'recital-out.json'; se comprime con gzip solo si termina en .gz): ");
+        String nombreArchivo = scanner.nextLine().trim();
+        if (nombreArchivo.isEmpty()) {
+            nombreArchivo = "recital-out.json";
+        }
 
-        try (Writer writer = new FileWriter(nombreArchivo)) {
-        	
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            
-            // Creamos el objeto DTO de salida
-            RecitalSalidaDTO salida = new RecitalSalidaDTO();
-            salida.costoTotal = recital.getCostoTotalContratos();
-            
-            // Llenamos la lista de canciones
-            salida.canciones = new ArrayList<>();
-            for (Cancion cancion : recital.getSetlist()) {
-                CancionSalidaDTO cancionDTO = new CancionSalidaDTO();
-                cancionDTO.titulo = cancion.getTitulo();
-                
-                Map<String, Integer> faltantes = recital.getRolesFaltantesCancion(cancion);
-                cancionDTO.estaCompleta = faltantes.isEmpty();
-                cancionDTO.rolesFaltantes = faltantes.isEmpty() ? null : faltantes;
-                
-                // Llenar los artistas contratados para cada cancion
-                cancionDTO.artistasAsignados = new ArrayList<>();
-                for (Contrato contrato : recital.getContrataciones()) {
-                    if (contrato.getCancion().equals(cancion)) {
-                        ContratoSalidaDTO contratoDTO = new ContratoSalidaDTO(
-                            contrato.getArtista().getNombre(),
-                            contrato.getRolAsignado(),
-                            contrato.getCostoPagado()
-                        );
-                        cancionDTO.artistasAsignados.add(contratoDTO);
-                    }
-                }
-                salida.canciones.add(cancionDTO);
-            }
-            
-            // Conviete el objeto DTO a JSON y lo guarda
-            gson.toJson(salida, writer);
+        registrar(TrazaSesion.Operacion.EXPORTAR);
+        try (Writer writer = Archivos.abrirEscritura(Paths.get(nombreArchivo))) {
+            recital.exportarEstado(writer);
 
-            System.out.println("El estado del recital se ha guardado en '" + nombreArchivo + "'");
+            System.out.println("El estado del recital se ha guardado en '" + nombreArchivo + "'"
+                + (Archivos.estaComprimido(Paths.get(nombreArchivo)) ? " (comprimido con gzip)" : " (sin comprimir)"));
+            // Los cambios guardados antes eran relativos a la exportacion anterior
+            int descartados = 0;
+            for (Path cambios : archivosDeCambios()) {
+                Files.delete(cambios);
+                descartados++;
+            }
+            if (descartados > 0) {
+                System.out.println("Se borraron " + descartados + " archivos de cambios de la exportacion anterior.");
+            }
 
         } catch (IOException e) {
             System.err.println("Error: No se pudo escribir el archivo JSON de salida.");
@@ -340,37 +430,104 @@ public class App {
     
     
    
-    /* Clases DTO para definir la ESTRUCTURA del JSON de salida)
-    Usamos @SuppressWarnings("unused") para evitar warings,
-     ya que Gson accede a sus campos.
-    */
-    
-    @SuppressWarnings("unused")
-    private static class RecitalSalidaDTO {
-        double costoTotal;
-        List<CancionSalidaDTO> canciones;
+    /**
+     * UI para la opcion 15: Guardar solo las canciones modificadas.
+     */
+    private static void uiExportarCambiosRecital() {
+        if (!recital.hayExportacionCompleta()) {
+            System.err.println("Error: Todavia no hay una exportacion completa. Guarde el estado con la opcion 10 primero.");
+            return;
+        }
+        registrar(TrazaSesion.Operacion.EXPORTAR_CAMBIOS);
+        String nombreArchivo = PREFIJO_CAMBIOS + (recital.getSecuenciaExportacion() + 1) + ".json";
+        try (Writer writer = Archivos.abrirEscritura(Paths.get(nombreArchivo))) {
+            recital.exportarCambios(writer);
+            System.out.println("Los cambios desde la ultima exportacion se han guardado en '" + nombreArchivo + "'");
+        } catch (IOException e) {
+            System.err.println("Error: No se pudo escribir el archivo de cambios.");
+            System.err.println("Detalle: " + e.getMessage());
+        }
     }
-    
-    @SuppressWarnings("unused")
-    private static class CancionSalidaDTO {
-        String titulo;
-        boolean estaCompleta;
-        Map<String, Integer> rolesFaltantes; // Sera null si esta completa
-        List<ContratoSalidaDTO> artistasAsignados;
+
+    /**
+     * UI para la opcion 16: Combinar la exportacion completa con los archivos de cambios.
+     */
+    private static void uiCombinarExportaciones() {
+        System.out.print("Exportacion completa (Enter para 'recital-out.json'): ");
+        String nombreArchivo = scanner.nextLine().trim();
+        if (nombreArchivo.isEmpty()) {
+            nombreArchivo = "recital-out.json";
+        }
+        // El resultado se comprime si la exportacion completa tiene nombre de comprimida
+        String nombreSalida = "recital-combinado.json"
+            + (Archivos.estaComprimido(Paths.get(nombreArchivo)) ? ".gz" : "");
+        // Se escribe aparte y se reemplaza al final, para no dejar un resultado a medias si los archivos
+        // no coinciden (el temporal conserva la terminacion, que decide si se comprime)
+        Path temporal = Paths.get("." + nombreSalida);
+        try {
+            List<Path> cambios = archivosDeCambios();
+            try (Writer writer = Archivos.abrirEscritura(temporal)) {
+                CombinarExportaciones.combinar(Paths.get(nombreArchivo), cambios, writer);
+            }
+            Files.move(temporal, Paths.get(nombreSalida), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Se aplicaron " + cambios.size() + " archivos de cambios sobre '" + nombreArchivo
+                + "'. Resultado en '" + nombreSalida + "'");
+        } catch (IOException e) {
+            System.err.println("Error: No se pudieron combinar las exportaciones.");
+            System.err.println("Detalle: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar el archivo temporal '" + temporal + "'.");
+            }
+        }
     }
-    
-    @SuppressWarnings("unused")
-    private static class ContratoSalidaDTO {
-        String artista;
-        String rol;
-        double costoPagado;
-        
-        ContratoSalidaDTO(String a, String r, double c) {
-            this.artista = a;
-            this.rol = r;
-            this.costoPagado = c;
+
+    /**
+     * Sigue la cadena de exportaciones que dejo una sesion anterior: la
+     * exportacion completa 'recital-out.json' (o .json.gz) y los archivos de
+     * cambios que parten de ella. Si no hay exportacion completa, la opcion 15
+     * espera a que se haga una.
+     */
+    private static void retomarExportaciones() {
+        Path completa = Paths.get(Archivos.elegirVersion("recital-out.json"));
+        try {
+            long[] cadena = CombinarExportaciones.leerCadena(completa, archivosDeCambios());
+            if (cadena != null) {
+                recital.retomarExportaciones(cadena[0], cadena[1]);
+            }
+        } catch (IOException e) {
+            System.err.println("No se pueden seguir las exportaciones de la sesion anterior: " + e.getMessage());
+            System.err.println("Los cambios se van a poder exportar despues de una exportacion completa (opcion 10).");
         }
     }
+
+    // Archivos "recital-cambios-N.json" del directorio actual
+    private static List<Path> archivosDeCambios() throws IOException {
+        try (Stream<Path> archivos = Files.list(Paths.get("."))) {
+            return archivos
+                .filter(ruta -> ruta.getFileName().toString().matches(PREFIJO_CAMBIOS + "\\d+\\.json"))
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Agrega la operacion a la traza de la sesion, si se esta grabando.
+     * Si la traza no se puede escribir, se deja de grabar y la sesion sigue.
+     */
+    private static void registrar(TrazaSesion.Operacion operacion, String... argumentos) {
+        if (traza == null) {
+            return;
+        }
+        try {
+            traza.registrar(operacion, argumentos);
+        } catch (IOException e) {
+            System.err.println("No se pudo grabar la sesion, se deja de grabar: " + e.getMessage());
+            traza = null;
+        }
+    }
+
     
     
     /**
@@ -424,13 +581,8 @@ public class App {
         
         System.out.println("\n--- Seleccionar Contrato de " + artistaSeleccionado.getNombre() + " a eliminar ---\n");
         
-        // Filtramos los contratos del artista
-        List<Contrato> contratosDelArtista = new ArrayList<>();
-        for (Contrato contrato : recital.getContrataciones()) {
-            if (contrato.getArtista().equals(artistaSeleccionado)) {
-                contratosDelArtista.add(contrato);
-            }
-        }
+        // Copiamos los contratos del artista para numerarlos
+        List<Contrato> contratosDelArtista = new ArrayList<>(recital.getContratosDeArtista(artistaSeleccionado));
         
         // menu de contratos
 
@@ -453,10 +605,15 @@ public class App {
                 // Eliminar uno
                 Contrato contratoAQuitar = contratosDelArtista.get(num - 1);
                 
+                registrar(TrazaSesion.Operacion.QUITAR_CONTRATO, String.valueOf(artistaSeleccionado.getId()),
+                    artistaSeleccionado.getNombre(), String.valueOf(contratoAQuitar.getCancion().getId()),
+                    contratoAQuitar.getCancion().getTitulo(), contratoAQuitar.getRolAsignado());
                 recital.quitarContrato(contratoAQuitar);
                 
             } else if (num == -1) {
                 // Eliminar TODOS
+                registrar(TrazaSesion.Operacion.QUITAR_CONTRATOS_ARTISTA, String.valueOf(artistaSeleccionado.getId()),
+                    artistaSeleccionado.getNombre());
                 recital.quitarTodosLosContratosDeArtista(artistaSeleccionado);
 
             } else if (num == 0) {
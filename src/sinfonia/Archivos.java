@@ -0,0 +1,95 @@
+package sinfonia;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ Apertura de archivos de texto UTF-8 comprimidos o no con gzip. La
+ compresion y descompresion se hacen a medida que se lee o se escribe, sin
+ tener nunca el texto completo en memoria.
+ */
+public class Archivos {
+
+    private static final int TAMANIO_BUFFER = 1 << 16;
+
+    private Archivos() {
+    }
+
+    /**
+     Abre un archivo para leerlo. Si esta comprimido con gzip (se reconoce por
+     sus primeros bytes, no por el nombre) se descomprime al leer.
+     @param ruta El archivo.
+     @return Un lector UTF-8 con buffer.
+     @throws IOException Si no se puede abrir.
+     */
+    public static BufferedReader abrirLectura(Path ruta) throws IOException {
+        InputStream entrada = new BufferedInputStream(Files.newInputStream(ruta), TAMANIO_BUFFER);
+        try {
+            if (esGzip(entrada)) {
+                entrada = new GZIPInputStream(entrada, TAMANIO_BUFFER);
+            }
+        } catch (IOException e) {
+            entrada.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    /**
+     Crea (o reemplaza) un archivo para escribirlo. Si el nombre termina en
+     ".gz" se comprime con gzip al escribir.
+     @param ruta El archivo.
+     @return Un escritor UTF-8 con buffer; al cerrarlo se termina la compresion.
+     @throws IOException Si no se puede crear.
+     */
+    public static BufferedWriter abrirEscritura(Path ruta) throws IOException {
+        OutputStream salida = Files.newOutputStream(ruta);
+        if (estaComprimido(ruta)) {
+            salida = new GZIPOutputStream(salida, TAMANIO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANIO_BUFFER);
+    }
+
+    /**
+     Indica si el nombre del archivo corresponde a uno comprimido con gzip.
+     @param ruta El archivo.
+     @return true si termina en ".gz".
+     */
+    public static boolean estaComprimido(Path ruta) {
+        return ruta.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     Si el archivo no existe pero si su version comprimida (mismo nombre con
+     ".gz" al final), devuelve la comprimida. Si no, devuelve el mismo nombre.
+     @param nombre Nombre del archivo sin comprimir, ej. "artistas.json".
+     @return El nombre del archivo que hay que leer.
+     */
+    public static String elegirVersion(String nombre) {
+        if (!Files.exists(Paths.get(nombre)) && Files.exists(Paths.get(nombre + ".gz"))) {
+            return nombre + ".gz";
+        }
+        return nombre;
+    }
+
+    // Mira los dos primeros bytes (0x1f 0x8b) sin consumirlos
+    private static boolean esGzip(InputStream entrada) throws IOException {
+        entrada.mark(2);
+        int primero = entrada.read();
+        int segundo = entrada.read();
+        entrada.reset();
+        return primero == 0x1f && segundo == 0x8b;
+    }
+}
@@ -1,4 +1,5 @@
 package sinfonia;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -10,16 +11,31 @@ import java.util.HashSet;
  */
 public abstract class Artista {
 
+    protected int id;
     protected String nombre;
     protected Set<String> rolesHistoricos; 
     protected Set<String> bandasHistoricas;
+    // Los mismos roles, como IDs de TablaSimbolos.ROLES, para comparar con enteros
+    protected BitSet idsRoles;
+    // Las bandas, como IDs de TablaSimbolos.BANDAS
+    protected BitSet idsBandas;
     
     // El constructor recibe una lista de rolesHistoricos y una de bandasHistoricas
     // y las aplica a un HashSet
     public Artista(String nombre, List<String> rolesHistoricos, List<String> bandasHistoricas) {
+        this.id = -1; // Se asigna al armar el Recital
         this.nombre = nombre;
         this.rolesHistoricos = new HashSet<>(rolesHistoricos);
         this.bandasHistoricas = new HashSet<>(bandasHistoricas);
+        
+        this.idsRoles = new BitSet();
+        for (String rol : this.rolesHistoricos) {
+            this.idsRoles.set(TablaSimbolos.ROLES.getId(rol));
+        }
+        this.idsBandas = new BitSet();
+        for (String banda : this.bandasHistoricas) {
+            this.idsBandas.set(TablaSimbolos.BANDAS.getId(banda));
+        }
     }
 
     /**
@@ -28,7 +44,17 @@ public abstract class Artista {
      @return true si el artista tiene el rol en su historial, false en caso contrario.
      */
     public boolean puedeTocar(String rol) {
-        return this.rolesHistoricos.contains(rol);
+        int idRol = TablaSimbolos.ROLES.buscarId(rol);
+        return idRol >= 0 && this.idsRoles.get(idRol);
+    }
+
+    /**
+     Verifica si el artista puede desempeñar un rol, dado su ID.
+     @param idRol El ID del rol en TablaSimbolos.ROLES.
+     @return true si el artista tiene el rol en su historial, false en caso contrario.
+     */
+    public boolean puedeTocar(int idRol) {
+        return this.idsRoles.get(idRol);
     }
 
     /**
@@ -37,12 +63,7 @@ public abstract class Artista {
      @return true si comparten al menos una banda, false en caso contrario.
      */
     public boolean compartioBanda(ArtistaBase artistaBase) {
-        for (String banda : this.bandasHistoricas) {
-            if (artistaBase.getBandasHistoricas().contains(banda)) {
-                return true;
-            }
-        }
-        return false;
+        return this.idsBandas.intersects(artistaBase.getIdsBandas());
     }
     
     // --- Métodos Abstractos (a ser implementados por las subclases) ---
@@ -61,6 +82,19 @@ public abstract class Artista {
 
     
     // --- Getters ---
+
+    /**
+     Devuelve el ID denso del artista dentro de su lista en el Recital
+     (artistasBase o artistasCandidatos).
+     @return El ID, o -1 si todavia no forma parte de un Recital.
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
     
     public String getNombre() {
         return nombre;
@@ -73,6 +107,14 @@ public abstract class Artista {
     public Set<String> getBandasHistoricas() {
         return bandasHistoricas;
     }
+
+    public BitSet getIdsRoles() {
+        return idsRoles;
+    }
+
+    public BitSet getIdsBandas() {
+        return idsBandas;
+    }
     
     // --- equals y hashCode ---
     @Override
@@ -12,6 +12,7 @@ public class ArtistaExterno extends Artista {
     private int maxCanciones;
     private int rolesEntrenados;
     private boolean yaContratado;
+    private boolean descuentoPorBanda;
 
     public ArtistaExterno(String nombre, List<String> rolesHistoricos, List<String> bandasHistoricas,
                            double costoBase, int maxCanciones) {
@@ -20,6 +21,7 @@ public class ArtistaExterno extends Artista {
         this.maxCanciones = maxCanciones;
         this.rolesEntrenados = 0; // Inicia sin entrenamientos
         this.yaContratado = false; // Inicia como no contratado
+        this.descuentoPorBanda = false; // Lo calcula el Recital segun sus artistas base
     }
 
     /**
@@ -47,6 +49,19 @@ public class ArtistaExterno extends Artista {
         return this.maxCanciones;
     }
 
+    /**
+     Indica si el artista compartio banda con algun artista base del recital,
+     lo que le da un 50% de descuento.
+     @return true si tiene el descuento, false si no.
+     */
+    public boolean tieneDescuentoPorBanda() {
+        return descuentoPorBanda;
+    }
+
+    void setDescuentoPorBanda(boolean descuentoPorBanda) {
+        this.descuentoPorBanda = descuentoPorBanda;
+    }
+
     public boolean YaContratado() {
         return yaContratado;
     }
@@ -69,24 +84,22 @@ public class ArtistaExterno extends Artista {
     
     /**
      Entrena al artista para un nuevo rol, si no está contratado.
-     Incrementa su costo y añade el rol a su historial.
+     Incrementa su costo y añade el rol a su historial. No imprime nada:
+     Recital.entrenarArtista informa el resultado a sus EventosRecital.
      @param nuevoRol El rol a aprender.
      @return true si el entrenamiento fue exitoso, false si no se pudo (ya estaba contratado).
      */
     public boolean entrenar(String nuevoRol) {
         if (this.yaContratado) {
-            System.out.println("Error: No se puede entrenar a " + this.nombre + " porque ya fue contratado.");
             return false;
         }
 
         if (!this.rolesHistoricos.contains(nuevoRol)) {
             this.rolesHistoricos.add(nuevoRol);
+            this.idsRoles.set(TablaSimbolos.ROLES.getId(nuevoRol));
             this.rolesEntrenados++;
-            System.out.println(this.nombre + " ha sido entrenado para " + nuevoRol + ". Nuevo costo: " + getCostoContratacion());
             return true;
-        } else {
-            System.out.println(this.nombre + " ya sabía tocar " + nuevoRol + ".");
-            return false;
         }
+        return false; // Ya sabia tocar el rol
     }
 }
\ No newline at end of file
@@ -1,19 +1,58 @@
 package sinfonia;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.HashMap;
+import java.util.stream.IntStream;
 
 /*
  Representa una canción del recital y los roles que requiere.
  */
 public class Cancion {
 
+    private int id;
     private String titulo;
     private List<String> rolesRequeridos; // Puede tener roles repetidos (ej. "voz", "voz")
+    
+    // Conteo precompilado: idsRoles[i] (ordenados) se necesita cantidadesRoles[i] veces
+    private int[] idsRoles;
+    private int[] cantidadesRoles;
+    // Posiciones de idsRoles ordenadas por nombre de rol (no dependen de los IDs)
+    private int[] ordenRoles;
 
     public Cancion(String titulo, List<String> rolesRequeridos) {
+        this.id = -1; // Se asigna al armar el Recital
         this.titulo = titulo;
         this.rolesRequeridos = rolesRequeridos;
+        
+        // Convertimos los roles a IDs y los ordenamos para agrupar los repetidos
+        int[] ids = new int[rolesRequeridos.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = TablaSimbolos.ROLES.getId(rolesRequeridos.get(i));
+        }
+        Arrays.sort(ids);
+
+        int distintos = 0;
+        int[] cantidades = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            if (distintos > 0 && ids[distintos - 1] == ids[i]) {
+                cantidades[distintos - 1]++;
+            } else {
+                ids[distintos] = ids[i];
+                cantidades[distintos] = 1;
+                distintos++;
+            }
+        }
+        this.idsRoles = Arrays.copyOf(ids, distintos);
+        this.cantidadesRoles = Arrays.copyOf(cantidades, distintos);
+
+        // Los IDs de TablaSimbolos.ROLES dependen del orden en que se cargaron los
+        // archivos, asi que los recorridos que eligen artistas usan el orden por nombre
+        int[] roles = this.idsRoles;
+        this.ordenRoles = IntStream.range(0, distintos).boxed()
+            .sorted(Comparator.comparing(i -> TablaSimbolos.ROLES.getNombre(roles[i])))
+            .mapToInt(Integer::intValue).toArray();
     }
 
     /**
@@ -45,6 +84,54 @@ public class Cancion {
        return conteo;
    }
    
+    /**
+     Devuelve los IDs (en TablaSimbolos.ROLES) de los roles distintos que requiere
+     la cancion, ordenados de menor a mayor.
+     @return Arreglo de IDs de roles sin repetidos.
+     */
+    public int[] getIdsRoles() {
+        return this.idsRoles;
+    }
+
+    /**
+     Devuelve cuantas veces se necesita cada rol, alineado con getIdsRoles().
+     @return Arreglo de cantidades.
+     */
+    public int[] getCantidadesRoles() {
+        return this.cantidadesRoles;
+    }
+
+    /**
+     Devuelve las posiciones de getIdsRoles() ordenadas alfabeticamente por el
+     nombre del rol. Es el orden en que se cubren los roles al contratar, para
+     que el resultado no cambie segun el orden en que se internaron los roles.
+     @return Arreglo de posiciones de getIdsRoles().
+     */
+    public int[] getOrdenRoles() {
+        return this.ordenRoles;
+    }
+
+    /**
+     Busca la posicion de un rol dentro de getIdsRoles().
+     @param idRol El ID del rol.
+     @return La posicion del rol, o un valor negativo si la cancion no lo requiere.
+     */
+    public int indiceDeRol(int idRol) {
+        return Arrays.binarySearch(this.idsRoles, idRol);
+    }
+   
+    /**
+     Devuelve el ID denso de la cancion (su posicion en el setlist del Recital).
+     @return El ID, o -1 si todavia no forma parte de un Recital.
+     */
+    public int getId() {
+        return id;
+    }
+
+    void setId(int id) {
+        this.id = id;
+    }
+   
     public String getTitulo() {
         return titulo;
     }
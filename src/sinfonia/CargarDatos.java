@@ -1,119 +1,245 @@
 package sinfonia;
 
 //Importaciones para Gson
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken; // Para leer listas genéricas
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 //Importaciones de Java
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.lang.reflect.Type;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
 Clase de utilidad para cargar toda la información inicial
 desde los archivos JSON y construir el objeto Recital.
+Los archivos se leen en UTF-8 (comprimidos o no con gzip) y de a un token por vez,
+sin pasar por un arreglo intermedio de DTOs.
+Los tres archivos se leen al mismo tiempo, cada uno en su hilo, asi que
+la carga tarda lo que tarda el archivo mas grande. Los artistas y las
+canciones se construyen despues, en este hilo y en el orden de los archivos:
+al construirlos se internan sus roles, y los IDs de los roles no pueden
+depender de que hilo termino primero.
  */
 public class CargarDatos {
 
- 
+
+    /**
+     * Método principal de la clase. Lee todos los archivos
+     * y devuelve un objeto Recital listo para usar.
+     * @param rutaArtistas Ruta al archivo "artistas.json"
+     * @param rutaRecital Ruta al archivo "recital.json"
+     * @param rutaArtistasBase Ruta al archivo "artistas-discografica.json"
+     * @return Un objeto Recital inicializado.
+     * @throws IOException Si ocurre un error al leer los archivos o el formato no es valido.
+     */
+    public static Recital cargarRecitalDesdeArchivos(String rutaArtistas, String rutaRecital, String rutaArtistasBase)
+        throws IOException {
+
+        ExecutorService ejecutor = Executors.newFixedThreadPool(3);
+        try {
+            // Los tres archivos se leen en paralelo
+            CompletableFuture<Set<String>> futuroBase = leerEn(ejecutor, () -> {
+                try (JsonReader reader = abrir(rutaArtistasBase)) {
+                    return new HashSet<>(leerListaDeTextos(reader));
+                }
+            });
+            CompletableFuture<List<DatosArtista>> futuroArtistas = leerEn(ejecutor, () -> {
+                List<DatosArtista> artistas = new ArrayList<>();
+                try (JsonReader reader = abrir(rutaArtistas)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        artistas.add(leerArtista(reader));
+                    }
+                    reader.endArray();
+                }
+                return artistas;
+            });
+            CompletableFuture<List<DatosCancion>> futuroSetlist = leerEn(ejecutor, () -> {
+                List<DatosCancion> canciones = new ArrayList<>();
+                try (JsonReader reader = abrir(rutaRecital)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        canciones.add(leerCancion(reader));
+                    }
+                    reader.endArray();
+                }
+                return canciones;
+            });
+
+            // Carga la lista de nombres de artistas base (artistas-discografica.json)
+            Set<String> nombresBase = esperar(futuroBase);
+            System.out.println("Cargados " + nombresBase.size() + " artistas base.");
+
+            // Carga todos los artistas (artistas.json)
+            List<ArtistaBase> artistasBase = new ArrayList<>();
+            List<ArtistaExterno> artistasCandidatos = new ArrayList<>();
+            for (DatosArtista datos : esperar(futuroArtistas)) {
+                // Verificamos si el nombre está en el Set que cargamos antes
+                if (nombresBase.contains(datos.nombre)) {
+                    artistasBase.add(new ArtistaBase(datos.nombre, datos.roles, datos.bandas));
+                } else {
+                    artistasCandidatos.add(new ArtistaExterno(datos.nombre, datos.roles, datos.bandas,
+                        datos.costo, datos.maxCanciones));
+                }
+            }
+            System.out.println("Artistas base encontrados: " + artistasBase.size());
+            System.out.println("Artistas candidatos encontrados: " + artistasCandidatos.size());
+
+            // Carga las canciones (recital.json)
+            List<Cancion> setlist = new ArrayList<>();
+            for (DatosCancion datos : esperar(futuroSetlist)) {
+                setlist.add(new Cancion(datos.titulo, datos.rolesRequeridos));
+            }
+            System.out.println("Cargadas " + setlist.size() + " canciones para el setlist.");
+
+            // Devolver el objeto Recital
+            return new Recital(setlist, artistasBase, artistasCandidatos);
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Lectura de un archivo que puede fallar con IOException.
+     */
+    private interface Lectura<T> {
+        T leer() throws IOException;
+    }
+
+    private static <T> CompletableFuture<T> leerEn(ExecutorService ejecutor, Lectura<T> lectura) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return lectura.leer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ejecutor);
+    }
+
+    // Espera el resultado y devuelve el error de lectura como IOException, igual que la carga secuencial
+    private static <T> T esperar(CompletableFuture<T> futuro) throws IOException {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     /**
-     * DTO que mapea la estructura de artistas.json
+     * Campos de un objeto de artistas.json, todavia sin construir el artista.
      */
-    private static class ArtistaDTO {
+    private static final class DatosArtista {
         String nombre;
         List<String> roles;
         List<String> bandas;
-        double costo; 
-        int maxCanciones; 
+        double costo;
+        int maxCanciones;
     }
 
     /**
-     * DTO que mapea la estructura de recital.json
+     * Campos de un objeto de recital.json, todavia sin construir la cancion.
      */
-    private static class CancionDTO {
+    private static final class DatosCancion {
         String titulo;
         List<String> rolesRequeridos;
     }
 
+    private static JsonReader abrir(String ruta) throws IOException {
+        // Si el archivo esta comprimido con gzip se descomprime a medida que se lee
+        JsonReader reader = new JsonReader(Archivos.abrirLectura(Paths.get(ruta)));
+        // Igual que Gson.fromJson, que era lo que se usaba antes
+        reader.setLenient(true);
+        return reader;
+    }
 
     /**
-     * Método principal de la clase. Lee todos los archivos
-     * y devuelve un objeto Recital listo para usar.
-     * @param rutaArtistas Ruta al archivo "artistas.json"
-     * @param rutaRecital Ruta al archivo "recital.json"
-     * @param rutaArtistasBase Ruta al archivo "artistas-discografica.json"
-     * @return Un objeto Recital inicializado.
-     * @throws IOException Si ocurre un error al leer los archivos.
+     * Lee un objeto de artistas.json.
+     * Los campos que no se conocen se ignoran y los que faltan quedan en su
+     * valor por defecto (null o 0), como hacia Gson con los DTOs.
      */
-    public static Recital cargarRecitalDesdeArchivos(String rutaArtistas, String rutaRecital, String rutaArtistasBase) 
-        throws IOException {
-        
-        Gson gson = new Gson();
-
-        // Carga la lista de nombres de artistas base (artistas-discografica.json)
-        Set<String> nombresBase;
-        try (Reader reader = new FileReader(rutaArtistasBase)) {
-            Type listType = new TypeToken<List<String>>() {}.getType();
-            List<String> listaNombresBase = gson.fromJson(reader, listType);
-            nombresBase = new HashSet<>(listaNombresBase);
-        }
-        System.out.println("Cargados " + nombresBase.size() + " artistas base.");
-
-        // Carga todos los artistas (artistas.json) 
-        List<ArtistaBase> artistasBase = new ArrayList<>();
-        List<ArtistaExterno> artistasCandidatos = new ArrayList<>();
-        
-        try (Reader reader = new FileReader(rutaArtistas)) {
-            // Leemos el JSON como un array de ArtistaDTO
-            ArtistaDTO[] dtos = gson.fromJson(reader, ArtistaDTO[].class);
-
-            // Iteramos y "convertimos" los DTOs en nuestro Modelo
-            for (ArtistaDTO dto : dtos) {
-                // Verificamos si el nombre está en el Set que cargamos antes
-                if (nombresBase.contains(dto.nombre)) {
-                    // Es un Artista Base
-                    artistasBase.add(new ArtistaBase(
-                        dto.nombre, 
-                        dto.roles, 
-                        dto.bandas
-                    ));
-                } else {
-                    // Es un Artista Externo (candidato)
-                    artistasCandidatos.add(new ArtistaExterno(
-                        dto.nombre, 
-                        dto.roles, 
-                        dto.bandas, 
-                        dto.costo, 
-                        dto.maxCanciones
-                    ));
-                }
+    private static DatosArtista leerArtista(JsonReader reader) throws IOException {
+        DatosArtista datos = new DatosArtista();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String campo = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (campo) {
+                case "nombre":
+                    datos.nombre = reader.nextString();
+                    break;
+                case "roles":
+                    datos.roles = leerListaDeTextos(reader);
+                    break;
+                case "bandas":
+                    datos.bandas = leerListaDeTextos(reader);
+                    break;
+                case "costo":
+                    datos.costo = reader.nextDouble();
+                    break;
+                case "maxCanciones":
+                    datos.maxCanciones = reader.nextInt();
+                    break;
+                default:
+                    reader.skipValue();
             }
         }
-        System.out.println("Artistas base encontrados: " + artistasBase.size());
-        System.out.println("Artistas candidatos encontrados: " + artistasCandidatos.size());
-
-        // Carga las canciones (recital.json)
-        List<Cancion> setlist = new ArrayList<>();
-        try (Reader reader = new FileReader(rutaRecital)) {
-            // Leemos el JSON como un array de CancionDTO
-            CancionDTO[] dtos = gson.fromJson(reader, CancionDTO[].class);
-
-            // Iteramos y convertimos
-            for (CancionDTO dto : dtos) {
-                setlist.add(new Cancion(
-                    dto.titulo, 
-                    dto.rolesRequeridos
-                ));
+        reader.endObject();
+        return datos;
+    }
+
+    /**
+     * Lee un objeto de recital.json.
+     */
+    private static DatosCancion leerCancion(JsonReader reader) throws IOException {
+        DatosCancion datos = new DatosCancion();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String campo = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (campo) {
+                case "titulo":
+                    datos.titulo = reader.nextString();
+                    break;
+                case "rolesRequeridos":
+                    datos.rolesRequeridos = leerListaDeTextos(reader);
+                    break;
+                default:
+                    reader.skipValue();
             }
         }
-        System.out.println("Cargadas " + setlist.size() + " canciones para el setlist.");
+        reader.endObject();
+        return datos;
+    }
 
-        // Devolver el objeto Recital
-        return new Recital(setlist, artistasBase, artistasCandidatos);
+    private static List<String> leerListaDeTextos(JsonReader reader) throws IOException {
+        List<String> textos = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            textos.add(reader.nextString());
+        }
+        reader.endArray();
+        return textos;
     }
 }
\ No newline at end of file
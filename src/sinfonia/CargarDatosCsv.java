@@ -0,0 +1,307 @@
+package sinfonia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+Carga el recital desde archivos CSV o TSV, como los que exporta el sistema
+de reservas. Arma el mismo Recital que CargarDatos con los archivos JSON.
+Formato (la primera linea de cada archivo es el encabezado y se ignora):
+  artistas:  nombre, roles, bandas, costo, maxCanciones
+  recital:   titulo, rolesRequeridos
+  discografica: un nombre de artista base por linea
+Los roles y las bandas van en un solo campo separados por '|'. Los archivos
+.tsv se separan con tabulaciones y el resto con comas. Un campo puede ir
+entre comillas dobles (para incluir el separador, con "" para una comilla),
+pero no puede tener saltos de linea.
+Los archivos grandes se parten en bloques de bytes que terminan en un fin
+de linea, y los bloques se separan en campos en paralelo. Los roles y bandas
+repetidos se guardan una sola vez aunque aparezcan en bloques distintos.
+Los artistas y las canciones se construyen despues, en un solo hilo y en el
+orden del archivo, para que los IDs de los roles no dependan de que bloque
+termino primero (ver CargarDatos).
+ */
+public class CargarDatosCsv {
+
+    // Tamanio minimo de cada bloque; por debajo de esto no conviene partir el archivo
+    static final int TAMANIO_BLOQUE = 1 << 20;
+
+    private static final char SEPARADOR_LISTA = '|';
+
+    // Una misma instancia de cada rol y banda para toda la carga
+    private final ConcurrentHashMap<String, String> textos = new ConcurrentHashMap<>();
+    private final int tamanioBloque;
+
+    private CargarDatosCsv(int tamanioBloque) {
+        this.tamanioBloque = tamanioBloque;
+    }
+
+    /**
+     * Lee los tres archivos y devuelve un objeto Recital listo para usar.
+     * @param rutaArtistas Ruta al archivo de artistas (.csv o .tsv)
+     * @param rutaRecital Ruta al archivo de canciones (.csv o .tsv)
+     * @param rutaArtistasBase Ruta al archivo con los nombres de los artistas base
+     * @return Un objeto Recital inicializado.
+     * @throws IOException Si ocurre un error al leer los archivos o alguna linea no es valida.
+     */
+    public static Recital cargarRecitalDesdeArchivos(String rutaArtistas, String rutaRecital, String rutaArtistasBase)
+        throws IOException {
+        return new CargarDatosCsv(TAMANIO_BLOQUE).cargar(Paths.get(rutaArtistas), Paths.get(rutaRecital), Paths.get(rutaArtistasBase));
+    }
+
+    // Permite usar bloques chicos en las pruebas
+    static Recital cargarRecitalDesdeArchivos(Path rutaArtistas, Path rutaRecital, Path rutaArtistasBase, int tamanioBloque)
+        throws IOException {
+        return new CargarDatosCsv(tamanioBloque).cargar(rutaArtistas, rutaRecital, rutaArtistasBase);
+    }
+
+    private Recital cargar(Path rutaArtistas, Path rutaRecital, Path rutaArtistasBase) throws IOException {
+        // La lista de la discografica es chica: se lee entera antes de separar a los artistas
+        Set<String> nombresBase = new HashSet<>();
+        List<String> lineasBase = Files.readAllLines(rutaArtistasBase, StandardCharsets.UTF_8);
+        for (String linea : lineasBase.subList(Math.min(1, lineasBase.size()), lineasBase.size())) {
+            List<String> campos = campos(linea, separador(rutaArtistasBase));
+            if (!campos.isEmpty() && !campos.get(0).isEmpty()) {
+                nombresBase.add(campos.get(0));
+            }
+        }
+        System.out.println("Cargados " + nombresBase.size() + " artistas base.");
+
+        List<ArtistaBase> artistasBase = new ArrayList<>();
+        List<ArtistaExterno> artistasCandidatos = new ArrayList<>();
+        char separadorArtistas = separador(rutaArtistas);
+        for (FilaArtista fila : this.leerEnParalelo(rutaArtistas, linea -> this.leerArtista(linea, separadorArtistas, nombresBase))) {
+            if (fila.base) {
+                artistasBase.add(new ArtistaBase(fila.nombre, fila.roles, fila.bandas));
+            } else {
+                artistasCandidatos.add(new ArtistaExterno(fila.nombre, fila.roles, fila.bandas, fila.costo, fila.maxCanciones));
+            }
+        }
+        System.out.println("Artistas base encontrados: " + artistasBase.size());
+        System.out.println("Artistas candidatos encontrados: " + artistasCandidatos.size());
+
+        char separadorRecital = separador(rutaRecital);
+        List<Cancion> setlist = new ArrayList<>();
+        for (FilaCancion fila : this.leerEnParalelo(rutaRecital, linea -> this.leerCancion(linea, separadorRecital))) {
+            setlist.add(new Cancion(fila.titulo, fila.rolesRequeridos));
+        }
+        System.out.println("Cargadas " + setlist.size() + " canciones para el setlist.");
+
+        return new Recital(setlist, artistasBase, artistasCandidatos);
+    }
+
+    /**
+     * Campos de una linea del archivo de artistas.
+     */
+    private static final class FilaArtista {
+        String nombre;
+        List<String> roles;
+        List<String> bandas;
+        boolean base;
+        double costo;
+        int maxCanciones;
+    }
+
+    /**
+     * Campos de una linea del archivo de canciones.
+     */
+    private static final class FilaCancion {
+        String titulo;
+        List<String> rolesRequeridos;
+    }
+
+    /**
+     * Separa una linea del archivo en sus campos. Devuelve null para las lineas vacias.
+     */
+    private interface LectorLinea<T> {
+        T leer(String linea) throws IOException;
+    }
+
+    /**
+     * Parte el archivo en bloques que terminan en un fin de linea, separa cada
+     * bloque en paralelo y junta las filas en el orden del archivo.
+     * La primera linea (el encabezado) se saltea.
+     */
+    private <T> List<T> leerEnParalelo(Path ruta, LectorLinea<T> lector) throws IOException {
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            long inicioDatos = finDeLinea(canal, 0, tamanio);
+            List<long[]> bloques = new ArrayList<>();
+            long inicio = inicioDatos;
+            while (inicio < tamanio) {
+                long fin = finDeLinea(canal, Math.min(inicio + this.tamanioBloque, tamanio), tamanio);
+                bloques.add(new long[] { inicio, fin });
+                inicio = fin;
+            }
+
+            List<List<T>> resultados = IntStream.range(0, bloques.size()).parallel()
+                .mapToObj(i -> {
+                    try {
+                        return this.leerBloque(canal, bloques.get(i)[0], bloques.get(i)[1], lector);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(Collectors.toList());
+
+            List<T> todos = new ArrayList<>();
+            for (List<T> resultado : resultados) {
+                todos.addAll(resultado);
+            }
+            return todos;
+        } catch (UncheckedIOException e) {
+            throw new IOException("Error al leer " + ruta + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    // Posicion siguiente al primer '\n' a partir de desde (o el final del archivo)
+    private static long finDeLinea(FileChannel canal, long desde, long tamanio) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long posicion = desde;
+        while (posicion < tamanio) {
+            buffer.clear();
+            int leidos = canal.read(buffer, posicion);
+            if (leidos <= 0) {
+                break;
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (buffer.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += leidos;
+        }
+        return tamanio;
+    }
+
+    private <T> List<T> leerBloque(FileChannel canal, long inicio, long fin, LectorLinea<T> lector) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (fin - inicio));
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, inicio + buffer.position()) < 0) {
+                break;
+            }
+        }
+        // Los bloques terminan en '\n', que en UTF-8 nunca es parte de otro caracter
+        String texto = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        List<T> resultado = new ArrayList<>();
+        int desde = 0;
+        while (desde < texto.length()) {
+            int hasta = texto.indexOf('\n', desde);
+            if (hasta < 0) {
+                hasta = texto.length();
+            }
+            String linea = texto.substring(desde, hasta > desde && texto.charAt(hasta - 1) == '\r' ? hasta - 1 : hasta);
+            T objeto = lector.leer(linea);
+            if (objeto != null) {
+                resultado.add(objeto);
+            }
+            desde = hasta + 1;
+        }
+        return resultado;
+    }
+
+    private FilaArtista leerArtista(String linea, char separador, Set<String> nombresBase) throws IOException {
+        if (linea.isBlank()) {
+            return null;
+        }
+        List<String> campos = campos(linea, separador);
+        if (campos.size() < 5) {
+            throw new IOException("Se esperaban 5 campos en la linea: " + linea);
+        }
+        FilaArtista fila = new FilaArtista();
+        fila.nombre = campos.get(0);
+        fila.roles = this.lista(campos.get(1));
+        fila.bandas = this.lista(campos.get(2));
+        fila.base = nombresBase.contains(fila.nombre);
+        if (fila.base) {
+            return fila;
+        }
+        try {
+            fila.costo = campos.get(3).isEmpty() ? 0 : Double.parseDouble(campos.get(3));
+            fila.maxCanciones = campos.get(4).isEmpty() ? 0 : Integer.parseInt(campos.get(4));
+            return fila;
+        } catch (NumberFormatException e) {
+            throw new IOException("Numero invalido en la linea: " + linea);
+        }
+    }
+
+    private FilaCancion leerCancion(String linea, char separador) throws IOException {
+        if (linea.isBlank()) {
+            return null;
+        }
+        List<String> campos = campos(linea, separador);
+        if (campos.size() < 2) {
+            throw new IOException("Se esperaban 2 campos en la linea: " + linea);
+        }
+        FilaCancion fila = new FilaCancion();
+        fila.titulo = campos.get(0);
+        fila.rolesRequeridos = this.lista(campos.get(1));
+        return fila;
+    }
+
+    // Separa "voz|guitarra" en sus elementos, usando una sola instancia de cada texto
+    private List<String> lista(String campo) {
+        List<String> elementos = new ArrayList<>();
+        int desde = 0;
+        while (desde <= campo.length() && !campo.isEmpty()) {
+            int hasta = campo.indexOf(SEPARADOR_LISTA, desde);
+            if (hasta < 0) {
+                hasta = campo.length();
+            }
+            String elemento = campo.substring(desde, hasta).trim();
+            if (!elemento.isEmpty()) {
+                String previo = this.textos.putIfAbsent(elemento, elemento);
+                elementos.add(previo != null ? previo : elemento);
+            }
+            desde = hasta + 1;
+        }
+        return elementos;
+    }
+
+    // Campos de una linea, respetando las comillas dobles
+    static List<String> campos(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    private static char separador(Path ruta) {
+        return ruta.getFileName().toString().toLowerCase().endsWith(".tsv") ? '\t' : ',';
+    }
+}
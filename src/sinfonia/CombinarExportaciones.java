@@ -0,0 +1,202 @@
+package sinfonia;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+Aplica las exportaciones de cambios (Recital.exportarCambios) sobre la
+exportacion completa de la que parten y escribe la exportacion completa
+resultante, igual a la que daria exportarEstado en ese momento.
+Los cambios se leen enteros (son chicos); la exportacion completa se copia
+de a una cancion por vez, reemplazando las que cambiaron.
+Cada exportacion de cambios lleva la "base" de la exportacion completa de la
+que parte: si no coincide con la de la exportacion completa no se combina.
+El resultado lleva como "base" el "estado" del ultimo cambio, igual que una
+exportacion completa hecha en ese momento.
+ */
+public class CombinarExportaciones {
+
+    // Omite los nulos y escapa el HTML, igual que Recital.abrirJson
+    private static final Gson GSON = new Gson();
+
+    private CombinarExportaciones() {
+    }
+
+    /**
+     * Combina una exportacion completa con sus exportaciones de cambios.
+     * @param completa La exportacion completa (puede estar comprimida con gzip).
+     * @param cambios Las exportaciones de cambios posteriores, en cualquier orden.
+     * Sus secuencias tienen que ser 1, 2, ... sin saltos.
+     * @param salida Donde se escribe la exportacion combinada. No se cierra.
+     * @throws IOException Si algun archivo no se puede leer, no tiene el formato
+     * esperado, falta una secuencia, algun cambio parte de otra exportacion
+     * completa o nombra una cancion que no existe.
+     */
+    public static void combinar(Path completa, List<Path> cambios, Writer salida) throws IOException {
+        List<JsonObject> leidos = leerCadenaDeCambios(cambios);
+
+        // Para cada posicion del setlist queda la ultima version de la cancion
+        Map<Integer, JsonObject> canciones = new HashMap<>();
+        JsonElement costoTotal = null;
+        JsonElement estado = null;
+        String base = leidos.isEmpty() ? null : leidos.get(0).get("base").getAsString();
+        for (JsonObject cambio : leidos) {
+            costoTotal = cambio.get("costoTotal");
+            estado = cambio.get("estado");
+            for (JsonElement elemento : cambio.getAsJsonArray("canciones")) {
+                JsonObject cancion = elemento.getAsJsonObject().deepCopy();
+                canciones.put(cancion.remove("posicion").getAsInt(), cancion);
+            }
+        }
+
+        try (JsonReader reader = new JsonReader(Archivos.abrirLectura(completa))) {
+            JsonWriter writer = Recital.abrirJson(salida);
+            int copiadas = 0;
+            boolean baseVerificada = leidos.isEmpty();
+            reader.beginObject();
+            writer.beginObject();
+            while (reader.hasNext()) {
+                String campo = reader.nextName();
+                writer.name(campo);
+                if (campo.equals("base") && !baseVerificada) {
+                    // Se verifica antes de la primera cancion, que viene despues
+                    String baseCompleta = reader.nextString();
+                    if (!baseCompleta.equals(base)) {
+                        throw new IOException("Los cambios parten de la exportacion completa " + base + " y " + completa
+                            + " es la " + baseCompleta + ".");
+                    }
+                    GSON.toJson(estado, writer);
+                    baseVerificada = true;
+                } else if (campo.equals("costoTotal") && costoTotal != null) {
+                    reader.skipValue();
+                    GSON.toJson(costoTotal, writer);
+                } else if (campo.equals("canciones")) {
+                    if (!baseVerificada) {
+                        throw new IOException("La exportacion " + completa + " no tiene \"base\": no se le pueden aplicar cambios.");
+                    }
+                    reader.beginArray();
+                    writer.beginArray();
+                    while (reader.hasNext()) {
+                        JsonElement original = JsonParser.parseReader(reader);
+                        JsonObject nueva = canciones.get(copiadas++);
+                        GSON.toJson(nueva != null ? nueva : original, writer);
+                    }
+                    reader.endArray();
+                    writer.endArray();
+                } else {
+                    GSON.toJson(JsonParser.parseReader(reader), writer);
+                }
+            }
+            reader.endObject();
+            writer.endObject();
+            writer.flush();
+
+            for (int posicion : canciones.keySet()) {
+                if (posicion < 0 || posicion >= copiadas) {
+                    throw new IOException("Los cambios nombran la cancion " + posicion + ", que no esta en " + completa + ".");
+                }
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("La exportacion " + completa + " no tiene el formato esperado: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lee de que exportacion completa parten los cambios que ya estan en disco
+     * y hasta que secuencia llegan, para que otra sesion siga la misma cadena
+     * (ver Recital.retomarExportaciones).
+     * @param completa La exportacion completa (puede estar comprimida con gzip).
+     * @param cambios Las exportaciones de cambios posteriores, en cualquier orden.
+     * @return La "base" de la exportacion completa y la secuencia del ultimo
+     * cambio (0 si no hay), o null si la exportacion completa no existe.
+     * @throws IOException Si algun archivo no se puede leer o no tiene el formato
+     * esperado, falta una secuencia o algun cambio parte de otra exportacion completa.
+     */
+    public static long[] leerCadena(Path completa, List<Path> cambios) throws IOException {
+        if (!Files.exists(completa)) {
+            return null;
+        }
+        String base = null;
+        try (JsonReader reader = new JsonReader(Archivos.abrirLectura(completa))) {
+            // La "base" es el primer campo, no hace falta leer las canciones
+            reader.beginObject();
+            while (base == null && reader.hasNext()) {
+                if (reader.nextName().equals("base")) {
+                    base = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("La exportacion " + completa + " no tiene el formato esperado: " + e.getMessage(), e);
+        }
+        if (base == null) {
+            throw new IOException("La exportacion " + completa + " no tiene \"base\": no se le pueden aplicar cambios.");
+        }
+
+        List<JsonObject> leidos = leerCadenaDeCambios(cambios);
+        if (!leidos.isEmpty() && !leidos.get(0).get("base").getAsString().equals(base)) {
+            throw new IOException("Los cambios parten de la exportacion completa " + leidos.get(0).get("base").getAsString()
+                + " y " + completa + " es la " + base + ".");
+        }
+        try {
+            return new long[] { Long.parseUnsignedLong(base, 16), leidos.size() };
+        } catch (NumberFormatException e) {
+            throw new IOException("La exportacion " + completa + " tiene una \"base\" invalida: " + base, e);
+        }
+    }
+
+    // Lee los cambios, los ordena por secuencia y verifica que sean 1, 2, ... y partan de la misma base
+    private static List<JsonObject> leerCadenaDeCambios(List<Path> cambios) throws IOException {
+        List<JsonObject> leidos = new ArrayList<>();
+        for (Path ruta : cambios) {
+            leidos.add(leerCambios(ruta));
+        }
+        leidos.sort(Comparator.comparingLong(c -> c.get("secuencia").getAsLong()));
+
+        for (int i = 0; i < leidos.size(); i++) {
+            JsonObject cambio = leidos.get(i);
+            if (cambio.get("secuencia").getAsLong() != i + 1) {
+                throw new IOException("Falta la exportacion de cambios con secuencia " + (i + 1) + ".");
+            }
+            if (!cambio.get("base").getAsString().equals(leidos.get(0).get("base").getAsString())) {
+                throw new IOException("Las exportaciones de cambios parten de distintas exportaciones completas.");
+            }
+        }
+        return leidos;
+    }
+
+    private static JsonObject leerCambios(Path ruta) throws IOException {
+        try (BufferedReader reader = Archivos.abrirLectura(ruta)) {
+            JsonObject cambio = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!cambio.has("base") || !cambio.get("base").isJsonPrimitive() || !cambio.has("estado")
+                || !cambio.has("secuencia") || !cambio.has("costoTotal") || !cambio.has("canciones")) {
+                throw new IOException("El archivo " + ruta + " no es una exportacion de cambios.");
+            }
+            for (JsonElement cancion : cambio.getAsJsonArray("canciones")) {
+                if (!cancion.isJsonObject() || !cancion.getAsJsonObject().has("posicion")) {
+                    throw new IOException("El archivo " + ruta + " tiene una cancion sin posicion.");
+                }
+            }
+            return cambio;
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            throw new IOException("El archivo " + ruta + " no es una exportacion de cambios: " + e.getMessage(), e);
+        }
+    }
+}
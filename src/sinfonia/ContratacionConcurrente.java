@@ -0,0 +1,178 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/*
+ Contratacion greedy del recital procesando las canciones en paralelo
+ (ForkJoinPool comun) sin candado global.
+ La capacidad que le queda a cada candidato es un contador atomico: antes de
+ crear un Contrato se reserva un lugar con compareAndSet y, si la cancion no
+ se puede completar, se devuelven todas sus reservas. Asi ningun artista
+ supera su maxCanciones aunque varias canciones lo quieran a la vez.
+
+ A diferencia de contratarParaRecital, cada cancion es todo o nada, y cual
+ cancion se queda con un artista disputado depende del orden de los hilos.
+ Las canciones que fallan se reintentan (ver planificar), asi que una cancion
+ no queda incompleta por una reserva que otra cancion termino devolviendo.
+ Los contratos se registran despues, en orden de setlist, desde un solo hilo.
+ */
+public class ContratacionConcurrente {
+
+    private Recital recital;
+
+    private AtomicIntegerArray capacidad;  // canciones que le quedan a cada candidato, por ID
+    private double[] costo;                // costo efectivo por ID de candidato
+    private int[][] candidatosPorRol;      // por ID de rol, ordenados por costo (null si ninguna cancion lo pide)
+
+    public ContratacionConcurrente(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Calcula en paralelo los contratos de todas las canciones incompletas sin
+     modificar el recital.
+     @return Los contratos de las canciones que se pudieron completar, en orden de setlist.
+     */
+    public List<Contrato> planificar() {
+        List<Cancion> pendientes = new ArrayList<>();
+        List<int[]> faltantes = new ArrayList<>();
+        for (Cancion cancion : this.recital.getSetlist()) {
+            if (!this.recital.estaCompleta(cancion)) {
+                pendientes.add(cancion);
+                faltantes.add(this.recital.calcularFaltantes(cancion));
+            }
+        }
+        this.prepararCandidatos(pendientes, faltantes);
+
+        // Una cancion puede fallar solo porque otra tuvo reservado un candidato un
+        // momento y despues lo devolvio: se reintentan las fallidas mientras alguna
+        // pasada complete canciones, y una ultima pasada secuencial decide las que
+        // quedan sin depender del orden de los hilos
+        List<List<Contrato>> porCancion = new ArrayList<>(Collections.nCopies(pendientes.size(), Collections.emptyList()));
+        List<Integer> fallidas = IntStream.range(0, pendientes.size()).boxed().collect(Collectors.toList());
+        int antes;
+        do {
+            antes = fallidas.size();
+            fallidas = this.intentar(pendientes, faltantes, fallidas, porCancion, true);
+        } while (!fallidas.isEmpty() && fallidas.size() < antes);
+        this.intentar(pendientes, faltantes, fallidas, porCancion, false);
+
+        List<Contrato> plan = new ArrayList<>();
+        for (List<Contrato> contratos : porCancion) {
+            plan.addAll(contratos);
+        }
+        return plan;
+    }
+
+    // Arma los contadores de capacidad y las listas por rol que los hilos comparten
+    private void prepararCandidatos(List<Cancion> pendientes, List<int[]> faltantes) {
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+
+        this.capacidad = new AtomicIntegerArray(candidatos.size());
+        this.costo = new double[candidatos.size()];
+        for (ArtistaExterno candidato : candidatos) {
+            this.costo[candidato.getId()] = this.recital.getCostoEfectivo(candidato);
+            this.capacidad.set(candidato.getId(), candidato.getMaxCanciones() - contratos.cantidadDeArtista(candidato.getId()));
+        }
+
+        int maxRol = -1;
+        for (Cancion cancion : pendientes) {
+            int[] idsRoles = cancion.getIdsRoles();
+            if (idsRoles.length > 0) {
+                maxRol = Math.max(maxRol, idsRoles[idsRoles.length - 1]);
+            }
+        }
+        this.candidatosPorRol = new int[maxRol + 1][];
+        Comparator<Integer> porCosto = Comparator.<Integer>comparingDouble(id -> this.costo[id]).thenComparingInt(id -> id);
+        for (int c = 0; c < pendientes.size(); c++) {
+            int[] idsRoles = pendientes.get(c).getIdsRoles();
+            for (int r = 0; r < idsRoles.length; r++) {
+                int idRol = idsRoles[r];
+                if (faltantes.get(c)[r] == 0 || this.candidatosPorRol[idRol] != null) {
+                    continue;
+                }
+                List<Integer> ids = new ArrayList<>();
+                for (ArtistaExterno candidato : candidatos) {
+                    if (candidato.puedeTocar(idRol) && this.capacidad.get(candidato.getId()) > 0) {
+                        ids.add(candidato.getId());
+                    }
+                }
+                ids.sort(porCosto);
+                this.candidatosPorRol[idRol] = ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    // Hace una pasada sobre las canciones indicadas (indices de pendientes), guarda
+    // los contratos de las que se completaron y devuelve las que fallaron
+    private List<Integer> intentar(List<Cancion> pendientes, List<int[]> faltantes, List<Integer> indices,
+                                   List<List<Contrato>> porCancion, boolean enParalelo) {
+        Stream<Integer> pasada = enParalelo ? indices.parallelStream() : indices.stream();
+        List<List<Contrato>> intentos = pasada
+            .map(i -> this.contratarCancion(pendientes.get(i), faltantes.get(i)))
+            .collect(Collectors.toList());
+
+        List<Integer> fallidas = new ArrayList<>();
+        for (int k = 0; k < indices.size(); k++) {
+            if (intentos.get(k).isEmpty()) {
+                fallidas.add(indices.get(k));
+            } else {
+                porCancion.set(indices.get(k), intentos.get(k));
+            }
+        }
+        return fallidas;
+    }
+
+    // Contrata todos los roles faltantes de una cancion, o ninguno
+    private List<Contrato> contratarCancion(Cancion cancion, int[] faltantes) {
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+        int[] idsRoles = cancion.getIdsRoles();
+
+        List<Integer> reservados = new ArrayList<>();
+        List<Contrato> plan = new ArrayList<>();
+        for (int r : cancion.getOrdenRoles()) {
+            for (int i = 0; i < faltantes[r]; i++) {
+                int elegido = -1;
+                for (int id : this.candidatosPorRol[idsRoles[r]]) {
+                    if (!reservados.contains(id) && !contratos.contiene(id, cancion.getId()) && this.reservar(id)) {
+                        elegido = id;
+                        break;
+                    }
+                }
+                if (elegido == -1) {
+                    // No se puede completar: devolvemos lo reservado para que lo usen otras canciones
+                    for (int id : reservados) {
+                        this.capacidad.incrementAndGet(id);
+                    }
+                    return new ArrayList<>();
+                }
+                reservados.add(elegido);
+                plan.add(new Contrato(candidatos.get(elegido), cancion,
+                    TablaSimbolos.ROLES.getNombre(idsRoles[r]), this.costo[elegido]));
+            }
+        }
+        return plan;
+    }
+
+    // Toma un lugar del candidato si le queda alguno
+    private boolean reservar(int id) {
+        while (true) {
+            int restante = this.capacidad.get(id);
+            if (restante <= 0) {
+                return false;
+            }
+            if (this.capacidad.compareAndSet(id, restante, restante - 1)) {
+                return true;
+            }
+        }
+    }
+}
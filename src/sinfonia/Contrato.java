@@ -10,16 +10,23 @@ public class Contrato {
     private ArtistaExterno artista;
     private Cancion cancion;
     private String rolAsignado;
+    private int idRolAsignado;
     private double costoPagado;
+    
+    // Posiciones dentro de RegistroContratos (-1 si no esta registrado)
+    int posicionGlobal = -1;
+    int posicionEnArtista = -1;
+    int posicionEnCancion = -1;
 
     public Contrato(ArtistaExterno artista, Cancion cancion, String rolAsignado, double costoPagado) {
         this.artista = artista;
         this.cancion = cancion;
         this.rolAsignado = rolAsignado;
+        this.idRolAsignado = TablaSimbolos.ROLES.getId(rolAsignado);
         this.costoPagado = costoPagado;
         
-        // Marcamos al artista como contratado para que no pueda ser entrenado
-        this.artista.setYaContratado();
+        // El artista queda marcado como contratado (y no puede ser entrenado)
+        // recien cuando el Recital registra el contrato.
     }
 
     // --- Getters ---
@@ -38,6 +45,10 @@ public class Contrato {
         return rolAsignado;
     }
 
+    public int getIdRolAsignado() {
+        return idRolAsignado;
+    }
+
     public double getCostoPagado() {
         return costoPagado;
     }
@@ -0,0 +1,591 @@
+package sinfonia;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+/*
+ Diario de escritura anticipada de los cambios del recital: cada contrato
+ registrado o dado de baja y cada entrenamiento se agrega al final de
+ "diario.log", y al volver a abrir el programa se repiten sobre el catalogo
+ recien cargado. Asi una sesion no se pierde si el programa se cierra mal.
+ Cada linea lleva un CRC32, un numero de secuencia, el sello del catalogo,
+ el tipo y sus campos separados por tabulaciones; una linea cortada por una
+ caida (sin fin de linea o con el CRC mal) se descarta al recuperar.
+ Los registros nombran a los artistas por su ID de candidato y a las
+ canciones por su posicion en el setlist, no por nombre ni titulo (puede
+ haber titulos repetidos). Esos numeros solo valen para el mismo catalogo:
+ el sello lo identifica, y un diario grabado con otro catalogo no se repite.
+ Cada registro se valida antes de repetirlo (capacidad del artista, contrato
+ repetido, rol que la cancion requiere y todavia falta); el costo se vuelve a
+ calcular, y los registros que no pasan se omiten informando el motivo.
+ Las lineas se escriben desde un hilo aparte que junta todo lo pendiente y
+ hace un solo fsync por lote, asi una contratacion de todo el recital cuesta
+ un fsync y no uno por contrato. vaciar() espera a que lo emitido este en disco.
+ Cuando el diario acumula muchos registros se compacta: el estado vigente
+ (entrenamientos y contratos) se escribe en "diario.control" y el diario se
+ vacia, asi la recuperacion no crece con la cantidad de operaciones.
+ */
+public class DiarioOperaciones implements EventosRecital, Closeable {
+
+    static final String ARCHIVO_DIARIO = "diario.log";
+    static final String ARCHIVO_CONTROL = "diario.control";
+    static final String ENCABEZADO_CONTROL = "# sinfonia-control 2";
+
+    // Registros del diario a partir de los cuales se compacta
+    static final int UMBRAL_COMPACTACION = 10_000;
+
+    /*
+     Tipos de registro, con la cantidad de campos de cada uno.
+     */
+    private enum Tipo {
+        ALTA(3),          // ID del artista, posicion de la cancion, rol
+        BAJA(3),          // ID del artista, posicion de la cancion, rol
+        ENTRENAMIENTO(2); // ID del artista, rol
+
+        private final int campos;
+
+        Tipo(int campos) {
+            this.campos = campos;
+        }
+    }
+
+    /*
+     Una linea valida del diario o del punto de control.
+     */
+    private static final class Registro {
+        private final long secuencia;
+        private final String sello;
+        private final Tipo tipo;
+        private final String[] campos;
+
+        private Registro(long secuencia, String sello, Tipo tipo, String[] campos) {
+            this.secuencia = secuencia;
+            this.sello = sello;
+            this.tipo = tipo;
+            this.campos = campos;
+        }
+    }
+
+    /*
+     Una linea lista para escribir, con su numero de secuencia.
+     */
+    private static final class Pendiente {
+        private final long secuencia;
+        private final byte[] bytes;
+
+        private Pendiente(long secuencia, byte[] bytes) {
+            this.secuencia = secuencia;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Recital recital;
+    private final Path rutaDiario;
+    private final Path rutaControl;
+    private final int umbralCompactacion;
+    // Sello del catalogo recien cargado (ver selloCatalogo)
+    private final String sello;
+
+    // Entrenamientos vigentes (ID del artista, rol) en el orden en que se hicieron
+    private final List<String[]> entrenamientos = new ArrayList<>();
+
+    private final LinkedBlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+    private FileChannel canal;
+    private Thread hilo;
+
+    // Protegidos por this
+    private long ultimaSecuencia;
+    private long secuenciaEnDisco;
+    private int registrosSinCompactar;
+    private IOException error;
+    private boolean errorInformado;
+
+    private int registrosRecuperados;
+    private int registrosOmitidos;
+
+    private DiarioOperaciones(Recital recital, Path directorio, int umbralCompactacion) {
+        this.recital = recital;
+        this.rutaDiario = directorio.resolve(ARCHIVO_DIARIO);
+        this.rutaControl = directorio.resolve(ARCHIVO_CONTROL);
+        this.umbralCompactacion = umbralCompactacion;
+        this.sello = selloCatalogo(recital);
+    }
+
+    /**
+     Recupera sobre el recital lo grabado en el directorio (punto de control y
+     diario) y deja el diario abierto para seguir grabando. Para que grabe hay
+     que agregarlo a los receptores de eventos del recital.
+     @param recital El recital recien cargado, sin contratos.
+     @param directorio Donde estan (o se crean) el diario y el punto de control.
+     @return El diario abierto.
+     @throws IOException Si no se pueden leer o crear los archivos, el punto de
+     control esta danado o lo grabado corresponde a otro catalogo.
+     */
+    public static DiarioOperaciones abrir(Recital recital, Path directorio) throws IOException {
+        return abrir(recital, directorio, UMBRAL_COMPACTACION);
+    }
+
+    // Permite compactar mas seguido en las pruebas
+    static DiarioOperaciones abrir(Recital recital, Path directorio, int umbralCompactacion) throws IOException {
+        Files.createDirectories(directorio);
+        DiarioOperaciones diario = new DiarioOperaciones(recital, directorio, umbralCompactacion);
+        diario.recuperar();
+        diario.canal = FileChannel.open(diario.rutaDiario, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        Thread nuevo = new Thread(diario::escribirEnDisco, "diario-operaciones");
+        nuevo.setDaemon(true);
+        nuevo.start();
+        diario.hilo = nuevo;
+        return diario;
+    }
+
+    /**
+     Cantidad de registros (del punto de control y del diario) que se
+     repitieron sobre el recital al abrirlo.
+     */
+    public int getRegistrosRecuperados() {
+        return this.registrosRecuperados;
+    }
+
+    /**
+     Cantidad de registros que no se pudieron repetir porque no son validos
+     sobre el estado recuperado (ej. un contrato repetido o un artista sin
+     lugar); cada uno se informa por la salida de errores.
+     */
+    public int getRegistrosOmitidos() {
+        return this.registrosOmitidos;
+    }
+
+    @Override
+    public void contratoRegistrado(Contrato contrato) {
+        this.anotar(Tipo.ALTA, camposContrato(contrato));
+    }
+
+    @Override
+    public void contratoDadoDeBaja(Contrato contrato) {
+        this.anotar(Tipo.BAJA, camposContrato(contrato));
+    }
+
+    @Override
+    public synchronized void artistaEntrenado(ArtistaExterno artista, String rol, double nuevoCosto) {
+        String[] campos = { Integer.toString(artista.getId()), rol };
+        this.entrenamientos.add(campos);
+        this.anotar(Tipo.ENTRENAMIENTO, campos);
+    }
+
+    /**
+     Espera a que todo lo emitido hasta ahora este escrito y sincronizado en
+     disco. Recital y el menu lo invocan entre operaciones, con el recital
+     quieto, asi que es tambien donde se compacta si hace falta.
+     */
+    @Override
+    public synchronized void vaciar() {
+        this.esperarEnDisco(this.ultimaSecuencia);
+        if (this.error != null) {
+            if (!this.errorInformado) {
+                System.err.println("¡ERROR! El diario de operaciones dejo de grabarse: " + this.error.getMessage());
+                this.errorInformado = true;
+            }
+            return;
+        }
+        if (this.registrosSinCompactar >= this.umbralCompactacion) {
+            try {
+                this.compactar();
+            } catch (IOException e) {
+                System.err.println("No se pudo compactar el diario de operaciones: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     Escribe el estado vigente del recital en el punto de control y vacia el
+     diario. Debe llamarse con el recital quieto (entre operaciones).
+     @throws IOException Si no se puede escribir el punto de control.
+     */
+    public synchronized void compactar() throws IOException {
+        // Con el lock tomado no entran registros nuevos: al salir de la espera el hilo de escritura esta ocioso
+        this.esperarEnDisco(this.ultimaSecuencia);
+        if (this.error != null) {
+            throw this.error;
+        }
+
+        Path temporal = Files.createTempFile(this.rutaControl.toAbsolutePath().getParent(), "control", ".tmp");
+        try {
+            try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.WRITE);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(salida), StandardCharsets.UTF_8), 1 << 16)) {
+                writer.write(ENCABEZADO_CONTROL + "\t" + this.ultimaSecuencia);
+                writer.newLine();
+                // Primero los entrenamientos: al repetirlos ningun artista tiene contratos todavia
+                for (String[] entrenamiento : this.entrenamientos) {
+                    writer.write(linea(this.ultimaSecuencia, this.sello, Tipo.ENTRENAMIENTO, entrenamiento));
+                }
+                for (Contrato contrato : this.recital.getContrataciones()) {
+                    writer.write(linea(this.ultimaSecuencia, this.sello, Tipo.ALTA, camposContrato(contrato)));
+                }
+                writer.flush();
+                salida.force(true);
+            }
+            Files.move(temporal, this.rutaControl, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        // Si se cae aca, los registros que quedan en el diario ya estan en el punto de control y se saltean por su secuencia
+        this.canal.truncate(0);
+        this.canal.force(true);
+        this.registrosSinCompactar = 0;
+    }
+
+    /**
+     Espera a que se grabe lo pendiente y cierra el diario.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.esperarEnDisco(this.ultimaSecuencia);
+        }
+        this.hilo.interrupt();
+        try {
+            this.hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.canal.close();
+        synchronized (this) {
+            if (this.error != null) {
+                throw this.error;
+            }
+        }
+    }
+
+    private synchronized void anotar(Tipo tipo, String... campos) {
+        if (this.error != null) {
+            return; // Ya se informo en vaciar; el recital sigue funcionando sin diario
+        }
+        long secuencia = ++this.ultimaSecuencia;
+        this.registrosSinCompactar++;
+        this.cola.add(new Pendiente(secuencia, linea(secuencia, this.sello, tipo, campos).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Se llama con el lock tomado
+    private void esperarEnDisco(long secuencia) {
+        while (this.secuenciaEnDisco < secuencia && this.error == null) {
+            try {
+                this.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Hilo de escritura: junta todo lo pendiente, lo escribe y hace un solo fsync por lote
+    private void escribirEnDisco() {
+        List<Pendiente> lote = new ArrayList<>();
+        try {
+            while (true) {
+                lote.add(this.cola.take());
+                this.cola.drainTo(lote);
+
+                int total = 0;
+                for (Pendiente pendiente : lote) {
+                    total += pendiente.bytes.length;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(total);
+                for (Pendiente pendiente : lote) {
+                    buffer.put(pendiente.bytes);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    this.canal.write(buffer);
+                }
+                this.canal.force(false);
+
+                synchronized (this) {
+                    this.secuenciaEnDisco = lote.get(lote.size() - 1).secuencia;
+                    this.notifyAll();
+                }
+                lote.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            synchronized (this) {
+                this.error = e;
+                this.notifyAll();
+            }
+        }
+    }
+
+    // --- Recuperacion ---
+
+    private void recuperar() throws IOException {
+        // Mientras se repite no se emite nada (ni a la consola ni a este diario)
+        EventosRecital eventosPrevios = this.recital.getEventos();
+        this.recital.setEventos(EventosRecital.NULO);
+        try {
+            long secuenciaControl = 0;
+            List<Registro> registros = new ArrayList<>();
+            if (Files.exists(this.rutaControl)) {
+                secuenciaControl = this.leerControl(registros);
+            }
+            long ultima = this.leerDiario(registros, secuenciaControl);
+            for (Registro registro : registros) {
+                if (!registro.sello.equals(this.sello)) {
+                    throw new IOException("El diario de " + this.rutaDiario.toAbsolutePath().getParent()
+                        + " se grabo con otro catalogo (sello " + registro.sello + ", el cargado es " + this.sello
+                        + "); no se repite. Para empezar de cero hay que borrar esa carpeta.");
+                }
+            }
+            for (Registro registro : registros) {
+                String motivo = this.repetir(registro);
+                if (motivo == null) {
+                    this.registrosRecuperados++;
+                } else {
+                    this.registrosOmitidos++;
+                    System.err.println("Se omite el registro " + registro.secuencia + " del diario (" + registro.tipo + "): " + motivo + ".");
+                }
+            }
+
+            this.ultimaSecuencia = ultima;
+            this.secuenciaEnDisco = ultima;
+        } finally {
+            this.recital.setEventos(eventosPrevios);
+        }
+    }
+
+    // El punto de control se escribe entero antes de reemplazar al anterior: si esta danado es un error
+    private long leerControl(List<Registro> registros) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(this.rutaControl, StandardCharsets.UTF_8)) {
+            String encabezado = reader.readLine();
+            if (encabezado == null || !encabezado.startsWith(ENCABEZADO_CONTROL + "\t")) {
+                throw new IOException("El archivo " + this.rutaControl + " no es un punto de control del diario.");
+            }
+            long secuencia;
+            try {
+                secuencia = Long.parseLong(encabezado.substring(ENCABEZADO_CONTROL.length() + 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Encabezado invalido en " + this.rutaControl + ".");
+            }
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                Registro registro = leerRegistro(linea);
+                if (registro == null) {
+                    throw new IOException("Registro danado en " + this.rutaControl + ": " + linea);
+                }
+                registros.add(registro);
+            }
+            return secuencia;
+        }
+    }
+
+    /**
+     Agrega los registros del diario posteriores al punto de control. Lo que
+     sigue a la primera linea incompleta o danada se descarta y se corta del
+     archivo, para que lo que se grabe despues no quede detras de basura.
+     @return La ultima secuencia usada.
+     */
+    private long leerDiario(List<Registro> registros, long secuenciaControl) throws IOException {
+        long ultima = secuenciaControl;
+        if (!Files.exists(this.rutaDiario)) {
+            return ultima;
+        }
+        byte[] bytes = Files.readAllBytes(this.rutaDiario);
+        int inicio = 0;
+        while (inicio < bytes.length) {
+            int fin = inicio;
+            while (fin < bytes.length && bytes[fin] != '\n') {
+                fin++;
+            }
+            if (fin == bytes.length) {
+                break; // Linea cortada: el programa termino a mitad de la escritura
+            }
+            Registro registro = leerRegistro(new String(bytes, inicio, fin - inicio, StandardCharsets.UTF_8));
+            if (registro == null) {
+                break;
+            }
+            if (registro.secuencia > secuenciaControl) {
+                registros.add(registro);
+                ultima = registro.secuencia;
+                this.registrosSinCompactar++;
+            }
+            inicio = fin + 1;
+        }
+        if (inicio < bytes.length) {
+            try (FileChannel truncar = FileChannel.open(this.rutaDiario, StandardOpenOption.WRITE)) {
+                truncar.truncate(inicio);
+                truncar.force(true);
+            }
+        }
+        return ultima;
+    }
+
+    /**
+     Repite un registro sobre el recital si es valido en el estado actual.
+     @return null si se repitio, o el motivo por el que no se pudo.
+     */
+    private String repetir(Registro registro) {
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        int idArtista = leerEntero(registro.campos[0]);
+        if (idArtista < 0 || idArtista >= candidatos.size()) {
+            return "no hay un candidato con ID " + registro.campos[0];
+        }
+        ArtistaExterno artista = candidatos.get(idArtista);
+        if (registro.tipo == Tipo.ENTRENAMIENTO) {
+            if (!this.recital.entrenarArtista(artista, registro.campos[1])) {
+                return artista.getNombre() + " tiene contratos o ya sabia tocar " + registro.campos[1];
+            }
+            this.entrenamientos.add(registro.campos);
+            return null;
+        }
+
+        List<Cancion> setlist = this.recital.getSetlist();
+        int posicion = leerEntero(registro.campos[1]);
+        if (posicion < 0 || posicion >= setlist.size()) {
+            return "no hay una cancion en la posicion " + registro.campos[1];
+        }
+        Cancion cancion = setlist.get(posicion);
+        String rol = registro.campos[2];
+        int idRol = TablaSimbolos.ROLES.buscarId(rol);
+        int indiceRol = idRol < 0 ? -1 : cancion.indiceDeRol(idRol);
+        if (indiceRol < 0) {
+            return "'" + cancion.getTitulo() + "' no requiere el rol " + rol;
+        }
+
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+        if (registro.tipo == Tipo.BAJA) {
+            for (Contrato contrato : contratos.getDeCancion(cancion.getId())) {
+                if (contrato.getArtista() == artista && contrato.getIdRolAsignado() == idRol) {
+                    this.recital.reemplazarContratos(Collections.singletonList(contrato), Collections.emptyList());
+                    return null;
+                }
+            }
+            return artista.getNombre() + " no tiene un contrato de " + rol + " en '" + cancion.getTitulo() + "'";
+        }
+
+        if (!artista.puedeTocar(idRol)) {
+            return artista.getNombre() + " no sabe tocar " + rol;
+        }
+        if (contratos.contiene(idArtista, cancion.getId())) {
+            return artista.getNombre() + " ya esta contratado en '" + cancion.getTitulo() + "'";
+        }
+        if (contratos.cantidadDeArtista(idArtista) >= artista.getMaxCanciones()) {
+            return artista.getNombre() + " ya tiene su maximo de canciones";
+        }
+        if (this.recital.calcularFaltantes(cancion)[indiceRol] == 0) {
+            return "'" + cancion.getTitulo() + "' ya tiene cubierto el rol " + rol;
+        }
+        // El costo se calcula de nuevo: depende del catalogo y de los entrenamientos ya repetidos
+        Contrato contrato = new Contrato(artista, cancion, rol, this.recital.getCostoEfectivo(artista));
+        this.recital.reemplazarContratos(Collections.emptyList(), Collections.singletonList(contrato));
+        return null;
+    }
+
+    // -1 si el campo no es un entero
+    private static int leerEntero(String campo) {
+        try {
+            return Integer.parseInt(campo);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     Calcula el sello de un catalogo recien cargado: un hash de los artistas
+     base, los candidatos (con roles, bandas, costo y capacidad) y las canciones,
+     en el orden en que estan, porque los registros los nombran por posicion.
+     Usa los hashCode de String, Set y List, que estan especificados y no
+     cambian entre ejecuciones.
+     @param recital El recital recien cargado, antes de entrenar artistas.
+     @return El sello en hexadecimal.
+     */
+    static String selloCatalogo(Recital recital) {
+        long sello = mezclar(mezclar(mezclar(17, recital.getArtistasBase().size()),
+            recital.getArtistasCandidatos().size()), recital.getSetlist().size());
+        for (ArtistaBase artista : recital.getArtistasBase()) {
+            sello = mezclar(mezclar(sello, artista.getNombre().hashCode()), artista.getRolesHistoricos().hashCode());
+        }
+        for (ArtistaExterno artista : recital.getArtistasCandidatos()) {
+            sello = mezclar(mezclar(sello, artista.getNombre().hashCode()), artista.getRolesHistoricos().hashCode());
+            sello = mezclar(mezclar(sello, artista.getBandasHistoricas().hashCode()), Double.hashCode(artista.getCostoBase()));
+            sello = mezclar(sello, artista.getMaxCanciones());
+        }
+        for (Cancion cancion : recital.getSetlist()) {
+            sello = mezclar(mezclar(sello, cancion.getTitulo().hashCode()), cancion.getRolesRequeridos().hashCode());
+        }
+        return Long.toHexString(sello);
+    }
+
+    private static long mezclar(long sello, int valor) {
+        return sello * 1_000_003L + valor;
+    }
+
+    private static String[] camposContrato(Contrato contrato) {
+        return new String[] { Integer.toString(contrato.getArtista().getId()),
+            Integer.toString(contrato.getCancion().getId()), contrato.getRolAsignado() };
+    }
+
+    // --- Formato de las lineas ---
+
+    private static String linea(long secuencia, String sello, Tipo tipo, String... campos) {
+        StringBuilder contenido = new StringBuilder().append(secuencia).append('\t').append(sello).append('\t').append(tipo.name());
+        for (String campo : campos) {
+            contenido.append('\t').append(TrazaSesion.escapar(campo));
+        }
+        String texto = contenido.toString();
+        return Long.toHexString(crc(texto)) + "\t" + texto + "\n";
+    }
+
+    /**
+     Interpreta una linea del diario o del punto de control.
+     @return El registro, o null si el CRC no coincide (la linea quedo cortada).
+     @throws IOException Si el CRC coincide pero la linea no tiene el formato
+     esperado (ej. la grabo otra version del programa).
+     */
+    private static Registro leerRegistro(String linea) throws IOException {
+        int tab = linea.indexOf('\t');
+        String texto = linea.substring(tab + 1);
+        try {
+            if (tab < 0 || Long.parseLong(linea.substring(0, tab), 16) != crc(texto)) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        try {
+            String[] campos = texto.split("\t", -1);
+            Tipo tipo = Tipo.valueOf(campos[2]);
+            if (campos.length - 3 != tipo.campos) {
+                throw new IllegalArgumentException("cantidad de campos");
+            }
+            String[] valores = new String[tipo.campos];
+            for (int i = 0; i < valores.length; i++) {
+                valores[i] = TrazaSesion.desescapar(campos[i + 3]);
+            }
+            return new Registro(Long.parseLong(campos[0]), campos[1], tipo, valores);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Registro del diario con un formato desconocido: " + linea);
+        }
+    }
+
+    private static long crc(String texto) {
+        CRC32 crc = new CRC32();
+        crc.update(texto.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,137 @@
+package sinfonia;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Reparte cada evento del recital entre varios receptores, en el orden en que
+ se pasaron (ej. la consola y el diario de operaciones).
+ */
+public class EventosCompuestos implements EventosRecital {
+
+    private final List<EventosRecital> receptores;
+
+    public EventosCompuestos(EventosRecital... receptores) {
+        this.receptores = Arrays.asList(receptores.clone());
+    }
+
+    @Override
+    public void inicioContratacion(Cancion cancion) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.inicioContratacion(cancion);
+        }
+    }
+
+    @Override
+    public void artistaContratado(Contrato contrato) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.artistaContratado(contrato);
+        }
+    }
+
+    @Override
+    public void busquedaArtista(Cancion cancion, String rol, int numero, int cantidad) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.busquedaArtista(cancion, rol, numero, cantidad);
+        }
+    }
+
+    @Override
+    public void rolSinCubrir(Cancion cancion, String rol) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.rolSinCubrir(cancion, rol);
+        }
+    }
+
+    @Override
+    public void finContratacion(ResultadoContratacion.ResultadoCancion resultado) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.finContratacion(resultado);
+        }
+    }
+
+    @Override
+    public void rolesInalcanzables(Map<Cancion, Map<String, Integer>> sinCubrir) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.rolesInalcanzables(sinCubrir);
+        }
+    }
+
+    @Override
+    public void finContratacionRecital(String descripcion, ResultadoContratacion resultado) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.finContratacionRecital(descripcion, resultado);
+        }
+    }
+
+    @Override
+    public void finMejora(MejoradorContrataciones.ResultadoMejora resultado) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.finMejora(resultado);
+        }
+    }
+
+    @Override
+    public void artistaNoEncontrado(String nombre) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.artistaNoEncontrado(nombre);
+        }
+    }
+
+    @Override
+    public void artistaEntrenado(ArtistaExterno artista, String rol, double nuevoCosto) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.artistaEntrenado(artista, rol, nuevoCosto);
+        }
+    }
+
+    @Override
+    public void entrenamientoRechazado(ArtistaExterno artista, String rol, boolean yaContratado) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.entrenamientoRechazado(artista, rol, yaContratado);
+        }
+    }
+
+    @Override
+    public void contratoQuitado(Contrato contrato) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.contratoQuitado(contrato);
+        }
+    }
+
+    @Override
+    public void contratoNoEncontrado(Contrato contrato) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.contratoNoEncontrado(contrato);
+        }
+    }
+
+    @Override
+    public void contratosDeArtistaQuitados(ArtistaExterno artista, int cantidad) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.contratosDeArtistaQuitados(artista, cantidad);
+        }
+    }
+
+    @Override
+    public void contratoRegistrado(Contrato contrato) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.contratoRegistrado(contrato);
+        }
+    }
+
+    @Override
+    public void contratoDadoDeBaja(Contrato contrato) {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.contratoDadoDeBaja(contrato);
+        }
+    }
+
+    @Override
+    public void vaciar() {
+        for (EventosRecital receptor : this.receptores) {
+            receptor.vaciar();
+        }
+    }
+}
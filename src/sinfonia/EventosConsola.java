@@ -0,0 +1,248 @@
+package sinfonia;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/*
+ Receptor de eventos que imprime por consola los mismos mensajes que
+ mostraba el menu, pero desde un hilo aparte: quien emite solo encola el
+ evento, y el armado de los strings y la escritura se hacen en el hilo de
+ consola, que junta todos los eventos pendientes y los escribe de una vez.
+ */
+public class EventosConsola implements EventosRecital {
+
+    private final LinkedBlockingQueue<Evento> cola;
+    private final PrintStream salida;
+    private final PrintStream errores;
+    private volatile Thread hilo;
+
+    public EventosConsola() {
+        this(System.out, System.err);
+    }
+
+    public EventosConsola(PrintStream salida, PrintStream errores) {
+        this.cola = new LinkedBlockingQueue<>();
+        this.salida = salida;
+        this.errores = errores;
+    }
+
+    @Override
+    public void inicioContratacion(Cancion cancion) {
+        this.encolar((out, err) -> out.append("\nIniciando contratacion para '").append(cancion.getTitulo()).append("'...\n"));
+    }
+
+    @Override
+    public void artistaContratado(Contrato contrato) {
+        this.encolar((out, err) -> out.append("\t\t*Contratado: ").append(contrato.getArtista().getNombre())
+            .append(" para ").append(contrato.getRolAsignado()).append(" por $").append(contrato.getCostoPagado()).append('\n'));
+    }
+
+    @Override
+    public void busquedaArtista(Cancion cancion, String rol, int numero, int cantidad) {
+        this.encolar((out, err) -> out.append("\n\t-Buscando artista para ").append(rol)
+            .append(" (").append(numero).append('/').append(cantidad).append(")...\n"));
+    }
+
+    @Override
+    public void rolSinCubrir(Cancion cancion, String rol) {
+        this.encolar((out, err) -> err.append("¡ERROR! No se encontraron artistas disponibles para el rol '")
+            .append(rol).append("' en la cancion '").append(cancion.getTitulo()).append("'.\n"));
+    }
+
+    @Override
+    public void finContratacion(ResultadoContratacion.ResultadoCancion resultado) {
+        if (resultado.getEstado() != ResultadoContratacion.Estado.INCOMPLETA) {
+            this.encolar((out, err) -> out.append("\nContratacion finalizada para '")
+                .append(resultado.getCancion().getTitulo()).append("'\n"));
+        }
+    }
+
+    @Override
+    public void rolesInalcanzables(Map<Cancion, Map<String, Integer>> sinCubrir) {
+        this.encolar((out, err) -> {
+            err.append("Aviso: con los candidatos disponibles no se pueden cubrir estos roles:\n");
+            for (Map.Entry<Cancion, Map<String, Integer>> entrada : sinCubrir.entrySet()) {
+                err.append("- '").append(entrada.getKey().getTitulo()).append("': ").append(entrada.getValue()).append('\n');
+            }
+        });
+    }
+
+    @Override
+    public void finContratacionRecital(String descripcion, ResultadoContratacion resultado) {
+        this.encolar((out, err) -> {
+            String titulo = "===== " + descripcion + " finalizada =====";
+            int cancionesFallidas = resultado.contar(ResultadoContratacion.Estado.INCOMPLETA);
+            out.append('\n').append(titulo).append('\n');
+            out.append("Resumen:\n");
+            out.append('-').append(resultado.getCanciones().size() - cancionesFallidas).append(" canciones procesadas.\n");
+            out.append('-').append(resultado.getContratos().size()).append(" contratos realizados.\n");
+            if (cancionesFallidas > 0) {
+                out.append('-').append(cancionesFallidas).append(" canciones no pudieron completarse por falta de artistas.\n");
+            }
+            out.append("\n-Total Gastado: $").append(resultado.getCostoTotal()).append('\n');
+            out.append("=".repeat(titulo.length())).append('\n');
+        });
+    }
+
+    @Override
+    public void finMejora(MejoradorContrataciones.ResultadoMejora resultado) {
+        this.encolar((out, err) -> out
+            .append("\n===== Mejora de contrataciones finalizada =====\n")
+            .append("Resumen:\n")
+            .append('-').append(resultado.getContratosReemplazados()).append(" contratos reasignados.\n")
+            .append("-Costo antes: $").append(resultado.getCostoAntes()).append('\n')
+            .append("-Costo despues: $").append(resultado.getCostoDespues()).append('\n')
+            .append("\n-Ahorro: $").append(resultado.getCostoAntes() - resultado.getCostoDespues()).append('\n')
+            .append("===============================================\n"));
+    }
+
+    @Override
+    public void artistaNoEncontrado(String nombre) {
+        this.encolar((out, err) -> err.append("Error: No se encontro ningún artista candidato con el nombre '")
+            .append(nombre).append("'.\n"));
+    }
+
+    @Override
+    public void artistaEntrenado(ArtistaExterno artista, String rol, double nuevoCosto) {
+        this.encolar((out, err) -> out
+            .append(artista.getNombre()).append(" ha sido entrenado para ").append(rol)
+            .append(". Nuevo costo: ").append(nuevoCosto).append('\n')
+            .append("Entrenamiento de ").append(artista.getNombre()).append(" completado.\n"));
+    }
+
+    @Override
+    public void entrenamientoRechazado(ArtistaExterno artista, String rol, boolean yaContratado) {
+        this.encolar((out, err) -> {
+            if (yaContratado) {
+                out.append("Error: No se puede entrenar a ").append(artista.getNombre()).append(" porque ya fue contratado.\n");
+            } else {
+                out.append(artista.getNombre()).append(" ya sabía tocar ").append(rol).append(".\n");
+            }
+            out.append("El entrenamiento de ").append(artista.getNombre()).append(" no pudo completarse.\n");
+        });
+    }
+
+    @Override
+    public void contratoQuitado(Contrato contrato) {
+        this.encolar((out, err) -> out.append("\nContrato eliminado: ").append(contrato.getArtista().getNombre())
+            .append(" en '").append(contrato.getCancion().getTitulo())
+            .append("' (Rol: ").append(contrato.getRolAsignado()).append(")\n"));
+    }
+
+    @Override
+    public void contratoNoEncontrado(Contrato contrato) {
+        this.encolar((out, err) -> err.append("Error: No se pudo encontrar el contrato en la lista.\n"));
+    }
+
+    @Override
+    public void contratosDeArtistaQuitados(ArtistaExterno artista, int cantidad) {
+        this.encolar((out, err) -> {
+            if (cantidad > 0) {
+                out.append("Se eliminaron ").append(cantidad).append(" contratos de ").append(artista.getNombre()).append(".\n")
+                    .append("El artista ahora esta disponible y puede ser entrenado.\n");
+            } else {
+                out.append(artista.getNombre()).append(" no tenia contratos para eliminar.\n");
+            }
+        });
+    }
+
+    @Override
+    public void vaciar() {
+        if (this.hilo == null) {
+            return; // Nunca se emitio nada
+        }
+        Marca marca = new Marca();
+        this.cola.add(marca);
+        try {
+            marca.listo.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void encolar(Evento evento) {
+        if (this.hilo == null) {
+            this.iniciar();
+        }
+        this.cola.add(evento);
+    }
+
+    // El hilo se crea con el primer evento y es daemon para no impedir que termine el programa
+    private synchronized void iniciar() {
+        if (this.hilo != null) {
+            return;
+        }
+        Thread nuevo = new Thread(this::procesar, "eventos-consola");
+        nuevo.setDaemon(true);
+        nuevo.start();
+        this.hilo = nuevo;
+    }
+
+    private void procesar() {
+        List<Evento> lote = new ArrayList<>();
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        List<Marca> marcas = new ArrayList<>();
+        try {
+            while (true) {
+                lote.add(this.cola.take());
+                this.cola.drainTo(lote);
+
+                for (Evento evento : lote) {
+                    if (evento instanceof Marca) {
+                        marcas.add((Marca) evento);
+                    } else {
+                        try {
+                            evento.escribir(out, err);
+                        } catch (RuntimeException e) {
+                            // Un evento que falla no puede terminar el hilo: vaciar() esperaria para siempre
+                            err.append("Error al mostrar un evento: ").append(e).append('\n');
+                        }
+                    }
+                }
+                try {
+                    if (out.length() > 0) {
+                        this.salida.print(out);
+                        this.salida.flush();
+                    }
+                    if (err.length() > 0) {
+                        this.errores.print(err);
+                        this.errores.flush();
+                    }
+                } finally {
+                    // Las marcas se liberan recien cuando lo anterior ya esta escrito
+                    for (Marca marca : marcas) {
+                        marca.listo.countDown();
+                    }
+                    lote.clear();
+                    marcas.clear();
+                    out.setLength(0);
+                    err.setLength(0);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+     Un evento ya capturado, que escribe su mensaje en el buffer de salida o de errores.
+     */
+    private interface Evento {
+        void escribir(StringBuilder salida, StringBuilder errores);
+    }
+
+    /*
+     Evento vacio que usa vaciar() para saber cuando se escribio todo lo anterior.
+     */
+    private static final class Marca implements Evento {
+        private final CountDownLatch listo = new CountDownLatch(1);
+
+        @Override
+        public void escribir(StringBuilder salida, StringBuilder errores) { }
+    }
+}
@@ -0,0 +1,136 @@
+package sinfonia;
+
+import java.util.Map;
+
+/*
+ Receptor de los eventos que emite Recital mientras contrata, entrena o
+ quita contratos. Todos los metodos tienen una implementacion vacia, asi
+ que cada receptor redefine solo los que le interesan.
+ Los eventos llevan los valores del momento (ej. el costo nuevo) para que un
+ receptor asincronico no tenga que volver a leer objetos que pueden cambiar.
+ */
+public interface EventosRecital {
+
+    // Receptor que descarta todo: no formatea ni reserva memoria
+    EventosRecital NULO = new EventosRecital() { };
+
+    /**
+     Se empieza a contratar para una cancion (solo desde contratarParaCancion).
+     @param cancion La cancion.
+     */
+    default void inicioContratacion(Cancion cancion) { }
+
+    /**
+     Se contrato a un artista para un rol de una cancion.
+     @param contrato El contrato nuevo.
+     */
+    default void artistaContratado(Contrato contrato) { }
+
+    /**
+     Se busca un candidato para uno de los lugares que faltan de un rol.
+     @param cancion La cancion.
+     @param rol El rol buscado.
+     @param numero Que lugar de ese rol se busca, desde 1.
+     @param cantidad Cuantos lugares de ese rol faltaban al empezar.
+     */
+    default void busquedaArtista(Cancion cancion, String rol, int numero, int cantidad) { }
+
+    /**
+     No hubo candidatos para un rol de una cancion.
+     @param cancion La cancion.
+     @param rol El rol que no se pudo cubrir.
+     */
+    default void rolSinCubrir(Cancion cancion, String rol) { }
+
+    /**
+     Termino la contratacion de una cancion (solo desde contratarParaCancion).
+     @param resultado El resultado de la cancion.
+     */
+    default void finContratacion(ResultadoContratacion.ResultadoCancion resultado) { }
+
+    /**
+     Antes de contratar todo el recital se detecto que algunos roles no se pueden
+     cubrir con los candidatos disponibles (ver Recital.verificarFactibilidad).
+     @param sinCubrir cancion -> (rol -> cantidad que no se puede cubrir).
+     */
+    default void rolesInalcanzables(Map<Cancion, Map<String, Integer>> sinCubrir) { }
+
+    /**
+     Termino una contratacion de todo el recital (contratarParaRecital y sus
+     variantes optima, en paralelo y concurrente).
+     @param descripcion Que contratacion se hizo (ej. "Contratacion optima del recital").
+     @param resultado El resultado de cada cancion que estaba incompleta.
+     */
+    default void finContratacionRecital(String descripcion, ResultadoContratacion resultado) { }
+
+    /**
+     Termino una mejora de las contrataciones (Recital.mejorarContrataciones).
+     @param resultado El resultado de la mejora.
+     */
+    default void finMejora(MejoradorContrataciones.ResultadoMejora resultado) { }
+
+    /**
+     Se pidio entrenar a un artista que no esta entre los candidatos.
+     @param nombre El nombre buscado.
+     */
+    default void artistaNoEncontrado(String nombre) { }
+
+    /**
+     Un artista aprendio un rol nuevo.
+     @param artista El artista entrenado.
+     @param rol El rol nuevo.
+     @param nuevoCosto Su costo de contratacion despues del entrenamiento.
+     */
+    default void artistaEntrenado(ArtistaExterno artista, String rol, double nuevoCosto) { }
+
+    /**
+     Un entrenamiento no se pudo hacer.
+     @param artista El artista.
+     @param rol El rol pedido.
+     @param yaContratado true si fallo porque el artista ya tiene contratos,
+     false si ya sabia tocar el rol.
+     */
+    default void entrenamientoRechazado(ArtistaExterno artista, String rol, boolean yaContratado) { }
+
+    /**
+     Se quito un contrato.
+     @param contrato El contrato quitado.
+     */
+    default void contratoQuitado(Contrato contrato) { }
+
+    /**
+     Se pidio quitar un contrato que no esta vigente.
+     @param contrato El contrato pedido.
+     */
+    default void contratoNoEncontrado(Contrato contrato) { }
+
+    /**
+     Se quitaron todos los contratos de un artista.
+     @param artista El artista.
+     @param cantidad Cuantos contratos se quitaron (0 si no tenia).
+     */
+    default void contratosDeArtistaQuitados(ArtistaExterno artista, int cantidad) { }
+
+    /**
+     Se registro un contrato, sin importar la operacion que lo creo (cancion por
+     cancion, los planes de todo el recital o una mejora). A diferencia de
+     artistaContratado se emite para todos los contratos; es para los receptores
+     que siguen el estado, como DiarioOperaciones, y no para mostrar mensajes.
+     @param contrato El contrato registrado.
+     */
+    default void contratoRegistrado(Contrato contrato) { }
+
+    /**
+     Se dio de baja un contrato, sin importar la operacion que lo quito
+     (quitarContrato, quitarTodosLosContratosDeArtista o una mejora).
+     @param contrato El contrato dado de baja.
+     */
+    default void contratoDadoDeBaja(Contrato contrato) { }
+
+    /**
+     Espera a que se terminen de procesar los eventos ya emitidos. Recital lo
+     invoca al terminar cada contratacion de todo el recital y cada mejora, para que el resumen
+     quede escrito antes de volver al menu.
+     */
+    default void vaciar() { }
+}
@@ -0,0 +1,357 @@
+package sinfonia;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.gson.stream.JsonWriter;
+
+/*
+ Genera catalogos sinteticos grandes (artistas, artistas base y setlist) con
+ una semilla fija, para probar y perfilar el recital a escala real.
+ Los roles se eligen con una distribucion de Zipf: unos pocos roles (voz,
+ guitarra...) aparecen en casi todas las canciones y en muchos artistas, y el
+ resto es cada vez mas raro. Con la misma configuracion y semilla el
+ catalogo generado es siempre el mismo.
+ Se usa asi:
+   new GeneradorCatalogo(100000, 20000, 42).conFraccionBase(0.001).escribirJson(directorio);
+ o desde la linea de comandos:
+   java sinfonia.GeneradorCatalogo <directorio> <artistas> <canciones> [semilla]
+ */
+public class GeneradorCatalogo {
+
+    private final int artistas;
+    private final int canciones;
+    private final long semilla;
+
+    private int cantidadRoles = 40;
+    private int cantidadBandas = 2000;
+    private double exponenteZipf = 1.0;
+    private double fraccionBase = 0.01;
+    private int minRolesPorArtista = 1;
+    private int maxRolesPorArtista = 3;
+    private int minRolesPorCancion = 3;
+    private int maxRolesPorCancion = 6;
+    private int minBandasPorArtista = 1;
+    private int maxBandasPorArtista = 2;
+    private int costoMinimo = 100;
+    private int costoMaximo = 5000;
+    private int minMaxCanciones = 1;
+    private int maxMaxCanciones = 10;
+
+    /**
+     Crea un generador con los valores por defecto para todo lo demas.
+     @param artistas Cantidad total de artistas (base y candidatos).
+     @param canciones Cantidad de canciones del setlist.
+     @param semilla Semilla del generador de numeros al azar.
+     */
+    public GeneradorCatalogo(int artistas, int canciones, long semilla) {
+        if (artistas < 0 || canciones < 0) {
+            throw new IllegalArgumentException("La cantidad de artistas y canciones no puede ser negativa.");
+        }
+        this.artistas = artistas;
+        this.canciones = canciones;
+        this.semilla = semilla;
+    }
+
+    /**
+     Cantidad de roles distintos y cuan sesgada es su popularidad.
+     @param cantidad Cantidad de roles distintos ("rol 0" es el mas popular).
+     @param exponenteZipf Exponente de la distribucion (0 = todos igual de probables).
+     @return Este generador.
+     */
+    public GeneradorCatalogo conRoles(int cantidad, double exponenteZipf) {
+        if (cantidad < 1 || exponenteZipf < 0) {
+            throw new IllegalArgumentException("Configuracion de roles invalida.");
+        }
+        this.cantidadRoles = cantidad;
+        this.exponenteZipf = exponenteZipf;
+        return this;
+    }
+
+    /**
+     Cantidad de bandas distintas y cuantas tiene cada artista.
+     @return Este generador.
+     */
+    public GeneradorCatalogo conBandas(int cantidad, int minPorArtista, int maxPorArtista) {
+        validarRango(minPorArtista, maxPorArtista);
+        if (cantidad < 1) {
+            throw new IllegalArgumentException("Tiene que haber al menos una banda.");
+        }
+        this.cantidadBandas = cantidad;
+        this.minBandasPorArtista = minPorArtista;
+        this.maxBandasPorArtista = maxPorArtista;
+        return this;
+    }
+
+    /**
+     Cuantos roles distintos sabe tocar cada artista.
+     @return Este generador.
+     */
+    public GeneradorCatalogo conRolesPorArtista(int minimo, int maximo) {
+        validarRango(minimo, maximo);
+        this.minRolesPorArtista = minimo;
+        this.maxRolesPorArtista = maximo;
+        return this;
+    }
+
+    /**
+     Cuantos roles distintos requiere cada cancion.
+     @return Este generador.
+     */
+    public GeneradorCatalogo conRolesPorCancion(int minimo, int maximo) {
+        validarRango(minimo, maximo);
+        this.minRolesPorCancion = minimo;
+        this.maxRolesPorCancion = maximo;
+        return this;
+    }
+
+    /**
+     Rango de costos de contratacion de los candidatos (enteros, uniformes).
+     @return Este generador.
+     */
+    public GeneradorCatalogo conCostos(int minimo, int maximo) {
+        validarRango(minimo, maximo);
+        this.costoMinimo = minimo;
+        this.costoMaximo = maximo;
+        return this;
+    }
+
+    /**
+     Rango del maximo de canciones en que puede tocar cada candidato.
+     @return Este generador.
+     */
+    public GeneradorCatalogo conMaxCanciones(int minimo, int maximo) {
+        validarRango(minimo, maximo);
+        if (minimo < 1) {
+            throw new IllegalArgumentException("Cada candidato tiene que poder tocar al menos una cancion.");
+        }
+        this.minMaxCanciones = minimo;
+        this.maxMaxCanciones = maximo;
+        return this;
+    }
+
+    /**
+     Fraccion de los artistas que son artistas base (de la discografica).
+     @param fraccion Valor entre 0 y 1.
+     @return Este generador.
+     */
+    public GeneradorCatalogo conFraccionBase(double fraccion) {
+        if (fraccion < 0 || fraccion > 1) {
+            throw new IllegalArgumentException("La fraccion de artistas base tiene que estar entre 0 y 1.");
+        }
+        this.fraccionBase = fraccion;
+        return this;
+    }
+
+    /**
+     Devuelve cuantos de los artistas generados son artistas base.
+     Son siempre los primeros del catalogo.
+     @return La cantidad de artistas base.
+     */
+    public int getCantidadBase() {
+        return (int) Math.round(this.artistas * this.fraccionBase);
+    }
+
+    /**
+     Escribe el catalogo en los tres archivos que lee CargarDatos, con el mismo
+     formato que los del proyecto. Los artistas y canciones se escriben a medida
+     que se generan, asi que no hace falta tenerlos todos en memoria.
+     @param directorio Directorio donde se crean los archivos (se crea si no existe).
+     @return Las rutas de artistas.json, recital.json y artistas-discografica.json, en ese orden.
+     @throws IOException Si no se pueden escribir los archivos.
+     */
+    public Path[] escribirJson(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+        Path[] rutas = {
+            directorio.resolve("artistas.json"),
+            directorio.resolve("recital.json"),
+            directorio.resolve("artistas-discografica.json")
+        };
+        Sorteo sorteo = new Sorteo();
+        int cantidadBase = this.getCantidadBase();
+
+        try (JsonWriter json = abrir(rutas[0])) {
+            json.beginArray();
+            for (int i = 0; i < this.artistas; i++) {
+                boolean esBase = i < cantidadBase;
+                json.beginObject();
+                json.name("nombre").value(nombreArtista(i, esBase));
+                escribirLista(json.name("roles"), sorteo.rolesArtista());
+                escribirLista(json.name("bandas"), sorteo.bandas());
+                json.name("costo").value(esBase ? 0 : sorteo.costo());
+                json.name("maxCanciones").value(esBase ? 100 : sorteo.maxCanciones());
+                json.endObject();
+            }
+            json.endArray();
+        }
+        try (JsonWriter json = abrir(rutas[1])) {
+            json.beginArray();
+            for (int i = 0; i < this.canciones; i++) {
+                json.beginObject();
+                json.name("titulo").value(nombreCancion(i));
+                escribirLista(json.name("rolesRequeridos"), sorteo.rolesCancion());
+                json.endObject();
+            }
+            json.endArray();
+        }
+        try (JsonWriter json = abrir(rutas[2])) {
+            json.beginArray();
+            for (int i = 0; i < cantidadBase; i++) {
+                json.value(nombreArtista(i, true));
+            }
+            json.endArray();
+        }
+        return rutas;
+    }
+
+    /**
+     Arma directamente en memoria el mismo recital que se obtiene al cargar los
+     archivos de escribirJson con la misma configuracion y semilla.
+     @return Un recital nuevo, sin contratos.
+     */
+    public Recital crearRecital() {
+        Sorteo sorteo = new Sorteo();
+        int cantidadBase = this.getCantidadBase();
+        List<ArtistaBase> artistasBase = new ArrayList<>();
+        List<ArtistaExterno> artistasCandidatos = new ArrayList<>();
+        for (int i = 0; i < this.artistas; i++) {
+            boolean esBase = i < cantidadBase;
+            String nombre = nombreArtista(i, esBase);
+            List<String> roles = sorteo.rolesArtista();
+            List<String> bandas = sorteo.bandas();
+            // Se sortean igual que en escribirJson para que los datos coincidan
+            int costo = esBase ? 0 : sorteo.costo();
+            int maxCanciones = esBase ? 100 : sorteo.maxCanciones();
+            if (esBase) {
+                artistasBase.add(new ArtistaBase(nombre, roles, bandas));
+            } else {
+                artistasCandidatos.add(new ArtistaExterno(nombre, roles, bandas, costo, maxCanciones));
+            }
+        }
+        List<Cancion> setlist = new ArrayList<>();
+        for (int i = 0; i < this.canciones; i++) {
+            setlist.add(new Cancion(nombreCancion(i), sorteo.rolesCancion()));
+        }
+        return new Recital(setlist, artistasBase, artistasCandidatos);
+    }
+
+    /*
+     Estado del sorteo de una generacion: el Random con la semilla y la tabla
+     acumulada de la distribucion de Zipf para elegir roles.
+     */
+    private final class Sorteo {
+        private final Random azar = new Random(GeneradorCatalogo.this.semilla);
+        private final double[] acumulada = new double[GeneradorCatalogo.this.cantidadRoles];
+
+        Sorteo() {
+            double suma = 0;
+            for (int i = 0; i < this.acumulada.length; i++) {
+                suma += 1.0 / Math.pow(i + 1, GeneradorCatalogo.this.exponenteZipf);
+                this.acumulada[i] = suma;
+            }
+            for (int i = 0; i < this.acumulada.length; i++) {
+                this.acumulada[i] /= suma;
+            }
+        }
+
+        List<String> rolesArtista() {
+            return this.roles(entre(GeneradorCatalogo.this.minRolesPorArtista, GeneradorCatalogo.this.maxRolesPorArtista));
+        }
+
+        List<String> rolesCancion() {
+            return this.roles(entre(GeneradorCatalogo.this.minRolesPorCancion, GeneradorCatalogo.this.maxRolesPorCancion));
+        }
+
+        List<String> bandas() {
+            int cantidad = Math.min(entre(GeneradorCatalogo.this.minBandasPorArtista, GeneradorCatalogo.this.maxBandasPorArtista),
+                GeneradorCatalogo.this.cantidadBandas);
+            Set<String> bandas = new LinkedHashSet<>();
+            while (bandas.size() < cantidad) {
+                bandas.add("Banda " + this.azar.nextInt(GeneradorCatalogo.this.cantidadBandas));
+            }
+            return new ArrayList<>(bandas);
+        }
+
+        int costo() {
+            return entre(GeneradorCatalogo.this.costoMinimo, GeneradorCatalogo.this.costoMaximo);
+        }
+
+        int maxCanciones() {
+            return entre(GeneradorCatalogo.this.minMaxCanciones, GeneradorCatalogo.this.maxMaxCanciones);
+        }
+
+        // Roles distintos sorteados con Zipf (si se repite uno, se vuelve a sortear)
+        private List<String> roles(int cantidad) {
+            cantidad = Math.min(cantidad, GeneradorCatalogo.this.cantidadRoles);
+            Set<String> roles = new LinkedHashSet<>();
+            while (roles.size() < cantidad) {
+                roles.add("rol " + this.rolZipf());
+            }
+            return new ArrayList<>(roles);
+        }
+
+        private int rolZipf() {
+            int posicion = Arrays.binarySearch(this.acumulada, this.azar.nextDouble());
+            int rol = posicion >= 0 ? posicion : -posicion - 1;
+            return Math.min(rol, this.acumulada.length - 1);
+        }
+
+        private int entre(int minimo, int maximo) {
+            return minimo + this.azar.nextInt(maximo - minimo + 1);
+        }
+    }
+
+    private static String nombreArtista(int indice, boolean esBase) {
+        return (esBase ? "Artista base " : "Artista ") + indice;
+    }
+
+    private static String nombreCancion(int indice) {
+        return "Cancion " + indice;
+    }
+
+    private static JsonWriter abrir(Path ruta) throws IOException {
+        Writer writer = Files.newBufferedWriter(ruta);
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent(" ");
+        return json;
+    }
+
+    private static void escribirLista(JsonWriter json, List<String> valores) throws IOException {
+        json.beginArray();
+        for (String valor : valores) {
+            json.value(valor);
+        }
+        json.endArray();
+    }
+
+    private static void validarRango(int minimo, int maximo) {
+        if (minimo < 0 || maximo < minimo) {
+            throw new IllegalArgumentException("Rango invalido: " + minimo + ".." + maximo);
+        }
+    }
+
+    /**
+     Genera un catalogo desde la linea de comandos.
+     @param args directorio, cantidad de artistas, cantidad de canciones y semilla (opcional).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Uso: java sinfonia.GeneradorCatalogo <directorio> <artistas> <canciones> [semilla]");
+            return;
+        }
+        long semilla = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        GeneradorCatalogo generador = new GeneradorCatalogo(Integer.parseInt(args[1]), Integer.parseInt(args[2]), semilla);
+        for (Path ruta : generador.escribirJson(Paths.get(args[0]))) {
+            System.out.println("Escrito " + ruta);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ Indice de artistas candidatos por rol, ordenado por costo efectivo
+ (con el recargo por entrenamientos y el descuento por banda ya aplicados).
+ Cada rol tiene una cola de prioridad que se arma la primera vez que se consulta.
+ La invalidacion es perezosa: cuando un artista cambia (llega a su limite de
+ canciones, se entrena o se le quitan contratos) se incrementa su version y
+ las entradas viejas se descartan recien al llegar al tope de la cola.
+ Los entrenamientos deben hacerse a traves de Recital.entrenarArtista para
+ que el indice se entere de los roles nuevos.
+ */
+public class IndiceCandidatos {
+
+    private Recital recital;
+    private RegistroContratos contratos;
+    private List<ArtistaExterno> candidatos;
+
+    private int[] versiones;       // version vigente de cada candidato, por ID
+    private boolean[] disponibles; // false si el candidato alcanzo su maxCanciones
+    private List<PriorityQueue<Entrada>> colasPorRol; // por ID de rol, null si aun no se armo
+
+    public IndiceCandidatos(Recital recital, RegistroContratos contratos) {
+        this.recital = recital;
+        this.contratos = contratos;
+        this.candidatos = recital.getArtistasCandidatos();
+        this.versiones = new int[this.candidatos.size()];
+        this.disponibles = new boolean[this.candidatos.size()];
+        this.colasPorRol = new ArrayList<>();
+
+        for (ArtistaExterno candidato : this.candidatos) {
+            this.disponibles[candidato.getId()] = this.tieneCapacidad(candidato);
+        }
+    }
+
+    /**
+     Busca al candidato mas barato que pueda tocar un rol, tenga capacidad
+     y no este contratado ya en la cancion. En caso de empate gana el de menor ID.
+     @param idRol El ID del rol buscado.
+     @param idCancion El ID de la cancion para la que se contrata.
+     @return El candidato elegido, o null si no hay ninguno disponible.
+     */
+    public ArtistaExterno buscarMasBarato(int idRol, int idCancion) {
+        PriorityQueue<Entrada> cola = this.getCola(idRol);
+
+        // Los que ya estan en esta cancion se apartan y se devuelven al final
+        List<Entrada> apartados = new ArrayList<>(0);
+        ArtistaExterno elegido = null;
+
+        while (!cola.isEmpty()) {
+            Entrada tope = cola.peek();
+            ArtistaExterno candidato = this.candidatos.get(tope.idArtista);
+
+            if (tope.version != this.versiones[tope.idArtista] || !this.disponibles[tope.idArtista]) {
+                cola.poll(); // Entrada vieja: se descarta
+                continue;
+            }
+            double costoActual = this.recital.getCostoEfectivo(candidato);
+            if (costoActual != tope.costo) {
+                // El costo cambio sin pasar por el indice: reinsertamos con el valor correcto
+                cola.poll();
+                cola.add(new Entrada(costoActual, tope.idArtista, tope.version));
+                continue;
+            }
+            if (this.contratos.contiene(tope.idArtista, idCancion)) {
+                apartados.add(cola.poll());
+                continue;
+            }
+            elegido = candidato;
+            break;
+        }
+
+        cola.addAll(apartados);
+        return elegido;
+    }
+
+    /**
+     Vuelve a evaluar a un candidato despues de un cambio (entrenamiento,
+     llego a su limite de canciones o se le quitaron contratos). Invalida sus
+     entradas anteriores y lo reinserta con su costo actual si tiene capacidad.
+     @param artista El candidato que cambio.
+     */
+    public void actualizar(ArtistaExterno artista) {
+        int id = artista.getId();
+        this.versiones[id]++;
+        this.disponibles[id] = this.tieneCapacidad(artista);
+        if (!this.disponibles[id]) {
+            return;
+        }
+
+        double costo = this.recital.getCostoEfectivo(artista);
+        BitSet roles = artista.getIdsRoles();
+        for (int idRol = roles.nextSetBit(0); idRol >= 0 && idRol < this.colasPorRol.size(); idRol = roles.nextSetBit(idRol + 1)) {
+            PriorityQueue<Entrada> cola = this.colasPorRol.get(idRol);
+            if (cola != null) {
+                cola.add(new Entrada(costo, id, this.versiones[id]));
+            }
+        }
+    }
+
+    /**
+     Descarta todas las colas. Se usa cuando cambian los costos de todos los
+     candidatos a la vez (por ejemplo, al cambiar los artistas base).
+     */
+    public void reiniciar() {
+        this.colasPorRol.clear();
+        for (ArtistaExterno candidato : this.candidatos) {
+            this.versiones[candidato.getId()]++;
+            this.disponibles[candidato.getId()] = this.tieneCapacidad(candidato);
+        }
+    }
+
+    // Devuelve la cola de un rol, armandola la primera vez con un recorrido de los candidatos
+    private PriorityQueue<Entrada> getCola(int idRol) {
+        while (this.colasPorRol.size() <= idRol) {
+            this.colasPorRol.add(null);
+        }
+        PriorityQueue<Entrada> cola = this.colasPorRol.get(idRol);
+        if (cola == null) {
+            List<Entrada> entradas = new ArrayList<>();
+            for (ArtistaExterno candidato : this.candidatos) {
+                int id = candidato.getId();
+                if (this.disponibles[id] && candidato.puedeTocar(idRol)) {
+                    entradas.add(new Entrada(this.recital.getCostoEfectivo(candidato), id, this.versiones[id]));
+                }
+            }
+            cola = new PriorityQueue<>(entradas);
+            this.colasPorRol.set(idRol, cola);
+        }
+        return cola;
+    }
+
+    private boolean tieneCapacidad(ArtistaExterno artista) {
+        return this.contratos.cantidadDeArtista(artista.getId()) < artista.getMaxCanciones();
+    }
+
+    /*
+     Entrada de una cola: el costo con el que se inserto, el ID del
+     candidato y su version en ese momento.
+     */
+    private static final class Entrada implements Comparable<Entrada> {
+        private final double costo;
+        private final int idArtista;
+        private final int version;
+
+        Entrada(double costo, int idArtista, int version) {
+            this.costo = costo;
+            this.idArtista = idArtista;
+            this.version = version;
+        }
+
+        @Override
+        public int compareTo(Entrada otra) {
+            int porCosto = Double.compare(this.costo, otra.costo);
+            return porCosto != 0 ? porCosto : Integer.compare(this.idArtista, otra.idArtista);
+        }
+    }
+}
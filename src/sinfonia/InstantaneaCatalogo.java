@@ -0,0 +1,299 @@
+package sinfonia;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Instantanea binaria del catalogo cargado (artistas base, candidatos y
+ setlist) para no tener que volver a interpretar los JSON en cada inicio.
+ El archivo se lee entero con una sola lectura de FileChannel y los campos
+ se toman directamente de ese buffer: una tabla con cada texto distinto
+ (nombres, roles, bandas, titulos) y despues los artistas y canciones como
+ indices a esa tabla, costos y capacidades.
+ No se mapea en memoria: el archivo se reemplaza con un ATOMIC_MOVE cuando
+ se vence, y en Windows eso falla mientras quede un mapeo abierto (un
+ MappedByteBuffer recien se libera cuando lo recolecta el GC).
+ Los JSON siguen siendo la fuente de verdad: la instantanea guarda el
+ tamanio y la fecha de modificacion de cada uno, y si alguno cambio se
+ vuelve a cargar desde los JSON y se reescribe la instantanea.
+
+ Formato (enteros y doubles big-endian):
+   "SNFN" version, cantidad de archivos fuente
+   por cada archivo fuente: tamanio (long), fecha de modificacion (long)
+   cantidad de textos, y por cada uno: largo en bytes y bytes UTF-8
+   artistas base:  cantidad; nombre, roles, bandas
+   candidatos:     cantidad; nombre, roles, bandas, costo (double), maxCanciones
+   canciones:      cantidad; titulo, rolesRequeridos
+ donde nombre y titulo son un indice de texto, y roles y bandas una
+ cantidad seguida de indices de texto.
+ */
+public class InstantaneaCatalogo {
+
+    private static final int MAGICO = 0x534E464E; // "SNFN"
+    private static final int VERSION = 1;
+
+    private InstantaneaCatalogo() {
+    }
+
+    /**
+     Carga el recital desde la instantanea si esta al dia con los JSON, o
+     desde los JSON (con CargarDatos) si no existe o esta vencida. En ese
+     caso deja escrita una instantanea nueva para el proximo inicio.
+     @param rutaArtistas Ruta al archivo "artistas.json"
+     @param rutaRecital Ruta al archivo "recital.json"
+     @param rutaArtistasBase Ruta al archivo "artistas-discografica.json"
+     @param rutaInstantanea Ruta de la instantanea.
+     @return Un objeto Recital inicializado.
+     @throws IOException Si no se pueden leer los JSON.
+     */
+    public static Recital cargar(String rutaArtistas, String rutaRecital, String rutaArtistasBase, Path rutaInstantanea)
+        throws IOException {
+
+        Path[] fuentes = { Paths.get(rutaArtistas), Paths.get(rutaRecital), Paths.get(rutaArtistasBase) };
+        if (estaVigente(rutaInstantanea, fuentes)) {
+            try {
+                Recital recital = leer(rutaInstantanea);
+                System.out.println("Catalogo cargado desde la instantanea '" + rutaInstantanea + "'.");
+                return recital;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("La instantanea '" + rutaInstantanea + "' no se pudo leer, se reconstruye: " + e.getMessage());
+            }
+        }
+
+        // El sello se toma antes de leer: si un JSON cambia durante la carga, la instantanea ya nace vencida
+        long[] sello = sello(fuentes);
+        Recital recital = CargarDatos.cargarRecitalDesdeArchivos(rutaArtistas, rutaRecital, rutaArtistasBase);
+        try {
+            escribir(recital, rutaInstantanea, sello);
+        } catch (IOException e) {
+            // Sin instantanea el proximo inicio tambien lee los JSON, pero funciona igual
+            System.err.println("No se pudo guardar la instantanea del catalogo: " + e.getMessage());
+        }
+        return recital;
+    }
+
+    /**
+     Indica si la instantanea existe y fue hecha a partir de los archivos
+     fuente tal como estan ahora (mismo tamanio y fecha de modificacion).
+     @param rutaInstantanea La instantanea.
+     @param fuentes Los archivos JSON, en el mismo orden con que se escribio.
+     @return true si se puede usar.
+     */
+    public static boolean estaVigente(Path rutaInstantanea, Path... fuentes) {
+        if (!Files.isRegularFile(rutaInstantanea)) {
+            return false;
+        }
+        try (FileChannel canal = FileChannel.open(rutaInstantanea, StandardOpenOption.READ)) {
+            ByteBuffer datos = leerCompleto(canal, (int) Math.min(canal.size(), 12 + 16L * fuentes.length));
+            if (datos.remaining() < 12 + 16 * fuentes.length || datos.getInt() != MAGICO || datos.getInt() != VERSION
+                || datos.getInt() != fuentes.length) {
+                return false;
+            }
+            for (Path fuente : fuentes) {
+                if (datos.getLong() != Files.size(fuente) || datos.getLong() != Files.getLastModifiedTime(fuente).toMillis()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     Escribe la instantanea del catalogo del recital. Se escribe primero en un
+     archivo temporal y despues se reemplaza, para que nunca quede una a medias.
+     Hay que llamarlo recien cargado el recital, antes de entrenar artistas.
+     @param recital El recital recien cargado.
+     @param rutaInstantanea Donde se guarda.
+     @param fuentes Los archivos JSON de los que salio el recital.
+     @throws IOException Si no se puede escribir.
+     */
+    public static void escribir(Recital recital, Path rutaInstantanea, Path... fuentes) throws IOException {
+        escribir(recital, rutaInstantanea, sello(fuentes));
+    }
+
+    private static void escribir(Recital recital, Path rutaInstantanea, long[] sello) throws IOException {
+        Map<String, Integer> textos = new LinkedHashMap<>();
+        for (ArtistaBase artista : recital.getArtistasBase()) {
+            registrar(textos, artista.getNombre());
+            registrar(textos, artista.getRolesHistoricos());
+            registrar(textos, artista.getBandasHistoricas());
+        }
+        for (ArtistaExterno artista : recital.getArtistasCandidatos()) {
+            registrar(textos, artista.getNombre());
+            registrar(textos, artista.getRolesHistoricos());
+            registrar(textos, artista.getBandasHistoricas());
+        }
+        for (Cancion cancion : recital.getSetlist()) {
+            registrar(textos, cancion.getTitulo());
+            registrar(textos, cancion.getRolesRequeridos());
+        }
+
+        Path directorio = rutaInstantanea.toAbsolutePath().getParent();
+        Path temporal = Files.createTempFile(directorio, "instantanea", ".tmp");
+        try {
+            try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal), 1 << 16))) {
+                salida.writeInt(MAGICO);
+                salida.writeInt(VERSION);
+                salida.writeInt(sello.length / 2);
+                for (long valor : sello) {
+                    salida.writeLong(valor);
+                }
+
+                salida.writeInt(textos.size());
+                for (String texto : textos.keySet()) {
+                    byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+                    salida.writeInt(bytes.length);
+                    salida.write(bytes);
+                }
+
+                salida.writeInt(recital.getArtistasBase().size());
+                for (ArtistaBase artista : recital.getArtistasBase()) {
+                    salida.writeInt(textos.get(artista.getNombre()));
+                    escribirIndices(salida, textos, artista.getRolesHistoricos());
+                    escribirIndices(salida, textos, artista.getBandasHistoricas());
+                }
+                salida.writeInt(recital.getArtistasCandidatos().size());
+                for (ArtistaExterno artista : recital.getArtistasCandidatos()) {
+                    salida.writeInt(textos.get(artista.getNombre()));
+                    escribirIndices(salida, textos, artista.getRolesHistoricos());
+                    escribirIndices(salida, textos, artista.getBandasHistoricas());
+                    salida.writeDouble(artista.getCostoBase());
+                    salida.writeInt(artista.getMaxCanciones());
+                }
+                salida.writeInt(recital.getSetlist().size());
+                for (Cancion cancion : recital.getSetlist()) {
+                    salida.writeInt(textos.get(cancion.getTitulo()));
+                    escribirIndices(salida, textos, cancion.getRolesRequeridos());
+                }
+            }
+            Files.move(temporal, rutaInstantanea, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     Arma el recital leyendo la instantanea. No verifica
+     que este al dia con los JSON (para eso esta estaVigente).
+     @param rutaInstantanea La instantanea.
+     @return Un recital nuevo, sin contratos.
+     @throws IOException Si el archivo no se puede abrir o no es una instantanea valida.
+     */
+    public static Recital leer(Path rutaInstantanea) throws IOException {
+        try (FileChannel canal = FileChannel.open(rutaInstantanea, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("La instantanea es demasiado grande para leerla de una vez.");
+            }
+            ByteBuffer datos = leerCompleto(canal, (int) canal.size());
+            if (datos.getInt() != MAGICO || datos.getInt() != VERSION) {
+                throw new IOException("El archivo " + rutaInstantanea + " no es una instantanea del catalogo.");
+            }
+            int cantidadFuentes = datos.getInt();
+            datos.position(datos.position() + 16 * cantidadFuentes);
+
+            // Cada texto se decodifica una sola vez; artistas y canciones comparten las instancias
+            String[] textos = new String[datos.getInt()];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < textos.length; i++) {
+                int largo = datos.getInt();
+                if (largo > bytes.length) {
+                    bytes = new byte[Math.max(largo, bytes.length * 2)];
+                }
+                datos.get(bytes, 0, largo);
+                textos[i] = new String(bytes, 0, largo, StandardCharsets.UTF_8);
+            }
+
+            int cantidadBase = datos.getInt();
+            List<ArtistaBase> artistasBase = new ArrayList<>(cantidadBase);
+            for (int i = 0; i < cantidadBase; i++) {
+                String nombre = textos[datos.getInt()];
+                artistasBase.add(new ArtistaBase(nombre, leerIndices(datos, textos), leerIndices(datos, textos)));
+            }
+            int cantidadCandidatos = datos.getInt();
+            List<ArtistaExterno> artistasCandidatos = new ArrayList<>(cantidadCandidatos);
+            for (int i = 0; i < cantidadCandidatos; i++) {
+                String nombre = textos[datos.getInt()];
+                List<String> roles = leerIndices(datos, textos);
+                List<String> bandas = leerIndices(datos, textos);
+                double costo = datos.getDouble();
+                int maxCanciones = datos.getInt();
+                artistasCandidatos.add(new ArtistaExterno(nombre, roles, bandas, costo, maxCanciones));
+            }
+            int cantidadCanciones = datos.getInt();
+            List<Cancion> setlist = new ArrayList<>(cantidadCanciones);
+            for (int i = 0; i < cantidadCanciones; i++) {
+                String titulo = textos[datos.getInt()];
+                setlist.add(new Cancion(titulo, leerIndices(datos, textos)));
+            }
+            return new Recital(setlist, artistasBase, artistasCandidatos);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("La instantanea " + rutaInstantanea + " esta incompleta o danada.", e);
+        }
+    }
+
+    // Lee los primeros bytes del archivo en un buffer comun; al cerrar el canal no queda nada abierto
+    private static ByteBuffer leerCompleto(FileChannel canal, int cantidad) throws IOException {
+        ByteBuffer datos = ByteBuffer.allocate(cantidad);
+        while (datos.hasRemaining()) {
+            if (canal.read(datos, datos.position()) < 0) {
+                break;
+            }
+        }
+        datos.flip();
+        return datos;
+    }
+
+    // Tamanio y fecha de modificacion de cada archivo fuente, en orden
+    private static long[] sello(Path... fuentes) throws IOException {
+        long[] sello = new long[2 * fuentes.length];
+        for (int i = 0; i < fuentes.length; i++) {
+            sello[2 * i] = Files.size(fuentes[i]);
+            sello[2 * i + 1] = Files.getLastModifiedTime(fuentes[i]).toMillis();
+        }
+        return sello;
+    }
+
+    private static void registrar(Map<String, Integer> textos, String texto) {
+        textos.putIfAbsent(texto, textos.size());
+    }
+
+    private static void registrar(Map<String, Integer> textos, Collection<String> lista) {
+        for (String texto : lista) {
+            registrar(textos, texto);
+        }
+    }
+
+    private static void escribirIndices(DataOutputStream salida, Map<String, Integer> textos, Collection<String> lista)
+        throws IOException {
+        salida.writeInt(lista.size());
+        for (String texto : lista) {
+            salida.writeInt(textos.get(texto));
+        }
+    }
+
+    private static List<String> leerIndices(ByteBuffer datos, String[] textos) {
+        String[] lista = new String[datos.getInt()];
+        for (int i = 0; i < lista.length; i++) {
+            lista[i] = textos[datos.getInt()];
+        }
+        return Arrays.asList(lista);
+    }
+}
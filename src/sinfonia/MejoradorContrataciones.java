@@ -0,0 +1,442 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ Mejora un plan de contrataciones ya existente con busqueda local.
+ Cada contrato es un "lugar" (cancion + rol) que se puede reasignar a otro
+ candidato que toque el rol, tenga capacidad y no este ya en la cancion.
+ Movimientos:
+   - reubicar: pasar un lugar a un candidato mas barato con capacidad libre.
+   - cadena de expulsion: pasar un lugar a un candidato mas barato que esta
+     lleno, liberandolo de otro de sus lugares, que a su vez pasa a un tercero
+     mas barato que el original.
+   - intercambio: dos lugares se intercambian sus artistas (no cambia el costo,
+     se usa para diversificar entre reinicios).
+ Se lanzan varias busquedas en paralelo (una por nucleo) con distintas semillas
+ y reinicios perturbados, hasta agotar el presupuesto de tiempo. La cobertura
+ de cada cancion y el maxCanciones de cada artista se respetan siempre.
+ */
+public class MejoradorContrataciones {
+
+    // Limites para que un movimiento no recorra catalogos enormes completos
+    private static final int MAX_LLENOS_POR_EXPULSION = 16;
+    private static final int MAX_REINICIOS_SIN_MEJORA = 64;
+
+    private Recital recital;
+    private List<Contrato> contratos;   // lugar i = contratos.get(i)
+
+    private int[] cancionDeLugar;
+    private int[] rolDeLugar;
+    private int[][] lugaresDeCancion;   // por ID de cancion
+    private double[] costo;             // costo efectivo por ID de candidato
+    private int[] capacidad;            // maxCanciones menos contratos que no son lugares
+    private int[][] candidatosPorRol;   // por ID de rol, ordenados por costo
+
+    private final Object candado = new Object();
+    private int[] mejorAsignacion;
+    private double mejorCosto;
+
+    public MejoradorContrataciones(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Ejecuta la busqueda y aplica al recital el mejor plan encontrado.
+     @param presupuestoMillis Tiempo maximo de busqueda, en milisegundos.
+     @return El resultado con el costo antes y despues.
+     */
+    public ResultadoMejora mejorar(long presupuestoMillis) {
+        long limite = System.nanoTime() + presupuestoMillis * 1_000_000L;
+        this.prepararDatos();
+
+        int[] inicial = new int[this.contratos.size()];
+        for (int i = 0; i < inicial.length; i++) {
+            inicial[i] = this.contratos.get(i).getArtista().getId();
+        }
+        double costoAntes = this.recital.getCostoTotalContratos();
+        this.mejorAsignacion = inicial.clone();
+        this.mejorCosto = this.costoDe(inicial);
+
+        int hilos = Runtime.getRuntime().availableProcessors();
+        long iteraciones = 0;
+        if (!this.contratos.isEmpty()) {
+            ExecutorService ejecutor = Executors.newFixedThreadPool(hilos);
+            try {
+                List<Future<Long>> tareas = new ArrayList<>();
+                for (int h = 0; h < hilos; h++) {
+                    final long semilla = h;
+                    tareas.add(ejecutor.submit(() -> this.buscar(inicial, semilla, limite)));
+                }
+                for (Future<Long> tarea : tareas) {
+                    iteraciones += tarea.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Error durante la busqueda local", e.getCause());
+            } finally {
+                ejecutor.shutdownNow();
+            }
+        }
+
+        int cambios = this.aplicar(this.mejorAsignacion);
+        return new ResultadoMejora(costoAntes, this.recital.getCostoTotalContratos(), cambios, iteraciones);
+    }
+
+    // Copia el estado del recital a arreglos que los hilos solo leen
+    private void prepararDatos() {
+        List<Cancion> setlist = this.recital.getSetlist();
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        this.contratos = new ArrayList<>(this.recital.getContrataciones());
+
+        int lugares = this.contratos.size();
+        this.cancionDeLugar = new int[lugares];
+        this.rolDeLugar = new int[lugares];
+        int[] porCancion = new int[setlist.size()];
+        for (int i = 0; i < lugares; i++) {
+            Contrato contrato = this.contratos.get(i);
+            this.cancionDeLugar[i] = contrato.getCancion().getId();
+            this.rolDeLugar[i] = contrato.getIdRolAsignado();
+            porCancion[this.cancionDeLugar[i]]++;
+        }
+        this.lugaresDeCancion = new int[setlist.size()][];
+        for (int s = 0; s < setlist.size(); s++) {
+            this.lugaresDeCancion[s] = new int[porCancion[s]];
+            porCancion[s] = 0;
+        }
+        for (int i = 0; i < lugares; i++) {
+            int s = this.cancionDeLugar[i];
+            this.lugaresDeCancion[s][porCancion[s]++] = i;
+        }
+
+        this.costo = new double[candidatos.size()];
+        this.capacidad = new int[candidatos.size()];
+        for (ArtistaExterno candidato : candidatos) {
+            this.costo[candidato.getId()] = this.recital.getCostoEfectivo(candidato);
+            this.capacidad[candidato.getId()] = candidato.getMaxCanciones();
+        }
+
+        // Solo hacen falta los roles que aparecen en algun lugar
+        int maxRol = -1;
+        for (int rol : this.rolDeLugar) {
+            maxRol = Math.max(maxRol, rol);
+        }
+        this.candidatosPorRol = new int[maxRol + 1][];
+        Comparator<Integer> porCosto = Comparator.<Integer>comparingDouble(id -> this.costo[id]).thenComparingInt(id -> id);
+        for (int rol : this.rolDeLugar) {
+            if (this.candidatosPorRol[rol] != null) {
+                continue;
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (ArtistaExterno candidato : candidatos) {
+                if (candidato.puedeTocar(rol) && candidato.getMaxCanciones() > 0) {
+                    ids.add(candidato.getId());
+                }
+            }
+            ids.sort(porCosto);
+            this.candidatosPorRol[rol] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    // Busqueda local iterada de un hilo. Devuelve la cantidad de movimientos evaluados.
+    private long buscar(int[] inicial, long semilla, long limite) {
+        SplittableRandom azar = new SplittableRandom(semilla);
+        Solucion actual = new Solucion(inicial);
+        Solucion mejorLocal = null;
+        long iteraciones = 0;
+        int reiniciosSinMejora = 0;
+
+        // El primer hilo arranca del plan original; el resto, de una perturbacion
+        if (semilla != 0) {
+            actual.perturbar(azar);
+        }
+
+        while (System.nanoTime() < limite && reiniciosSinMejora < MAX_REINICIOS_SIN_MEJORA) {
+            iteraciones += actual.descender(azar, limite);
+
+            if (mejorLocal == null || actual.costoTotal < mejorLocal.costoTotal - 1e-9) {
+                mejorLocal = actual.copiar();
+                reiniciosSinMejora = 0;
+                this.ofrecer(mejorLocal);
+            } else {
+                reiniciosSinMejora++;
+            }
+
+            // Reiniciamos desde el mejor propio con una perturbacion
+            actual = mejorLocal.copiar();
+            actual.perturbar(azar);
+        }
+        return iteraciones;
+    }
+
+    private void ofrecer(Solucion solucion) {
+        synchronized (this.candado) {
+            if (solucion.costoTotal < this.mejorCosto - 1e-9) {
+                this.mejorCosto = solucion.costoTotal;
+                this.mejorAsignacion = solucion.artistaDeLugar.clone();
+            }
+        }
+    }
+
+    // Reemplaza en el recital los contratos cuyo artista cambio
+    private int aplicar(int[] asignacion) {
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        List<Contrato> reemplazos = new ArrayList<>();
+        List<Contrato> quitados = new ArrayList<>();
+        for (int i = 0; i < asignacion.length; i++) {
+            Contrato original = this.contratos.get(i);
+            if (original.getArtista().getId() != asignacion[i]) {
+                ArtistaExterno nuevo = candidatos.get(asignacion[i]);
+                quitados.add(original);
+                reemplazos.add(new Contrato(nuevo, original.getCancion(), original.getRolAsignado(), this.costo[nuevo.getId()]));
+            }
+        }
+        this.recital.reemplazarContratos(quitados, reemplazos);
+        return reemplazos.size();
+    }
+
+    private double costoDe(int[] asignacion) {
+        double total = 0.0;
+        for (int id : asignacion) {
+            total += this.costo[id];
+        }
+        return total;
+    }
+
+    /*
+     Estado de una busqueda: el artista de cada lugar, cuantos lugares ocupa
+     cada artista y cuales son.
+     */
+    private final class Solucion {
+        private int[] artistaDeLugar;
+        private int[] uso;
+        private int[][] lugaresDeArtista;
+        private double costoTotal;
+
+        Solucion(int[] asignacion) {
+            this.artistaDeLugar = asignacion.clone();
+            this.uso = new int[costo.length];
+            this.lugaresDeArtista = new int[costo.length][];
+            for (int i = 0; i < asignacion.length; i++) {
+                this.agregarLugar(asignacion[i], i);
+            }
+            this.costoTotal = costoDe(asignacion);
+        }
+
+        private Solucion(Solucion otra) {
+            this.artistaDeLugar = otra.artistaDeLugar.clone();
+            this.uso = otra.uso.clone();
+            this.lugaresDeArtista = new int[otra.lugaresDeArtista.length][];
+            for (int a = 0; a < this.lugaresDeArtista.length; a++) {
+                if (otra.lugaresDeArtista[a] != null) {
+                    this.lugaresDeArtista[a] = otra.lugaresDeArtista[a].clone();
+                }
+            }
+            this.costoTotal = otra.costoTotal;
+        }
+
+        Solucion copiar() {
+            return new Solucion(this);
+        }
+
+        // Aplica movimientos que bajan el costo hasta que no quede ninguno. Devuelve los evaluados.
+        long descender(SplittableRandom azar, long limite) {
+            long evaluados = 0;
+            int lugares = this.artistaDeLugar.length;
+            int[] orden = new int[lugares];
+            for (int i = 0; i < lugares; i++) {
+                orden[i] = i;
+            }
+
+            boolean mejoro = true;
+            while (mejoro && System.nanoTime() < limite) {
+                mejoro = false;
+                mezclar(orden, azar);
+                for (int i : orden) {
+                    evaluados++;
+                    if (this.reubicar(i) || this.expulsar(i)) {
+                        mejoro = true;
+                    }
+                }
+            }
+            return evaluados;
+        }
+
+        // Pasa el lugar al candidato mas barato con capacidad libre, si es mas barato que el actual
+        private boolean reubicar(int lugar) {
+            int actual = this.artistaDeLugar[lugar];
+            int cancion = cancionDeLugar[lugar];
+            for (int candidato : candidatosPorRol[rolDeLugar[lugar]]) {
+                if (costo[candidato] >= costo[actual]) {
+                    return false;
+                }
+                if (this.uso[candidato] < capacidad[candidato] && !this.estaEnCancion(candidato, cancion)) {
+                    this.mover(lugar, candidato);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Cadena de expulsion de largo 2: actual <- lleno (mas barato) <- libre (mas barato que actual)
+        private boolean expulsar(int lugar) {
+            int actual = this.artistaDeLugar[lugar];
+            int cancion = cancionDeLugar[lugar];
+            int revisados = 0;
+            for (int lleno : candidatosPorRol[rolDeLugar[lugar]]) {
+                if (costo[lleno] >= costo[actual] || revisados >= MAX_LLENOS_POR_EXPULSION) {
+                    return false;
+                }
+                if (this.uso[lleno] < capacidad[lleno] || this.estaEnCancion(lleno, cancion)) {
+                    continue;
+                }
+                revisados++;
+
+                // Buscamos un lugar del artista lleno que pueda tomar alguien mas barato que 'actual'
+                for (int k = 0; k < this.uso[lleno]; k++) {
+                    int otroLugar = this.lugaresDeArtista[lleno][k];
+                    int otraCancion = cancionDeLugar[otroLugar];
+                    for (int libre : candidatosPorRol[rolDeLugar[otroLugar]]) {
+                        if (costo[libre] >= costo[actual]) {
+                            break;
+                        }
+                        if (libre != lleno && this.uso[libre] < capacidad[libre] && !this.estaEnCancion(libre, otraCancion)) {
+                            this.mover(otroLugar, libre);
+                            this.mover(lugar, lleno);
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Perturba la solucion con intercambios y reubicaciones al azar (que pueden empeorarla)
+        void perturbar(SplittableRandom azar) {
+            int lugares = this.artistaDeLugar.length;
+            int movimientos = Math.max(1, lugares / 50);
+            for (int m = 0; m < movimientos; m++) {
+                int i = azar.nextInt(lugares);
+                int j = azar.nextInt(lugares);
+                if (!this.intercambiar(i, j)) {
+                    int[] opciones = candidatosPorRol[rolDeLugar[i]];
+                    int candidato = opciones[azar.nextInt(opciones.length)];
+                    if (this.uso[candidato] < capacidad[candidato] && !this.estaEnCancion(candidato, cancionDeLugar[i])) {
+                        this.mover(i, candidato);
+                    }
+                }
+            }
+        }
+
+        // Intercambia los artistas de dos lugares si es valido
+        private boolean intercambiar(int i, int j) {
+            int a = this.artistaDeLugar[i];
+            int b = this.artistaDeLugar[j];
+            if (a == b || cancionDeLugar[i] == cancionDeLugar[j]) {
+                return false;
+            }
+            if (!recital.getArtistasCandidatos().get(a).puedeTocar(rolDeLugar[j])
+                    || !recital.getArtistasCandidatos().get(b).puedeTocar(rolDeLugar[i])
+                    || this.estaEnCancion(a, cancionDeLugar[j]) || this.estaEnCancion(b, cancionDeLugar[i])) {
+                return false;
+            }
+            this.quitarLugar(a, i);
+            this.quitarLugar(b, j);
+            this.artistaDeLugar[i] = b;
+            this.artistaDeLugar[j] = a;
+            this.agregarLugar(b, i);
+            this.agregarLugar(a, j);
+            return true;
+        }
+
+        private void mover(int lugar, int nuevo) {
+            int anterior = this.artistaDeLugar[lugar];
+            this.quitarLugar(anterior, lugar);
+            this.artistaDeLugar[lugar] = nuevo;
+            this.agregarLugar(nuevo, lugar);
+            this.costoTotal += costo[nuevo] - costo[anterior];
+        }
+
+        private boolean estaEnCancion(int artista, int cancion) {
+            for (int lugar : lugaresDeCancion[cancion]) {
+                if (this.artistaDeLugar[lugar] == artista) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void agregarLugar(int artista, int lugar) {
+            int[] lista = this.lugaresDeArtista[artista];
+            if (lista == null) {
+                lista = new int[2];
+            } else if (this.uso[artista] == lista.length) {
+                lista = Arrays.copyOf(lista, lista.length * 2);
+            }
+            lista[this.uso[artista]++] = lugar;
+            this.lugaresDeArtista[artista] = lista;
+        }
+
+        private void quitarLugar(int artista, int lugar) {
+            int[] lista = this.lugaresDeArtista[artista];
+            for (int k = 0; k < this.uso[artista]; k++) {
+                if (lista[k] == lugar) {
+                    lista[k] = lista[--this.uso[artista]];
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void mezclar(int[] arreglo, SplittableRandom azar) {
+        for (int i = arreglo.length - 1; i > 0; i--) {
+            int j = azar.nextInt(i + 1);
+            int temporal = arreglo[i];
+            arreglo[i] = arreglo[j];
+            arreglo[j] = temporal;
+        }
+    }
+
+    /*
+     Resultado de una mejora: costo antes y despues, contratos reemplazados
+     y movimientos evaluados entre todos los hilos.
+     */
+    public static class ResultadoMejora {
+        private double costoAntes;
+        private double costoDespues;
+        private int contratosReemplazados;
+        private long movimientosEvaluados;
+
+        public ResultadoMejora(double costoAntes, double costoDespues, int contratosReemplazados, long movimientosEvaluados) {
+            this.costoAntes = costoAntes;
+            this.costoDespues = costoDespues;
+            this.contratosReemplazados = contratosReemplazados;
+            this.movimientosEvaluados = movimientosEvaluados;
+        }
+
+        public double getCostoAntes() {
+            return costoAntes;
+        }
+
+        public double getCostoDespues() {
+            return costoDespues;
+        }
+
+        public int getContratosReemplazados() {
+            return contratosReemplazados;
+        }
+
+        public long getMovimientosEvaluados() {
+            return movimientosEvaluados;
+        }
+    }
+}
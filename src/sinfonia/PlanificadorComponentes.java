@@ -0,0 +1,220 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/*
+ Planifica la contratacion greedy de todo el recital separandolo en
+ componentes independientes. Una cancion y un candidato quedan conectados si
+ el candidato puede cubrir algun rol que le falta a la cancion; dos canciones
+ que no comparten (directa o indirectamente) ningun candidato no compiten por
+ nada, asi que se pueden contratar en paralelo.
+
+ Dentro de cada componente se recorre el setlist en orden y se elige siempre
+ el candidato mas barato (empate: menor ID), igual que contratarParaRecital,
+ por lo que el resultado es el mismo que el secuencial. Los componentes se
+ resuelven en el ForkJoinPool comun y sus contratos se devuelven ordenados
+ por la primera cancion de cada componente.
+
+ El paralelismo es solo entre componentes: el greedy de una componente es
+ secuencial, porque cada eleccion cambia la capacidad que ven las canciones
+ siguientes. Si casi todo el setlist queda en una sola componente (por
+ ejemplo, porque algunos candidatos tocan roles muy pedidos), el plan se
+ calcula en un solo hilo y tarda lo mismo que contratarParaRecital.
+ */
+public class PlanificadorComponentes {
+
+    private Recital recital;
+
+    private int[] padre;        // union-find: canciones [0, S) y candidatos [S, S + A)
+    private int[][] faltantes;  // por ID de cancion, alineado con cancion.getIdsRoles()
+    private double[] costo;     // costo efectivo por ID de candidato
+    private int[] capacidad;    // canciones que le quedan a cada candidato (cada componente toca solo los suyos)
+
+    public PlanificadorComponentes(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Calcula los contratos greedy de todas las canciones incompletas sin
+     modificar el recital.
+     @return Los contratos a registrar, en orden determinista.
+     */
+    public List<Contrato> planificar() {
+        List<Componente> componentes = this.armarComponentes();
+
+        // parallelStream corre en el ForkJoinPool comun y conserva el orden al juntar
+        List<List<Contrato>> planes = componentes.parallelStream()
+            .map(this::contratarComponente)
+            .collect(Collectors.toList());
+
+        List<Contrato> plan = new ArrayList<>();
+        for (List<Contrato> contratos : planes) {
+            plan.addAll(contratos);
+        }
+        return plan;
+    }
+
+    /**
+     Arma las componentes del grafo canciones/candidatos. Cada componente tiene
+     los IDs de sus canciones incompletas y de sus candidatos, en orden
+     ascendente, y las componentes quedan ordenadas por su primera cancion.
+     @return Las componentes con al menos una cancion por contratar.
+     */
+    List<Componente> armarComponentes() {
+        List<Cancion> setlist = this.recital.getSetlist();
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+        int cantidadCanciones = setlist.size();
+
+        this.padre = new int[cantidadCanciones + candidatos.size()];
+        for (int i = 0; i < this.padre.length; i++) {
+            this.padre[i] = i;
+        }
+        this.faltantes = new int[cantidadCanciones][];
+        this.costo = new double[candidatos.size()];
+        this.capacidad = new int[candidatos.size()];
+        for (ArtistaExterno candidato : candidatos) {
+            this.costo[candidato.getId()] = this.recital.getCostoEfectivo(candidato);
+            this.capacidad[candidato.getId()] = candidato.getMaxCanciones() - contratos.cantidadDeArtista(candidato.getId());
+        }
+
+        // Primera cancion que necesita cada rol (por ID de rol, -1 si ninguna):
+        // todas las que lo necesitan se unen a ella
+        int[] representantePorRol = new int[TablaSimbolos.ROLES.size()];
+        Arrays.fill(representantePorRol, -1);
+        for (Cancion cancion : setlist) {
+            if (this.recital.estaCompleta(cancion)) {
+                continue;
+            }
+            int[] idsRoles = cancion.getIdsRoles();
+            this.faltantes[cancion.getId()] = this.recital.calcularFaltantes(cancion);
+            for (int r = 0; r < idsRoles.length; r++) {
+                if (this.faltantes[cancion.getId()][r] > 0) {
+                    if (representantePorRol[idsRoles[r]] < 0) {
+                        representantePorRol[idsRoles[r]] = cancion.getId();
+                    } else {
+                        this.unir(representantePorRol[idsRoles[r]], cancion.getId());
+                    }
+                }
+            }
+        }
+
+        // Cada candidato con capacidad se une a los roles faltantes que puede tocar:
+        // se recorren sus roles, no todos los roles que faltan
+        for (ArtistaExterno candidato : candidatos) {
+            if (this.capacidad[candidato.getId()] <= 0) {
+                continue;
+            }
+            BitSet roles = candidato.getIdsRoles();
+            for (int idRol = roles.nextSetBit(0); idRol >= 0 && idRol < representantePorRol.length; idRol = roles.nextSetBit(idRol + 1)) {
+                if (representantePorRol[idRol] >= 0) {
+                    this.unir(representantePorRol[idRol], cantidadCanciones + candidato.getId());
+                }
+            }
+        }
+
+        // Agrupamos aca, de forma secuencial: los hilos no vuelven a tocar el union-find
+        Map<Integer, Componente> porRaiz = new HashMap<>();
+        List<Componente> componentes = new ArrayList<>();
+        for (int idCancion = 0; idCancion < cantidadCanciones; idCancion++) {
+            if (this.faltantes[idCancion] == null) {
+                continue;
+            }
+            Componente componente = porRaiz.get(this.raiz(idCancion));
+            if (componente == null) {
+                componente = new Componente();
+                porRaiz.put(this.raiz(idCancion), componente);
+                componentes.add(componente);
+            }
+            componente.canciones.add(idCancion);
+        }
+        for (int id = 0; id < candidatos.size(); id++) {
+            Componente componente = porRaiz.get(this.raiz(cantidadCanciones + id));
+            if (componente != null && this.capacidad[id] > 0) {
+                componente.candidatos.add(id);
+            }
+        }
+        return componentes;
+    }
+
+    // Greedy secuencial de una componente. Solo lee el recital y escribe la capacidad de sus candidatos.
+    private List<Contrato> contratarComponente(Componente componente) {
+        List<Cancion> setlist = this.recital.getSetlist();
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+
+        // Candidatos de la componente ordenados por costo, y por rol a demanda
+        List<Integer> propios = new ArrayList<>(componente.candidatos);
+        propios.sort(Comparator.<Integer>comparingDouble(id -> this.costo[id]).thenComparingInt(id -> id));
+        Map<Integer, int[]> propiosPorRol = new HashMap<>();
+
+        List<Contrato> plan = new ArrayList<>();
+        List<Integer> enCancion = new ArrayList<>();
+        for (int idCancion : componente.canciones) {
+            Cancion cancion = setlist.get(idCancion);
+            int[] idsRoles = cancion.getIdsRoles();
+            enCancion.clear();
+
+            roles:
+            for (int r : cancion.getOrdenRoles()) {
+                if (this.faltantes[idCancion][r] == 0) {
+                    continue;
+                }
+                int idRol = idsRoles[r];
+                int[] opciones = propiosPorRol.computeIfAbsent(idRol, rol -> propios.stream()
+                    .filter(id -> candidatos.get(id).puedeTocar(rol)).mapToInt(Integer::intValue).toArray());
+
+                for (int i = 0; i < this.faltantes[idCancion][r]; i++) {
+                    int elegido = -1;
+                    for (int id : opciones) {
+                        if (this.capacidad[id] > 0 && !enCancion.contains(id) && !contratos.contiene(id, idCancion)) {
+                            elegido = id;
+                            break;
+                        }
+                    }
+                    if (elegido == -1) {
+                        // Igual que contratarParaCancion: la cancion queda a medias y se sigue con la proxima
+                        break roles;
+                    }
+                    this.capacidad[elegido]--;
+                    enCancion.add(elegido);
+                    plan.add(new Contrato(candidatos.get(elegido), cancion,
+                        TablaSimbolos.ROLES.getNombre(idRol), this.costo[elegido]));
+                }
+            }
+        }
+        return plan;
+    }
+
+    private int raiz(int nodo) {
+        while (this.padre[nodo] != nodo) {
+            this.padre[nodo] = this.padre[this.padre[nodo]];
+            nodo = this.padre[nodo];
+        }
+        return nodo;
+    }
+
+    private void unir(int a, int b) {
+        int raizA = this.raiz(a);
+        int raizB = this.raiz(b);
+        if (raizA != raizB) {
+            // La raiz es siempre el menor nodo, asi el resultado no depende del orden de union
+            this.padre[Math.max(raizA, raizB)] = Math.min(raizA, raizB);
+        }
+    }
+
+    /*
+     Canciones incompletas y candidatos con capacidad de una componente.
+     */
+    static final class Componente {
+        final List<Integer> canciones = new ArrayList<>();
+        final List<Integer> candidatos = new ArrayList<>();
+    }
+}
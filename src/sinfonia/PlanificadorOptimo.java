@@ -0,0 +1,161 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ Planifica la contratacion de todo el recital de una sola vez como un
+ problema de flujo maximo de costo minimo:
+
+   fuente -> artista         (capacidad: canciones que le quedan, costo 0)
+   artista -> artista@cancion (capacidad 1: un solo rol por cancion, costo efectivo del artista)
+   artista@cancion -> rol de la cancion (capacidad 1, costo 0)
+   rol de la cancion -> sumidero (capacidad: musicos que faltan para ese rol, costo 0)
+
+ Si el artista solo puede cubrir un rol de la cancion se omite el nodo
+ intermedio artista@cancion. El resultado cubre la mayor cantidad posible
+ de roles y, entre esas soluciones, la de menor costo total.
+ */
+public class PlanificadorOptimo {
+
+    private Recital recital;
+
+    public PlanificadorOptimo(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Calcula el plan optimo sin modificar el recital.
+     @return La lista de contratos a crear (todavia no registrados).
+     */
+    public List<Contrato> planificar() {
+        List<Cancion> setlist = this.recital.getSetlist();
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+
+        RedDeFlujo red = new RedDeFlujo(2);
+        int fuente = 0;
+        int sumidero = 1;
+
+        // Nodo de cada candidato con capacidad, creado a demanda
+        int[] nodoArtista = new int[candidatos.size()];
+        Arrays.fill(nodoArtista, -1);
+        double[] costoArtista = new double[candidatos.size()];
+
+        // Candidatos con capacidad agrupados por rol, armados a demanda
+        List<int[]> candidatosPorRol = new ArrayList<>();
+
+        // Para cada cancion: cuantos roles faltantes puede cubrir cada artista
+        int[] rolesEnCancion = new int[candidatos.size()];
+        int[] nodoEnCancion = new int[candidatos.size()];
+        List<Integer> tocados = new ArrayList<>();
+
+        // Aristas que representan contratos: arista, artista, cancion, rol
+        List<int[]> aristasContrato = new ArrayList<>();
+
+        for (Cancion cancion : setlist) {
+            int[] idsRoles = cancion.getIdsRoles();
+            int[] faltantes = this.recital.calcularFaltantes(cancion);
+
+            int[] nodoRol = new int[idsRoles.length];
+            boolean hayFaltantes = false;
+            for (int r = 0; r < idsRoles.length; r++) {
+                if (faltantes[r] > 0) {
+                    nodoRol[r] = red.agregarNodo();
+                    red.agregarArista(nodoRol[r], sumidero, faltantes[r], 0.0);
+                    hayFaltantes = true;
+                }
+            }
+            if (!hayFaltantes) {
+                continue;
+            }
+
+            // Primera pasada: contamos cuantos roles faltantes puede cubrir cada artista
+            tocados.clear();
+            for (int r = 0; r < idsRoles.length; r++) {
+                if (faltantes[r] == 0) {
+                    continue;
+                }
+                for (int idArtista : this.getCandidatosDeRol(candidatosPorRol, idsRoles[r], contratos)) {
+                    if (contratos.contiene(idArtista, cancion.getId())) {
+                        continue;
+                    }
+                    if (rolesEnCancion[idArtista] == 0) {
+                        tocados.add(idArtista);
+                    }
+                    rolesEnCancion[idArtista]++;
+                }
+            }
+
+            // Segunda pasada: creamos las aristas
+            for (int idArtista : tocados) {
+                if (nodoArtista[idArtista] == -1) {
+                    ArtistaExterno artista = candidatos.get(idArtista);
+                    nodoArtista[idArtista] = red.agregarNodo();
+                    costoArtista[idArtista] = this.recital.getCostoEfectivo(artista);
+                    int capacidadRestante = artista.getMaxCanciones() - contratos.cantidadDeArtista(idArtista);
+                    red.agregarArista(fuente, nodoArtista[idArtista], capacidadRestante, 0.0);
+                }
+                if (rolesEnCancion[idArtista] > 1) {
+                    nodoEnCancion[idArtista] = red.agregarNodo();
+                    red.agregarArista(nodoArtista[idArtista], nodoEnCancion[idArtista], 1, costoArtista[idArtista]);
+                }
+            }
+            for (int r = 0; r < idsRoles.length; r++) {
+                if (faltantes[r] == 0) {
+                    continue;
+                }
+                for (int idArtista : this.getCandidatosDeRol(candidatosPorRol, idsRoles[r], contratos)) {
+                    if (rolesEnCancion[idArtista] == 0) {
+                        continue; // Ya estaba contratado en esta cancion
+                    }
+                    int arista;
+                    if (rolesEnCancion[idArtista] > 1) {
+                        arista = red.agregarArista(nodoEnCancion[idArtista], nodoRol[r], 1, 0.0);
+                    } else {
+                        arista = red.agregarArista(nodoArtista[idArtista], nodoRol[r], 1, costoArtista[idArtista]);
+                    }
+                    aristasContrato.add(new int[] { arista, idArtista, cancion.getId(), idsRoles[r] });
+                }
+            }
+            for (int idArtista : tocados) {
+                rolesEnCancion[idArtista] = 0;
+            }
+        }
+
+        red.flujoMaximoCostoMinimo(fuente, sumidero);
+
+        // Cada arista artista -> rol con flujo es un contrato del plan
+        List<Contrato> plan = new ArrayList<>();
+        for (int[] datos : aristasContrato) {
+            if (red.getFlujo(datos[0]) > 0) {
+                plan.add(new Contrato(candidatos.get(datos[1]), setlist.get(datos[2]),
+                    TablaSimbolos.ROLES.getNombre(datos[3]), costoArtista[datos[1]]));
+            }
+        }
+        return plan;
+    }
+
+    // Devuelve (y memoriza) los IDs de los candidatos con capacidad que tocan un rol
+    private int[] getCandidatosDeRol(List<int[]> candidatosPorRol, int idRol, RegistroContratos contratos) {
+        while (candidatosPorRol.size() <= idRol) {
+            candidatosPorRol.add(null);
+        }
+        int[] ids = candidatosPorRol.get(idRol);
+        if (ids == null) {
+            List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+            int[] encontrados = new int[candidatos.size()];
+            int cantidad = 0;
+            for (ArtistaExterno candidato : candidatos) {
+                if (candidato.puedeTocar(idRol)
+                        && contratos.cantidadDeArtista(candidato.getId()) < candidato.getMaxCanciones()) {
+                    encontrados[cantidad++] = candidato.getId();
+                }
+            }
+            ids = Arrays.copyOf(encontrados, cantidad);
+            candidatosPorRol.set(idRol, ids);
+        }
+        return ids;
+    }
+}
@@ -1,10 +1,16 @@
 package sinfonia;
 
-import java.util.List;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,22 +25,231 @@ public class Recital {
     private List<ArtistaBase> artistasBase;
     private List<ArtistaExterno> artistasCandidatos;
     
-    // Esta lista guardara todos los "contratos" (Asignacion) que hagamos.
-    private List<Contrato> contrataciones;
+    // Este registro guardara todos los "contratos" (Asignacion) que hagamos,
+    // indexados por artista, por cancion y por (artista, cancion).
+    private RegistroContratos contrataciones;
+    
+    // Roles faltantes mantenidos incrementalmente, por cancion (alineados con
+    // cancion.getIdsRoles()) y globales (indexados por ID de rol).
+    private int[][] pendientesTrasBase;     // requeridos menos los cubiertos por artistas base
+    private int[][] cubiertosPorContratos;  // contratos vigentes para cada rol de la cancion
+    private int[] faltantesPorCancion;      // total de musicos que faltan en cada cancion
+    private int[] faltantesGlobal;
+    private BitSet cancionesCompletas;
+    
+    // Cobertura de los artistas base memorizada por combinacion de roles:
+    // las canciones con la misma formacion comparten el mismo vector.
+    private Map<FirmaRoles, int[]> coberturaBasePorFirma;
+    
+    // Indice invertido banda -> artistas base que tocaron en ella (por ID de banda)
+    private List<List<ArtistaBase>> artistasBasePorBanda;
+    
+    // Candidatos por rol ordenados por costo efectivo
+    private IndiceCandidatos indiceCandidatos;
+    
+    // Receptor de los eventos de contratacion, entrenamiento y bajas
+    private EventosRecital eventos;
+    
+    // Canciones que cambiaron desde la ultima exportacion (ver exportarCambios):
+    // el BitSet evita repetidos y el arreglo permite recorrerlas sin barrer el setlist
+    private BitSet cancionesModificadas;
+    private int[] idsModificadas;
+    private int cantidadModificadas;
+    private boolean todasModificadas;
+    // Hash de los contratos vigentes (suma de uno por contrato, al dia en cada alta y baja):
+    // identifica el estado exportado para no combinar cambios con otra exportacion completa
+    private long hashContratos;
+    private long baseExportacion;        // hashContratos de la ultima exportacion completa
+    private long secuenciaExportacion;   // vuelve a 0 con cada exportacion completa
+    private boolean hayExportacionCompleta;
 
     /**
       Constructor para inicializar el Recital.
       @param setlist La lista de canciones a tocar.
       @param artistasBase Los artistas de la discografica.
       @param artistasCandidatos Los artistas externos disponibles para contratar.
+      @throws IllegalArgumentException Si algun artista o cancion ya tiene otro ID
+      (por ejemplo, porque esta en otra posicion de otro Recital).
      */
     public Recital(List<Cancion> setlist, List<ArtistaBase> artistasBase, List<ArtistaExterno> artistasCandidatos) {
         this.setlist = setlist;
         this.artistasBase = artistasBase;
         this.artistasCandidatos = artistasCandidatos;
         
-        // Inicializamos la lista de contrataciones
-        this.contrataciones = new ArrayList<>();
+        // Asignamos IDs densos a cada artista y cancion segun su posicion.
+        // Un objeto que ya tiene otro ID no se renumera: el otro recital dejaria de encontrarlo
+        for (int i = 0; i < setlist.size(); i++) {
+            Cancion cancion = setlist.get(i);
+            verificarIdLibre(cancion.getId(), i, "La cancion '" + cancion.getTitulo() + "'");
+            cancion.setId(i);
+        }
+        for (int i = 0; i < artistasBase.size(); i++) {
+            verificarIdLibre(artistasBase.get(i).getId(), i, "El artista base " + artistasBase.get(i).getNombre());
+            artistasBase.get(i).setId(i);
+        }
+        for (int i = 0; i < artistasCandidatos.size(); i++) {
+            verificarIdLibre(artistasCandidatos.get(i).getId(), i, "El artista " + artistasCandidatos.get(i).getNombre());
+            artistasCandidatos.get(i).setId(i);
+        }
+        
+        // Inicializamos el registro de contrataciones
+        this.contrataciones = new RegistroContratos(artistasCandidatos.size(), setlist.size());
+        this.cancionesModificadas = new BitSet(setlist.size());
+        this.idsModificadas = new int[16];
+        
+        this.inicializarFaltantes();
+        this.recalcularDescuentos();
+        this.indiceCandidatos = new IndiceCandidatos(this, this.contrataciones);
+        this.eventos = EventosRecital.NULO;
+    }
+
+    // Sin ID (-1) o con el mismo ID no hay problema
+    private static void verificarIdLibre(int actual, int nuevo, String descripcion) {
+        if (actual != -1 && actual != nuevo) {
+            throw new IllegalArgumentException(descripcion + " ya tiene el ID " + actual
+                + " en otro recital y no puede ocupar la posicion " + nuevo + ".");
+        }
+    }
+
+    /**
+     Cambia el receptor de eventos. Por defecto es EventosRecital.NULO y el
+     recital no informa nada por consola mientras contrata o entrena.
+     @param eventos El receptor nuevo, o null para descartar los eventos.
+     */
+    public void setEventos(EventosRecital eventos) {
+        this.eventos = eventos != null ? eventos : EventosRecital.NULO;
+    }
+
+    public EventosRecital getEventos() {
+        return this.eventos;
+    }
+
+    /**
+     Prepara los contadores de roles faltantes de cada cancion. A partir de aqui
+     solo se actualizan al agregar o quitar contratos, o si cambian los artistas base.
+     */
+    private void inicializarFaltantes() {
+        int maxIdRol = -1;
+        for (Cancion cancion : this.setlist) {
+            int[] idsRoles = cancion.getIdsRoles();
+            if (idsRoles.length > 0) {
+                maxIdRol = Math.max(maxIdRol, idsRoles[idsRoles.length - 1]);
+            }
+        }
+        
+        this.pendientesTrasBase = new int[this.setlist.size()][];
+        this.cubiertosPorContratos = new int[this.setlist.size()][];
+        this.faltantesPorCancion = new int[this.setlist.size()];
+        this.faltantesGlobal = new int[maxIdRol + 1];
+        this.cancionesCompletas = new BitSet(this.setlist.size());
+        this.coberturaBasePorFirma = new HashMap<>();
+        
+        for (Cancion cancion : this.setlist) {
+            this.cubiertosPorContratos[cancion.getId()] = new int[cancion.getIdsRoles().length];
+        }
+        this.recalcularCoberturaBase();
+    }
+
+    /**
+     Recalcula lo que cubren los artistas base en cada cancion y, a partir de eso
+     y de los contratos vigentes, los faltantes por cancion y globales.
+     Solo se invoca al armar el recital o cuando cambian los artistas base.
+     */
+    private void recalcularCoberturaBase() {
+        this.coberturaBasePorFirma.clear();
+        Arrays.fill(this.faltantesPorCancion, 0);
+        Arrays.fill(this.faltantesGlobal, 0);
+        this.cancionesCompletas.clear();
+        
+        for (Cancion cancion : this.setlist) {
+            int id = cancion.getId();
+            int[] idsRoles = cancion.getIdsRoles();
+            int[] cubiertos = this.cubiertosPorContratos[id];
+            
+            // Las canciones con la misma formacion reutilizan el vector ya calculado
+            FirmaRoles firma = new FirmaRoles(cancion);
+            int[] pendientes = this.coberturaBasePorFirma.get(firma);
+            if (pendientes == null) {
+                pendientes = this.calcularCoberturaBase(cancion);
+                this.coberturaBasePorFirma.put(firma, pendientes);
+            }
+            
+            this.pendientesTrasBase[id] = pendientes;
+            for (int i = 0; i < idsRoles.length; i++) {
+                int faltante = Math.max(0, pendientes[i] - cubiertos[i]);
+                this.faltantesPorCancion[id] += faltante;
+                this.faltantesGlobal[idsRoles[i]] += faltante;
+            }
+            if (this.faltantesPorCancion[id] == 0) {
+                this.cancionesCompletas.set(id);
+            }
+        }
+    }
+
+    /**
+     Agrega un artista a la discografica. Invalida la cobertura memorizada de
+     los artistas base y recalcula los roles faltantes.
+     @param artistaBase El nuevo artista base.
+     @throws IllegalArgumentException Si el artista ya tiene otro ID.
+     */
+    public void agregarArtistaBase(ArtistaBase artistaBase) {
+        verificarIdLibre(artistaBase.getId(), this.artistasBase.size(), "El artista base " + artistaBase.getNombre());
+        artistaBase.setId(this.artistasBase.size());
+        this.artistasBase.add(artistaBase);
+        this.recalcularCoberturaBase();
+        this.recalcularDescuentos();
+        
+        // Los descuentos pudieron cambiar, asi que los costos del indice ya no sirven
+        this.indiceCandidatos.reiniciar();
+        // Y los faltantes de cualquier cancion
+        this.todasModificadas = true;
+    }
+
+    /**
+     Arma el indice invertido banda -> artistas base y marca a cada candidato
+     que compartio alguna banda con ellos. Solo se invoca al armar el recital
+     o cuando cambian los artistas base.
+     */
+    private void recalcularDescuentos() {
+        this.artistasBasePorBanda = new ArrayList<>();
+        for (ArtistaBase artistaBase : this.artistasBase) {
+            BitSet bandas = artistaBase.getIdsBandas();
+            for (int idBanda = bandas.nextSetBit(0); idBanda >= 0; idBanda = bandas.nextSetBit(idBanda + 1)) {
+                while (this.artistasBasePorBanda.size() <= idBanda) {
+                    this.artistasBasePorBanda.add(null);
+                }
+                if (this.artistasBasePorBanda.get(idBanda) == null) {
+                    this.artistasBasePorBanda.set(idBanda, new ArrayList<>());
+                }
+                this.artistasBasePorBanda.get(idBanda).add(artistaBase);
+            }
+        }
+        
+        for (ArtistaExterno candidato : this.artistasCandidatos) {
+            boolean tieneDescuento = false;
+            BitSet bandas = candidato.getIdsBandas();
+            for (int idBanda = bandas.nextSetBit(0); idBanda >= 0 && idBanda < this.artistasBasePorBanda.size(); 
+                    idBanda = bandas.nextSetBit(idBanda + 1)) {
+                if (this.artistasBasePorBanda.get(idBanda) != null) {
+                    tieneDescuento = true;
+                    break;
+                }
+            }
+            candidato.setDescuentoPorBanda(tieneDescuento);
+        }
+    }
+
+    /**
+     Devuelve los artistas base que tocaron en una banda.
+     @param banda El nombre de la banda.
+     @return La lista de artistas base (vacia si ninguno).
+     */
+    public List<ArtistaBase> getArtistasBasePorBanda(String banda) {
+        int idBanda = TablaSimbolos.BANDAS.buscarId(banda);
+        if (idBanda < 0 || idBanda >= this.artistasBasePorBanda.size() || this.artistasBasePorBanda.get(idBanda) == null) {
+            return new ArrayList<>();
+        }
+        return this.artistasBasePorBanda.get(idBanda);
     }
 
     
@@ -66,11 +281,28 @@ public class Recital {
     
     /**
      Devuelve la lista de contratos realizados.
-     @return La lista de objetos Contrato.
+     @return Vista de solo lectura de los objetos Contrato.
      */
     public List<Contrato> getContrataciones() {
+        return this.contrataciones.getTodos();
+    }
+
+    /**
+     Devuelve el registro indexado de contratos, para los planificadores.
+     @return El registro de contratos del recital.
+     */
+    RegistroContratos getRegistroContratos() {
         return this.contrataciones;
     }
+
+    /**
+     Devuelve los contratos de un artista candidato.
+     @param artista El artista a consultar.
+     @return Vista de solo lectura de sus contratos.
+     */
+    public List<Contrato> getContratosDeArtista(ArtistaExterno artista) {
+        return this.contrataciones.getDeArtista(this.idCandidato(artista));
+    }
     
     /**
      Calcula y devuelve el costo total de todos los artistas externos contratados.
@@ -78,12 +310,27 @@ public class Recital {
      */
     public double getCostoTotalContratos() {
         double costoTotal = 0.0;
-        for (Contrato contrato : this.contrataciones) {
+        for (Contrato contrato : this.contrataciones.getTodos()) {
             costoTotal += contrato.getCostoPagado();
         }
         return costoTotal;
     }
     
+    /**
+     Calcula lo que costaria contratar a un candidato en este recital:
+     su costo actual (con entrenamientos) y el 50% de descuento si
+     compartio banda con algun artista base.
+     @param candidato El artista candidato.
+     @return El costo efectivo de contratarlo para una cancion.
+     */
+    public double getCostoEfectivo(ArtistaExterno candidato) {
+        double costo = candidato.getCostoContratacion();
+        if (candidato.tieneDescuentoPorBanda()) {
+            costo = costo * 0.5;
+        }
+        return costo;
+    }
+    
     // --- METODOS DE CONSULTA ---
 
     /**
@@ -94,53 +341,68 @@ public class Recital {
      */
     public Map<String, Integer> getRolesFaltantesCancion(Cancion cancion) {
         
+        int[] idsRoles = cancion.getIdsRoles();
+        int[] faltantes = this.calcularFaltantes(cancion);
+
+        // Armamos el mapa resultante, omitiendo los roles que quedaron en 0.
+        Map<String, Integer> rolesFaltantes = new HashMap<>();
+        for (int i = 0; i < idsRoles.length; i++) {
+            if (faltantes[i] > 0) {
+                rolesFaltantes.put(TablaSimbolos.ROLES.getNombre(idsRoles[i]), faltantes[i]);
+            }
+        }
+        
+        return rolesFaltantes;
+    }
+
+    /**
+     Calcula cuantos musicos faltan para cada rol de una cancion, usando solo IDs enteros.
+     @param cancion La cancion a verificar.
+     @return Arreglo alineado con cancion.getIdsRoles() con la cantidad faltante de cada rol.
+     */
+    int[] calcularFaltantes(Cancion cancion) {
+        int id = this.idCancion(cancion);
+        int[] pendientes = this.pendientesTrasBase[id];
+        int[] cubiertos = this.cubiertosPorContratos[id];
+        
+        int[] faltantes = new int[pendientes.length];
+        for (int i = 0; i < pendientes.length; i++) {
+            faltantes[i] = Math.max(0, pendientes[i] - cubiertos[i]);
+        }
+        return faltantes;
+    }
+
+    /**
+     Calcula cuantos musicos faltan para cada rol de una cancion luego de
+     ubicar a los artistas base (sin tener en cuenta los contratos).
+     El resultado depende solo de la formacion de la cancion, por eso se
+     memoriza en coberturaBasePorFirma.
+     Cada artista base cubre el primer rol que necesita la cancion en orden
+     alfabetico (cancion.getOrdenRoles()), no en orden de ID.
+     @param cancion La cancion a verificar.
+     @return Arreglo alineado con cancion.getIdsRoles().
+     */
+    private int[] calcularCoberturaBase(Cancion cancion) {
+        
         //Obtenemos los roles requeridos
-        HashMap<String, Integer> rolesFaltantes = new HashMap<>(cancion.getConteoRolesRequeridos());
+        int[] idsRoles = cancion.getIdsRoles();
+        int[] faltantes = cancion.getCantidadesRoles().clone();
 
         //Restamos los roles que pueden cubrir los artistasBase.
         for (ArtistaBase artistaBase : this.artistasBase) {
             //Buscamos el primer rol que este artista pueda cubrir y que se necesite
-            for (String rolQueSabeTocar : artistaBase.getRolesHistoricos()) {
-                
-                // Verificamos si este rol todavia se necesita
-                int cantidadFaltante = rolesFaltantes.getOrDefault(rolQueSabeTocar, 0);
-                
-                if (cantidadFaltante > 0) {
+            for (int i : cancion.getOrdenRoles()) {
+                if (faltantes[i] > 0 && artistaBase.puedeTocar(idsRoles[i])) {
                 	// Restamos 1 a cantidadFaltante
-                    rolesFaltantes.put(rolQueSabeTocar, cantidadFaltante - 1);
+                    faltantes[i]--;
                
                     // pasamos al siguiente artista 
                     break; 
                 }
             }
         }
-
-        // Restamos los roles ya cubiertos por artistasExternos
-        for (Contrato contrato : this.contrataciones) {
-            
-            // Verificamos si el contrato es para esta cancion
-            if (contrato.getCancion().equals(cancion)) {
-                String rolAsignado = contrato.getRolAsignado();
-                int cantidadFaltante = rolesFaltantes.getOrDefault(rolAsignado, 0);
-                
-                if (cantidadFaltante > 0) {
-                    // Restamos 1 a cantidadFaltante si el contrato lo cubre
-                    rolesFaltantes.put(rolAsignado, cantidadFaltante - 1);
-                }
-            }
-        }
-
-        // Devolvemos el mapa resultante, limpiando roles que quedaron en 0.
-        Iterator<Map.Entry<String, Integer>> iterador = rolesFaltantes.entrySet().iterator();
-        while (iterador.hasNext()) {
-            Map.Entry<String, Integer> entrada = iterador.next();
-            
-            if (entrada.getValue() <= 0) {
-                iterador.remove();
-            }
-        }
         
-        return rolesFaltantes;
+        return faltantes;
     }
 
 
@@ -151,119 +413,113 @@ public class Recital {
      */
     public Map<String, Integer> getRolesFaltantesRecital() {
 
-        Map<String, Integer> faltantesGlobal = new HashMap<>();
-
-        // Iteramos por cada cancion
-        for (Cancion cancion : this.setlist) {
-            
-            // Usamos getRolesFaltantesCancion(cancion).
-            Map<String, Integer> faltantesCancion = this.getRolesFaltantesCancion(cancion);
-    
-            // Iteramos por cada entrada (par clave-valor) del mapa de faltantes de la cancion
-            for (Map.Entry<String, Integer> entrada : faltantesCancion.entrySet()) {
-                String rol = entrada.getKey();
-                int cantidad = entrada.getValue();
-
-                // Obtenemos la cantidad que ya teniamos acumulada para este rol (o 0 si era la primera vez)
-                int cantidadActual = faltantesGlobal.getOrDefault(rol, 0);
-                
-                // Guardamos la nueva suma total para ese rol
-                faltantesGlobal.put(rol, cantidadActual + cantidad);
+        // Los faltantes globales se mantienen al dia; solo los convertimos a Strings
+        Map<String, Integer> resultado = new HashMap<>();
+        for (int idRol = 0; idRol < this.faltantesGlobal.length; idRol++) {
+            if (this.faltantesGlobal[idRol] > 0) {
+                resultado.put(TablaSimbolos.ROLES.getNombre(idRol), this.faltantesGlobal[idRol]);
             }
         }
-        
-        return faltantesGlobal;
+        return resultado;
+    }
+
+    /**
+     Devuelve las canciones que ya tienen todos sus roles cubiertos.
+     @return BitSet indexado por ID de cancion (copia, puede modificarse).
+     */
+    public BitSet getCancionesCompletas() {
+        return (BitSet) this.cancionesCompletas.clone();
     }
 
     // --- METODOS DE ACCION ---
 
     /**
      Contrata artistas para una cancion especifica, optimizando por costo (Greedy).
+     Si algun rol no se puede cubrir, los contratos ya hechos se mantienen y no
+     se sigue con los roles restantes. No imprime nada ni lanza excepciones
+     cuando faltan candidatos.
      @param cancion La cancion para la cual contratar.
+     @return El resultado de la cancion: estado, contratos creados y roles sin cubrir.
      */
-    public void contratarParaCancion(Cancion cancion) {
+    public ResultadoContratacion.ResultadoCancion intentarContratarParaCancion(Cancion cancion) {
+        int[] idsRoles = cancion.getIdsRoles();
+        int[] faltantes = this.calcularFaltantes(cancion);
+        if (this.estaCompleta(cancion)) {
+            return new ResultadoContratacion.ResultadoCancion(cancion, ResultadoContratacion.Estado.YA_COMPLETA,
+                new ArrayList<>(), new HashMap<>());
+        }
 
-        //Usamos getRolesFaltantesCancion(cancion) que ya excluye Artistas Base y contratos previos.
-        Map<String, Integer> rolesFaltantes = this.getRolesFaltantesCancion(cancion);
-        
-        System.out.println("\nIniciando contratacion para '" + cancion.getTitulo() + "'...");
-        
-        // Iteramos por cada tipo de rol faltante
-        for (Map.Entry<String, Integer> entrada : rolesFaltantes.entrySet()) {
-            String rol = entrada.getKey();
-            int cantidadARequerir = entrada.getValue();
+        List<Contrato> contratos = new ArrayList<>();
+        boolean incompleta = false;
 
-            // Iteramos por cada rol de ese tipo requerido
-            for (int i = 0; i < cantidadARequerir; i++) {
-                
-                System.out.println("\n\t-Buscando artista para " + rol + " (" + (i+1) + "/" + cantidadARequerir + ")...");
-                
-                // Buscamos en 'artistasCandidatos' al artista mas barato
-                ArtistaExterno artistaMasBarato = null;
-                double costoMinimo = Double.MAX_VALUE;
-
-                for (ArtistaExterno candidato : this.artistasCandidatos) {
-                    
-                    // Si no puede tocar ese rol, continua
-                    if (!candidato.puedeTocar(rol)) {
-                        continue; 
-                    }
-
-                    // Si ya esta contratado para otro rol en esta cancion continua
-                    if (this.estaContratadoParaCancion(candidato, cancion)) {
-                    	continue;
-                    }
-
-                    // Si alcanzo su limite de 'maxCanciones' continua
-                    int cancionesAsignadas = this.getCancionesAsignadas(candidato);
-                    if (cancionesAsignadas >= candidato.getMaxCanciones()) {
-                    	continue;
-                    }
-                    
-                    // Calculamos su costo con descuento
-                    double costoActual = candidato.getCostoContratacion();
-                    
-                    boolean tieneDescuento = false;
-                    for (ArtistaBase artistaBase : this.artistasBase) {
-                        if (candidato.compartioBanda(artistaBase)) {
-                            tieneDescuento = true;
-                            break;
-                        }
-                    }
-
-                    if (tieneDescuento) {
-                        costoActual = costoActual * 0.5;
-                    }
-
-                    // Comparamos si es el mas barato encontrado
-                    if (costoActual < costoMinimo) {
-                        costoMinimo = costoActual;
-                        artistaMasBarato = candidato;
-                    }
-                } 
-
-                // Creamos el Contrato
-                if (artistaMasBarato != null) {
-
-                    System.out.println("\t\t*Contratado: " + artistaMasBarato.getNombre() + 
-                                       " para " + rol + " por $" + costoMinimo);
-                                       
-                    Contrato nuevoContrato = new Contrato(artistaMasBarato, cancion, rol, costoMinimo);
-                    this.contrataciones.add(nuevoContrato);
-                    
-                } else {
-                    // Si no se encuentra artista, generamos un error.
-                    System.err.println("¡ERROR! No se encontraron artistas disponibles para el rol '" + 
-                                       rol + "' en la cancion '" + cancion.getTitulo() + "'.");
-                    
-                    // Lanzamos una excepcion para detener la operacion.
-                    throw new RuntimeException("Faltan artistas para " + rol + " en " + cancion.getTitulo());
+        // Iteramos por cada tipo de rol faltante (por nombre, ver Cancion.getOrdenRoles()),
+        // y por cada musico requerido de ese rol
+        for (int r : cancion.getOrdenRoles()) {
+            if (incompleta) {
+                break;
+            }
+            String rol = TablaSimbolos.ROLES.getNombre(idsRoles[r]);
+            for (int i = 0; i < faltantes[r]; i++) {
+                this.eventos.busquedaArtista(cancion, rol, i + 1, faltantes[r]);
+
+                // Buscamos en el indice del rol al artista mas barato que tenga
+                // capacidad y no este contratado ya en esta cancion
+                ArtistaExterno artistaMasBarato = this.indiceCandidatos.buscarMasBarato(idsRoles[r], cancion.getId());
+                if (artistaMasBarato == null) {
+                    incompleta = true;
+                    break;
                 }
-                
-            } 
-            
-        } 
-        System.out.println("\nContratacion finalizada para '" + cancion.getTitulo() + "'");  
+
+                Contrato nuevoContrato = new Contrato(artistaMasBarato, cancion,
+                    rol, this.getCostoEfectivo(artistaMasBarato));
+                this.registrarContrato(nuevoContrato);
+                contratos.add(nuevoContrato);
+                this.eventos.artistaContratado(nuevoContrato);
+            }
+        }
+
+        // Roles que siguen faltando, en el orden en que se recorrieron (el primero es el que fallo)
+        Map<String, Integer> sinCubrir = new LinkedHashMap<>();
+        if (incompleta) {
+            int[] restantes = this.calcularFaltantes(cancion);
+            for (int r : cancion.getOrdenRoles()) {
+                if (restantes[r] > 0) {
+                    String rol = TablaSimbolos.ROLES.getNombre(idsRoles[r]);
+                    sinCubrir.put(rol, restantes[r]);
+                    this.eventos.rolSinCubrir(cancion, rol);
+                }
+            }
+        }
+        ResultadoContratacion.Estado estado = incompleta ? ResultadoContratacion.Estado.INCOMPLETA : ResultadoContratacion.Estado.COMPLETADA;
+        return new ResultadoContratacion.ResultadoCancion(cancion, estado, contratos, sinCubrir);
+    }
+
+    /**
+     Contrata artistas para una cancion especifica, optimizando por costo (Greedy),
+     e informa cada contratacion a los EventosRecital.
+     @param cancion La cancion para la cual contratar.
+     @throws RuntimeException Si algun rol no se pudo cubrir.
+     */
+    public void contratarParaCancion(Cancion cancion) {
+        this.eventos.inicioContratacion(cancion);
+        ResultadoContratacion.ResultadoCancion resultado = this.intentarContratarParaCancion(cancion);
+        this.eventos.finContratacion(resultado);
+
+        if (resultado.getEstado() == ResultadoContratacion.Estado.INCOMPLETA) {
+            // Lanzamos una excepcion para detener la operacion.
+            this.eventos.vaciar();
+            String rol = resultado.getRolesSinCubrir().keySet().iterator().next();
+            throw new RuntimeException("Faltan artistas para " + rol + " en " + cancion.getTitulo());
+        }
+    }
+    
+    /**
+     Indica si una cancion ya tiene todos sus roles cubiertos.
+     @param cancion La cancion a verificar.
+     @return true si no falta ningun rol, false en caso contrario.
+     */
+    public boolean estaCompleta(Cancion cancion) {
+        return this.cancionesCompletas.get(this.idCancion(cancion));
     }
     
     /**
@@ -272,80 +528,264 @@ public class Recital {
      @return El número de canciones únicas.
      */
     public int getCancionesAsignadas(ArtistaExterno artista) {
-        Set<Cancion> cancionesUnicas = new HashSet<>();
+        return this.contrataciones.cantidadDeArtista(this.idCandidato(artista));
+    }
+    
+    /**
+     Agrega un contrato al registro y actualiza los roles faltantes.
+     @param contrato El contrato nuevo.
+     */
+    private void registrarContrato(Contrato contrato) {
+        this.contrataciones.agregar(contrato);
         
-        for (Contrato contrato : this.contrataciones) {
-            if (contrato.getArtista().equals(artista)) {
-                cancionesUnicas.add(contrato.getCancion());
-            }
-        } 
-        return cancionesUnicas.size();
+        // Marcamos al artista como contratado para que no pueda ser entrenado
+        contrato.getArtista().setYaContratado();
+        this.actualizarFaltantes(contrato, +1);
+        
+        // Si el artista alcanzo su limite, sale del indice de candidatos
+        ArtistaExterno artista = contrato.getArtista();
+        if (this.contrataciones.cantidadDeArtista(artista.getId()) >= artista.getMaxCanciones()) {
+            this.indiceCandidatos.actualizar(artista);
+        }
+        this.eventos.contratoRegistrado(contrato);
+    }
+
+    /**
+     Actualiza en O(1) los contadores de roles faltantes de la cancion del
+     contrato, su estado de completitud y los faltantes globales.
+     @param contrato El contrato agregado o quitado.
+     @param delta +1 si se agrego, -1 si se quito.
+     */
+    private void actualizarFaltantes(Contrato contrato, int delta) {
+        Cancion cancion = contrato.getCancion();
+        int id = cancion.getId();
+        this.anotarCambio(contrato, delta);
+        int i = cancion.indiceDeRol(contrato.getIdRolAsignado());
+        if (i < 0) {
+            return; // El rol no lo requiere la cancion, no cambia nada
+        }
+        
+        int pendientes = this.pendientesTrasBase[id][i];
+        int antes = Math.max(0, pendientes - this.cubiertosPorContratos[id][i]);
+        this.cubiertosPorContratos[id][i] += delta;
+        int despues = Math.max(0, pendientes - this.cubiertosPorContratos[id][i]);
+        
+        int cambio = despues - antes;
+        if (cambio != 0) {
+            this.faltantesPorCancion[id] += cambio;
+            this.faltantesGlobal[cancion.getIdsRoles()[i]] += cambio;
+            this.cancionesCompletas.set(id, this.faltantesPorCancion[id] == 0);
+        }
     }
     
     /**
-     Helper para verificar si un artista ya tiene un contrato
-     para un rol en una cancion especifica.
-     @param artista El artista a verificar.
-     @param cancion La cancion a verificar.
-     @return true si ya tiene un contrato en esa cancion, false si no.
+     Anota la cancion del contrato como modificada para la proxima exportacion
+     de cambios y actualiza el hash de los contratos vigentes.
+     @param contrato El contrato agregado o quitado.
+     @param delta +1 si se agrego, -1 si se quito.
      */
-    private boolean estaContratadoParaCancion(ArtistaExterno artista, Cancion cancion) {
-        for (Contrato contrato : this.contrataciones) {
-            if (contrato.getArtista().equals(artista) && 
-                contrato.getCancion().equals(cancion)) {
-                return true;
+    private void anotarCambio(Contrato contrato, int delta) {
+        this.hashContratos += delta * hashContrato(contrato);
+        int id = contrato.getCancion().getId();
+        if (!this.cancionesModificadas.get(id)) {
+            this.cancionesModificadas.set(id);
+            if (this.cantidadModificadas == this.idsModificadas.length) {
+                this.idsModificadas = Arrays.copyOf(this.idsModificadas, this.cantidadModificadas * 2);
             }
+            this.idsModificadas[this.cantidadModificadas++] = id;
         }
-        return false;
     }
-
     
+    /**
+     Devuelve el ID de un candidato, verificando que pertenezca a este recital.
+     @param artista El artista candidato.
+     @return Su posicion en artistasCandidatos.
+     */
+    private int idCandidato(ArtistaExterno artista) {
+        int id = artista.getId();
+        if (id < 0 || id >= this.artistasCandidatos.size() || this.artistasCandidatos.get(id) != artista) {
+            throw new IllegalArgumentException(artista.getNombre() + " no es un candidato de este recital.");
+        }
+        return id;
+    }
+
+    /**
+     Devuelve el ID de una cancion, verificando que pertenezca al setlist.
+     @param cancion La cancion.
+     @return Su posicion en el setlist.
+     */
+    private int idCancion(Cancion cancion) {
+        int id = cancion.getId();
+        if (id < 0 || id >= this.setlist.size() || this.setlist.get(id) != cancion) {
+            throw new IllegalArgumentException("'" + cancion.getTitulo() + "' no pertenece al setlist de este recital.");
+        }
+        return id;
+    }
     
     /**
-     Contrata artistas para todas las canciones del recital.
+     Verifica con un flujo maximo, sin contratar a nadie, que roles faltantes
+     no se pueden cubrir con los candidatos disponibles (ver VerificadorFactibilidad).
+     @return Un mapa cancion -> (rol -> cantidad sin cubrir). Vacio si el recital se puede completar.
      */
-    public void contratarParaRecital() {
-        int cancionesExitosas = 0;
-        int cancionesFallidas = 0;
-        double costoAntes = this.getCostoTotalContratos();
-        
-        // Iteramos por cada cancion en 'setlist'
+    public Map<Cancion, Map<String, Integer>> verificarFactibilidad() {
+        return new VerificadorFactibilidad(this).verificar();
+    }
+
+    /**
+     Contrata artistas para todas las canciones incompletas del recital, en
+     orden de setlist. No imprime nada ni lanza excepciones cuando faltan
+     candidatos: las canciones que no se pudieron cubrir quedan como INCOMPLETA.
+     @return El resultado de cada cancion procesada y el costo total.
+     */
+    public ResultadoContratacion intentarContratarParaRecital() {
+        ResultadoContratacion resultado = new ResultadoContratacion();
         for (Cancion cancion : this.setlist) {
-            
-            //Llamamos a contratarParaCancion(cancion) para cada una
-            try {
-            	
-                // Si no faltan roles para esta cancion continuamos
-                if (this.getRolesFaltantesCancion(cancion).isEmpty()) {
-                    continue;
-                }
-                
-                // Si faltan roles, intentamos contratar
-                this.contratarParaCancion(cancion);
-                cancionesExitosas++;
-                
-            } catch (RuntimeException e) {
-                // Si falla la contratacion de una cancion (ej. no hay artistas),
-                // informamos el error y continuamos con la siguiente.
-                System.err.println("Error al contratar para '" + cancion.getTitulo() + 
-                                   "': " + e.getMessage());
-                System.err.println("Continuando con la siguiente cancion...");
-                cancionesFallidas++;
+            // Si no faltan roles para esta cancion continuamos
+            if (!this.estaCompleta(cancion)) {
+                resultado.agregar(this.intentarContratarParaCancion(cancion));
             }
         }
+        return resultado;
+    }
+
+    /**
+     Contrata artistas para todas las canciones del recital e informa un resumen.
+     @return El resultado de cada cancion procesada y el costo total.
+     */
+    public ResultadoContratacion contratarParaRecital() {
         
-        double costoDespues = this.getCostoTotalContratos();
+        // Antes de contratar nada avisamos que roles no se van a poder cubrir
+        Map<Cancion, Map<String, Integer>> sinCubrir = this.verificarFactibilidad();
+        if (!sinCubrir.isEmpty()) {
+            this.eventos.rolesInalcanzables(sinCubrir);
+        }
         
-        System.out.println("\n===== Contratacion del recital finalizada =====");
-        System.out.println("Resumen:");
-        System.out.println("-" + cancionesExitosas + " canciones procesadas.");
-        if (cancionesFallidas > 0) {
-            System.out.println("-" + cancionesFallidas + " canciones no pudieron completarse por falta de artistas.");
+        ResultadoContratacion resultado = this.intentarContratarParaRecital();
+        return this.finalizarContratacionRecital("Contratacion del recital", resultado);
+    }
+
+
+    /**
+     Contrata artistas para todas las canciones del recital resolviendo el
+     conjunto como un flujo de costo minimo (ver PlanificadorOptimo), en lugar
+     de ir cancion por cancion. Cubre la mayor cantidad posible de roles al
+     menor costo total y registra todos los contratos en un solo paso.
+     @return El resultado de cada cancion que estaba incompleta y el costo total.
+     */
+    public ResultadoContratacion contratarParaRecitalOptimo() {
+        ResultadoContratacion resultado = this.registrarPlan(new PlanificadorOptimo(this).planificar());
+        return this.finalizarContratacionRecital("Contratacion optima del recital", resultado);
+    }
+
+    /**
+     Contrata artistas para todas las canciones del recital con el mismo
+     criterio greedy que contratarParaRecital, pero resolviendo en paralelo
+     los grupos de canciones que no comparten candidatos (ver PlanificadorComponentes).
+     @return El resultado de cada cancion que estaba incompleta y el costo total.
+     */
+    public ResultadoContratacion contratarParaRecitalEnParalelo() {
+        ResultadoContratacion resultado = this.registrarPlan(new PlanificadorComponentes(this).planificar());
+        return this.finalizarContratacionRecital("Contratacion del recital", resultado);
+    }
+
+    /**
+     Contrata artistas para todas las canciones del recital procesandolas de
+     forma concurrente, con reservas atomicas de capacidad por artista (ver
+     ContratacionConcurrente). Cada cancion se contrata completa o no se contrata.
+     @return El resultado de cada cancion que estaba incompleta y el costo total.
+     */
+    public ResultadoContratacion contratarParaRecitalConcurrente() {
+        ResultadoContratacion resultado = this.registrarPlan(new ContratacionConcurrente(this).planificar());
+        return this.finalizarContratacionRecital("Contratacion del recital", resultado);
+    }
+
+    /**
+     Registra los contratos de un plan de todo el recital y arma su resultado,
+     con una entrada por cada cancion que estaba incompleta antes del plan.
+     @param plan Los contratos a registrar.
+     @return El resultado de cada cancion que estaba incompleta y el costo total.
+     */
+    private ResultadoContratacion registrarPlan(List<Contrato> plan) {
+        List<Cancion> pendientes = new ArrayList<>();
+        for (Cancion cancion : this.setlist) {
+            if (!this.estaCompleta(cancion)) {
+                pendientes.add(cancion);
+            }
+        }
+
+        Map<Cancion, List<Contrato>> porCancion = new HashMap<>();
+        for (Contrato contrato : plan) {
+            this.registrarContrato(contrato);
+            porCancion.computeIfAbsent(contrato.getCancion(), c -> new ArrayList<>()).add(contrato);
         }
-        System.out.println("\n-Total Gastado: $" + (costoDespues-costoAntes));
-        System.out.println("===============================================");
+
+        ResultadoContratacion resultado = new ResultadoContratacion();
+        for (Cancion cancion : pendientes) {
+            List<Contrato> contratos = porCancion.getOrDefault(cancion, new ArrayList<>());
+            if (this.estaCompleta(cancion)) {
+                resultado.agregar(new ResultadoContratacion.ResultadoCancion(cancion,
+                    ResultadoContratacion.Estado.COMPLETADA, contratos, new HashMap<>()));
+            } else {
+                resultado.agregar(new ResultadoContratacion.ResultadoCancion(cancion,
+                    ResultadoContratacion.Estado.INCOMPLETA, contratos, this.getRolesFaltantesCancion(cancion)));
+            }
+        }
+        return resultado;
     }
 
+    /**
+     Emite el resumen de una contratacion de todo el recital y espera a que los
+     receptores lo procesen, para que quede escrito antes de volver al menu.
+     @param descripcion Que contratacion se hizo (ej. "Contratacion optima del recital").
+     @param resultado El resultado de la contratacion.
+     @return El mismo resultado.
+     */
+    private ResultadoContratacion finalizarContratacionRecital(String descripcion, ResultadoContratacion resultado) {
+        this.eventos.finContratacionRecital(descripcion, resultado);
+        this.eventos.vaciar();
+        return resultado;
+    }
+
+    /**
+     Intenta bajar el costo de los contratos vigentes reasignando roles entre
+     candidatos con busqueda local en paralelo (ver MejoradorContrataciones).
+     La cobertura de las canciones no cambia.
+     @param presupuestoMillis Tiempo maximo de busqueda, en milisegundos.
+     @return El resultado con el costo antes y despues de la mejora.
+     */
+    public MejoradorContrataciones.ResultadoMejora mejorarContrataciones(long presupuestoMillis) {
+        MejoradorContrataciones.ResultadoMejora resultado = new MejoradorContrataciones(this).mejorar(presupuestoMillis);
+        this.eventos.finMejora(resultado);
+        this.eventos.vaciar();
+        return resultado;
+    }
+
+    /**
+     Reemplaza un conjunto de contratos por otro en un solo paso, manteniendo
+     al dia los faltantes, el indice de candidatos y el estado de los artistas.
+     @param quitados Contratos vigentes a dar de baja.
+     @param nuevos Contratos a registrar en su lugar.
+     */
+    void reemplazarContratos(List<Contrato> quitados, List<Contrato> nuevos) {
+        Set<ArtistaExterno> afectados = new HashSet<>();
+        for (Contrato contrato : quitados) {
+            if (this.contrataciones.quitar(contrato)) {
+                this.actualizarFaltantes(contrato, -1);
+                afectados.add(contrato.getArtista());
+                this.eventos.contratoDadoDeBaja(contrato);
+            }
+        }
+        for (Contrato contrato : nuevos) {
+            this.registrarContrato(contrato);
+            afectados.add(contrato.getArtista());
+        }
+        for (ArtistaExterno artista : afectados) {
+            if (this.contrataciones.cantidadDeArtista(artista.getId()) == 0) {
+                artista.setNoContratado();
+            }
+            this.indiceCandidatos.actualizar(artista);
+        }
+    }
 
     /**
      Entrena a un artista candidato.
@@ -366,20 +806,29 @@ public class Recital {
 
         // Si se encuentra, llamamos a artista.entrenar(nuevoRol).
         if (artistaEncontrado != null) {
-
-            boolean exito = artistaEncontrado.entrenar(nuevoRol);
-            
-            if (exito) {
-                System.out.println("Entrenamiento de " + artistaEncontrado.getNombre() + " completado.");
-            } else {
-                System.out.println("El entrenamiento de " + artistaEncontrado.getNombre() + " no pudo completarse.");
-            }
-            
+            this.entrenarArtista(artistaEncontrado, nuevoRol);
         } else {
             // Manejar el caso de que el artista no exista
-            System.err.println("Error: No se encontro ningún artista candidato con el nombre '" + 
-                               nombreArtista + "'.");
+            this.eventos.artistaNoEncontrado(nombreArtista);
+        }
+    }
+    
+    /**
+     Entrena a un candidato ya encontrado y lo reubica en el indice.
+     @param artista El candidato.
+     @param nuevoRol El rol para el que se va a entrenar.
+     @return true si aprendio el rol, false si ya tenia contratos o ya lo sabia tocar.
+     */
+    boolean entrenarArtista(ArtistaExterno artista, String nuevoRol) {
+        boolean exito = artista.entrenar(nuevoRol);
+        if (exito) {
+            // Cambiaron su costo y sus roles: lo reubicamos en el indice
+            this.indiceCandidatos.actualizar(artista);
+            this.eventos.artistaEntrenado(artista, nuevoRol, artista.getCostoContratacion());
+        } else {
+            this.eventos.entrenamientoRechazado(artista, nuevoRol, artista.YaContratado());
         }
+        return exito;
     }
     
     /**
@@ -390,19 +839,20 @@ public class Recital {
     public void quitarContrato(Contrato contratoAQuitar) {
         ArtistaExterno artista = contratoAQuitar.getArtista();
         
-        if (this.contrataciones.remove(contratoAQuitar)) {
-            System.out.println("\nContrato eliminado: " + artista.getNombre() + 
-                               " en '" + contratoAQuitar.getCancion().getTitulo() + 
-                               "' (Rol: " + contratoAQuitar.getRolAsignado() + ")");
+        if (this.contrataciones.quitar(contratoAQuitar)) {
+            this.actualizarFaltantes(contratoAQuitar, -1);
+            this.indiceCandidatos.actualizar(artista);
+            this.eventos.contratoDadoDeBaja(contratoAQuitar);
+            this.eventos.contratoQuitado(contratoAQuitar);
             
             // Verificamos si este era el último contrato del artista.
-            int cancionesRestantes = this.getCancionesAsignadas(artista);
+            int cancionesRestantes = this.contrataciones.cantidadDeArtista(artista.getId());
             
             if (cancionesRestantes == 0) {
                 artista.setNoContratado();
             }
         } else {
-            System.err.println("Error: No se pudo encontrar el contrato en la lista.");
+            this.eventos.contratoNoEncontrado(contratoAQuitar);
         }
     }
     
@@ -412,27 +862,21 @@ public class Recital {
      */
     public void quitarTodosLosContratosDeArtista(ArtistaExterno artista) {
 
-        Iterator<Contrato> iterador = this.contrataciones.iterator();
-        int contratosEliminados = 0;
-
-        while (iterador.hasNext()) {
-            Contrato contrato = iterador.next();
-            if (contrato.getArtista().equals(artista)) {
-                iterador.remove(); 
-                contratosEliminados++;
-            }
+        List<Contrato> eliminados = this.contrataciones.quitarDeArtista(this.idCandidato(artista));
+        for (Contrato contrato : eliminados) {
+            this.actualizarFaltantes(contrato, -1);
+            this.eventos.contratoDadoDeBaja(contrato);
+        }
+        int contratosEliminados = eliminados.size();
+        if (contratosEliminados > 0) {
+            this.indiceCandidatos.actualizar(artista);
         }
 
         if (contratosEliminados > 0) {
             // Si eliminamos al menos un contrato, reseteamos el estado del artista
             artista.setNoContratado();
-            System.out.println("Se eliminaron " + contratosEliminados + 
-                               " contratos de " + artista.getNombre() + ".");
-            System.out.println("El artista ahora esta disponible y puede ser entrenado.");
-        } else {
-
-            System.out.println(artista.getNombre() + " no tenia contratos para eliminar.");
         }
+        this.eventos.contratosDeArtistaQuitados(artista, contratosEliminados);
     }
 
     
@@ -455,7 +899,7 @@ public class Recital {
         double costoTotal = 0.0;
         
         // Se imprime la informacion de cada Contrato.
-        for (Contrato contrato : this.contrataciones) {
+        for (Contrato contrato : this.contrataciones.getTodos()) {
             System.out.println(
                 "- Artista: " + contrato.getArtista().getNombre() + 
                 "\n    Cancion: " + contrato.getCancion().getTitulo() + 
@@ -481,17 +925,15 @@ public class Recital {
         // Iteramos por 'this.setlist'.
         for (Cancion cancion : this.setlist) {
             
-            // Por cada cancion, se llama a getRolesFaltantesCancion(cancion).
-            Map<String, Integer> rolesFaltantes = this.getRolesFaltantesCancion(cancion);
-            
-            // Si el mapa de roles faltantes esta vacio, se imprime "Completa".
-            if (rolesFaltantes.isEmpty()) {
+            // Si la cancion esta marcada como completa, se imprime "Completa".
+            if (this.cancionesCompletas.get(cancion.getId())) {
                 System.out.println("\n- " + cancion.getTitulo() + ": [COMPLETA]");
             } else {
                 // Si no, imprimir "Incompleta" y los roles que faltan.
                 System.out.println("\n- " + cancion.getTitulo() + ": [INCOMPLETA]");
                 
                 // Iteramos por el mapa de faltantes para detallar
+                Map<String, Integer> rolesFaltantes = this.getRolesFaltantesCancion(cancion);
                 for (Map.Entry<String, Integer> entrada : rolesFaltantes.entrySet()) {
                     System.out.println("    * Falta(n): " + entrada.getValue() + " de '" + entrada.getKey() + "'");
                 }
@@ -500,4 +942,206 @@ public class Recital {
         System.out.println("\n===========================================");
     }
 
+    /**
+     Escribe el estado del recital como JSON: un identificador del estado
+     ("base"), el costo total y, por cancion, si esta completa, los roles
+     faltantes (solo si no lo esta) y los artistas asignados. Cada cancion se
+     escribe directamente desde los contratos que el registro ya tiene
+     agrupados por cancion, sin construir el documento completo. Las
+     exportaciones de cambios siguientes parten de esta y llevan su "base".
+     @param writer Destino del JSON. No se cierra.
+     @throws IOException Si no se puede escribir.
+     */
+    public void exportarEstado(Writer writer) throws IOException {
+        JsonWriter json = abrirJson(writer);
+        json.beginObject();
+        json.name("base").value(Long.toHexString(this.hashContratos));
+        json.name("costoTotal").value(this.getCostoTotalContratos());
+        json.name("canciones").beginArray();
+        for (Cancion cancion : this.setlist) {
+            json.beginObject();
+            this.escribirCancion(json, cancion);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        
+        // Las exportaciones de cambios siguientes son relativas a esta
+        this.olvidarModificadas();
+        this.baseExportacion = this.hashContratos;
+        this.secuenciaExportacion = 0;
+        this.hayExportacionCompleta = true;
+    }
+
+    /**
+     Sigue la cadena de exportaciones de una sesion anterior: las exportaciones
+     de cambios siguientes parten de la exportacion completa con esa "base" y
+     continuan despues de la secuencia indicada. Como no se sabe que cambio
+     desde entonces, la proxima exportacion de cambios lleva todas las canciones.
+     @param base La "base" de la exportacion completa (ver CombinarExportaciones.leerCadena).
+     @param secuencia La secuencia de la ultima exportacion de cambios que parte de ella (0 si no hay).
+     */
+    public void retomarExportaciones(long base, long secuencia) {
+        this.baseExportacion = base;
+        this.secuenciaExportacion = secuencia;
+        this.hayExportacionCompleta = true;
+        this.todasModificadas = true;
+    }
+
+    /**
+     Indica si hay una exportacion completa (de esta sesion o retomada con
+     retomarExportaciones) de la que puedan partir las exportaciones de cambios.
+     */
+    public boolean hayExportacionCompleta() {
+        return this.hayExportacionCompleta;
+    }
+
+    /**
+     Escribe solo las canciones que cambiaron (por contratos agregados o
+     quitados) desde la ultima exportacion, completa o de cambios, con el
+     mismo formato que exportarEstado mas su posicion en el setlist, el costo
+     total vigente y un numero de secuencia: 1 para los primeros cambios
+     despues de una exportacion completa, 2 para los siguientes, etc.
+     Lleva tambien la "base" de la exportacion completa de la que parte y el
+     identificador del estado actual ("estado"), que es la "base" que tendria
+     una exportacion completa hecha ahora.
+     CombinarExportaciones aplica estos archivos sobre la exportacion completa.
+     El tiempo depende de la cantidad de canciones modificadas y de los
+     contratos (para sumar el costo), no del tamanio del setlist.
+     @param writer Destino del JSON. No se cierra.
+     @return El numero de secuencia escrito.
+     @throws IOException Si no se puede escribir.
+     @throws IllegalStateException Si todavia no hay una exportacion completa de la que partir.
+     */
+    public long exportarCambios(Writer writer) throws IOException {
+        if (!this.hayExportacionCompleta) {
+            throw new IllegalStateException("Todavia no hay una exportacion completa de la que partan los cambios.");
+        }
+        int[] ids;
+        if (this.todasModificadas) {
+            ids = new int[this.setlist.size()];
+            Arrays.setAll(ids, i -> i);
+        } else {
+            ids = Arrays.copyOf(this.idsModificadas, this.cantidadModificadas);
+            Arrays.sort(ids);
+        }
+        long secuencia = this.secuenciaExportacion + 1;
+        
+        JsonWriter json = abrirJson(writer);
+        json.beginObject();
+        json.name("base").value(Long.toHexString(this.baseExportacion));
+        json.name("estado").value(Long.toHexString(this.hashContratos));
+        json.name("secuencia").value(secuencia);
+        json.name("costoTotal").value(this.getCostoTotalContratos());
+        json.name("canciones").beginArray();
+        for (int id : ids) {
+            json.beginObject();
+            json.name("posicion").value(id);
+            this.escribirCancion(json, this.setlist.get(id));
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        
+        this.olvidarModificadas();
+        this.secuenciaExportacion = secuencia;
+        return secuencia;
+    }
+
+    /**
+     Numero de secuencia de la ultima exportacion de cambios (0 si desde la
+     ultima exportacion completa no hubo ninguna).
+     */
+    public long getSecuenciaExportacion() {
+        return this.secuenciaExportacion;
+    }
+
+    // Mismo formato que Gson con setPrettyPrinting, que es lo que se usaba antes
+    static JsonWriter abrirJson(Writer writer) {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.setHtmlSafe(true);
+        json.setSerializeNulls(false);
+        return json;
+    }
+
+    /*
+     Campos de una cancion en la exportacion. Sus contratos van en el orden
+     del registro de la cancion, que solo cambia cuando cambian ellos: asi una
+     cancion que no se modifico se escribe siempre igual.
+     */
+    private void escribirCancion(JsonWriter json, Cancion cancion) throws IOException {
+        json.name("titulo").value(cancion.getTitulo());
+        boolean completa = this.cancionesCompletas.get(cancion.getId());
+        json.name("estaCompleta").value(completa);
+        if (!completa) {
+            json.name("rolesFaltantes").beginObject();
+            for (Map.Entry<String, Integer> entrada : this.getRolesFaltantesCancion(cancion).entrySet()) {
+                json.name(entrada.getKey()).value(entrada.getValue());
+            }
+            json.endObject();
+        }
+        json.name("artistasAsignados").beginArray();
+        for (Contrato contrato : this.contrataciones.getDeCancion(cancion.getId())) {
+            json.beginObject();
+            json.name("artista").value(contrato.getArtista().getNombre());
+            json.name("rol").value(contrato.getRolAsignado());
+            json.name("costoPagado").value(contrato.getCostoPagado());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    // Hash de un contrato que no depende de los IDs de roles (ver calcularCoberturaBase)
+    private static long hashContrato(Contrato contrato) {
+        long hash = contrato.getArtista().getId() * 0x9E3779B97F4A7C15L + contrato.getCancion().getId();
+        hash = hash * 31 + contrato.getRolAsignado().hashCode();
+        hash = hash * 31 + Double.doubleToLongBits(contrato.getCostoPagado());
+        // Mezcla final de MurmurHash3, para que la suma de varios no se cancele facil
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private void olvidarModificadas() {
+        for (int i = 0; i < this.cantidadModificadas; i++) {
+            this.cancionesModificadas.clear(this.idsModificadas[i]);
+        }
+        this.cantidadModificadas = 0;
+        this.todasModificadas = false;
+    }
+
+    /*
+     Clave canonica del multiconjunto de roles de una cancion
+     (IDs ordenados y sus cantidades).
+     */
+    private static final class FirmaRoles {
+        private final int[] idsRoles;
+        private final int[] cantidades;
+        private final int hash;
+
+        FirmaRoles(Cancion cancion) {
+            this.idsRoles = cancion.getIdsRoles();
+            this.cantidades = cancion.getCantidadesRoles();
+            this.hash = 31 * Arrays.hashCode(this.idsRoles) + Arrays.hashCode(this.cantidades);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FirmaRoles)) return false;
+            FirmaRoles otra = (FirmaRoles) o;
+            return this.hash == otra.hash
+                && Arrays.equals(this.idsRoles, otra.idsRoles)
+                && Arrays.equals(this.cantidades, otra.cantidades);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
 }
\ No newline at end of file
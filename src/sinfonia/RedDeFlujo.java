@@ -0,0 +1,346 @@
+package sinfonia;
+
+import java.util.Arrays;
+
+/*
+ Red de flujo dirigida con capacidades enteras y costos reales.
+ Las aristas se guardan en arreglos (lista de adyacencia con "siguiente")
+ para que redes con millones de aristas no generen millones de objetos.
+ Cada arista i tiene su reversa en i ^ 1.
+ */
+public class RedDeFlujo {
+
+    private static final double EPSILON = 1e-9;
+
+    private int cantidadNodos;
+    private int cantidadAristas;
+
+    private int[] primera;     // primera arista de cada nodo (-1 si no tiene)
+    private int[] siguiente;   // siguiente arista del mismo nodo origen
+    private int[] destino;
+    private int[] capacidad;   // capacidad residual
+    private double[] costo;
+
+    public RedDeFlujo(int cantidadNodos) {
+        this.cantidadNodos = cantidadNodos;
+        this.primera = new int[cantidadNodos];
+        Arrays.fill(this.primera, -1);
+
+        int capacidadInicial = 16;
+        this.siguiente = new int[capacidadInicial];
+        this.destino = new int[capacidadInicial];
+        this.capacidad = new int[capacidadInicial];
+        this.costo = new double[capacidadInicial];
+    }
+
+    /**
+     Agrega un nodo nuevo a la red.
+     @return El indice del nodo.
+     */
+    public int agregarNodo() {
+        if (this.cantidadNodos == this.primera.length) {
+            this.primera = Arrays.copyOf(this.primera, this.cantidadNodos * 2 + 1);
+        }
+        this.primera[this.cantidadNodos] = -1;
+        return this.cantidadNodos++;
+    }
+
+    /**
+     Agrega una arista (y su reversa residual) a la red.
+     @param desde Nodo origen.
+     @param hasta Nodo destino.
+     @param capacidadArista Capacidad de la arista.
+     @param costoUnitario Costo por unidad de flujo.
+     @return El indice de la arista, para consultar luego su flujo.
+     */
+    public int agregarArista(int desde, int hasta, int capacidadArista, double costoUnitario) {
+        int arista = this.cantidadAristas;
+        this.asegurarEspacio(arista + 2);
+
+        this.enlazar(arista, desde, hasta, capacidadArista, costoUnitario);
+        this.enlazar(arista + 1, hasta, desde, 0, -costoUnitario);
+        this.cantidadAristas += 2;
+        return arista;
+    }
+
+    /**
+     Devuelve cuanto flujo pasa por una arista agregada con agregarArista.
+     @param arista El indice devuelto por agregarArista.
+     @return El flujo de la arista.
+     */
+    public int getFlujo(int arista) {
+        return this.capacidad[arista ^ 1];
+    }
+
+    public int getCantidadNodos() {
+        return this.cantidadNodos;
+    }
+
+    public int getCantidadAristas() {
+        return this.cantidadAristas / 2;
+    }
+
+    /**
+     Calcula un flujo maximo de costo minimo entre dos nodos con el metodo
+     primal-dual: Dijkstra sobre costos reducidos (potenciales) para hallar
+     la distancia minima al sumidero y luego un flujo bloqueante (como en Dinic)
+     sobre las aristas de costo reducido cero, que envia de una vez todos
+     los caminos minimos de esa distancia.
+     Requiere que todos los costos iniciales sean no negativos.
+     @param fuente Nodo fuente.
+     @param sumidero Nodo sumidero.
+     @return Un arreglo {flujo, costo} con el flujo total enviado y su costo.
+     */
+    public double[] flujoMaximoCostoMinimo(int fuente, int sumidero) {
+        int n = this.cantidadNodos;
+        double[] potencial = new double[n];
+        double[] distancia = new double[n];
+        boolean[] cerrado = new boolean[n];
+        int[] nivel = new int[n];
+        int[] actual = new int[n];
+        int[] cola = new int[n];
+        int[] camino = new int[n];
+        MonticuloMinimo monticulo = new MonticuloMinimo(n);
+
+        int flujoTotal = 0;
+        double costoTotal = 0.0;
+
+        while (this.dijkstra(fuente, sumidero, potencial, distancia, cerrado, monticulo)) {
+            // Actualizamos potenciales de los nodos cerrados (el resto sigue siendo valido)
+            double distanciaSumidero = distancia[sumidero];
+            for (int nodo = 0; nodo < n; nodo++) {
+                if (cerrado[nodo]) {
+                    potencial[nodo] += distancia[nodo] - distanciaSumidero;
+                }
+            }
+
+            // Flujo bloqueante sobre las aristas ajustadas (costo reducido cero)
+            while (this.nivelesAjustados(fuente, sumidero, potencial, nivel, cola)) {
+                System.arraycopy(this.primera, 0, actual, 0, n);
+                int enviado;
+                while ((enviado = this.aumentar(fuente, sumidero, potencial, nivel, actual, camino)) > 0) {
+                    flujoTotal += enviado;
+                }
+            }
+        }
+
+        for (int a = 0; a < this.cantidadAristas; a += 2) {
+            costoTotal += this.getFlujo(a) * this.costo[a];
+        }
+        return new double[] { flujoTotal, costoTotal };
+    }
+
+    /**
+     Calcula un flujo maximo entre dos nodos con el algoritmo de Dinic,
+     ignorando los costos de las aristas.
+     @param fuente Nodo fuente.
+     @param sumidero Nodo sumidero.
+     @return El flujo total enviado.
+     */
+    public int flujoMaximo(int fuente, int sumidero) {
+        int n = this.cantidadNodos;
+        int[] nivel = new int[n];
+        int[] actual = new int[n];
+        int[] cola = new int[n];
+        int[] camino = new int[n];
+
+        int flujoTotal = 0;
+        while (this.nivelesAjustados(fuente, sumidero, null, nivel, cola)) {
+            System.arraycopy(this.primera, 0, actual, 0, n);
+            int enviado;
+            while ((enviado = this.aumentar(fuente, sumidero, null, nivel, actual, camino)) > 0) {
+                flujoTotal += enviado;
+            }
+        }
+        return flujoTotal;
+    }
+
+    // Dijkstra desde la fuente que corta al cerrar el sumidero. Devuelve false si no es alcanzable.
+    private boolean dijkstra(int fuente, int sumidero, double[] potencial, double[] distancia,
+            boolean[] cerrado, MonticuloMinimo monticulo) {
+        Arrays.fill(distancia, Double.POSITIVE_INFINITY);
+        Arrays.fill(cerrado, false);
+        monticulo.vaciar();
+
+        distancia[fuente] = 0.0;
+        monticulo.agregar(0.0, fuente);
+        while (!monticulo.estaVacio()) {
+            double d = monticulo.minimaClave();
+            int nodo = monticulo.quitarMinimo();
+            if (cerrado[nodo] || d > distancia[nodo]) {
+                continue;
+            }
+            cerrado[nodo] = true;
+            if (nodo == sumidero) {
+                return true;
+            }
+            for (int a = this.primera[nodo]; a != -1; a = this.siguiente[a]) {
+                if (this.capacidad[a] <= 0) {
+                    continue;
+                }
+                int vecino = this.destino[a];
+                double nueva = d + Math.max(0.0, this.costo[a] + potencial[nodo] - potencial[vecino]);
+                if (nueva + EPSILON < distancia[vecino]) {
+                    distancia[vecino] = nueva;
+                    monticulo.agregar(nueva, vecino);
+                }
+            }
+        }
+        return false;
+    }
+
+    // BFS por aristas con capacidad y costo reducido cero (o solo con capacidad si
+    // no hay potenciales). Devuelve true si llega al sumidero.
+    private boolean nivelesAjustados(int fuente, int sumidero, double[] potencial, int[] nivel, int[] cola) {
+        Arrays.fill(nivel, -1);
+        int inicio = 0;
+        int fin = 0;
+        nivel[fuente] = 0;
+        cola[fin++] = fuente;
+        while (inicio < fin) {
+            int nodo = cola[inicio++];
+            for (int a = this.primera[nodo]; a != -1; a = this.siguiente[a]) {
+                int vecino = this.destino[a];
+                if (nivel[vecino] == -1 && this.esAjustada(a, nodo, potencial)) {
+                    nivel[vecino] = nivel[nodo] + 1;
+                    cola[fin++] = vecino;
+                }
+            }
+        }
+        return nivel[sumidero] != -1;
+    }
+
+    // Busca (sin recursion) un camino por niveles crecientes y lo aumenta. Devuelve lo enviado.
+    private int aumentar(int fuente, int sumidero, double[] potencial, int[] nivel, int[] actual, int[] camino) {
+        int largo = 0;
+        int nodo = fuente;
+        while (nodo != sumidero) {
+            boolean avanzo = false;
+            for (; actual[nodo] != -1; actual[nodo] = this.siguiente[actual[nodo]]) {
+                int a = actual[nodo];
+                int vecino = this.destino[a];
+                if (nivel[vecino] == nivel[nodo] + 1 && this.esAjustada(a, nodo, potencial)) {
+                    camino[largo++] = a;
+                    nodo = vecino;
+                    avanzo = true;
+                    break;
+                }
+            }
+            if (!avanzo) {
+                // Callejon sin salida: lo sacamos de los niveles y retrocedemos
+                nivel[nodo] = -1;
+                if (largo == 0) {
+                    return 0;
+                }
+                int a = camino[--largo];
+                nodo = this.destino[a ^ 1];
+                actual[nodo] = this.siguiente[actual[nodo]];
+            }
+        }
+
+        int aumento = Integer.MAX_VALUE;
+        for (int i = 0; i < largo; i++) {
+            aumento = Math.min(aumento, this.capacidad[camino[i]]);
+        }
+        for (int i = 0; i < largo; i++) {
+            this.capacidad[camino[i]] -= aumento;
+            this.capacidad[camino[i] ^ 1] += aumento;
+        }
+        return aumento;
+    }
+
+    private boolean esAjustada(int arista, int desde, double[] potencial) {
+        return this.capacidad[arista] > 0
+            && (potencial == null || this.costo[arista] + potencial[desde] - potencial[this.destino[arista]] <= EPSILON);
+    }
+
+    private void enlazar(int arista, int desde, int hasta, int capacidadArista, double costoUnitario) {
+        this.destino[arista] = hasta;
+        this.capacidad[arista] = capacidadArista;
+        this.costo[arista] = costoUnitario;
+        this.siguiente[arista] = this.primera[desde];
+        this.primera[desde] = arista;
+    }
+
+    private void asegurarEspacio(int aristas) {
+        if (aristas <= this.destino.length) {
+            return;
+        }
+        int nuevoTamanio = Math.max(aristas, this.destino.length * 2);
+        this.siguiente = Arrays.copyOf(this.siguiente, nuevoTamanio);
+        this.destino = Arrays.copyOf(this.destino, nuevoTamanio);
+        this.capacidad = Arrays.copyOf(this.capacidad, nuevoTamanio);
+        this.costo = Arrays.copyOf(this.costo, nuevoTamanio);
+    }
+
+    /*
+     Monticulo binario de minimos con claves reales, sobre arreglos.
+     Admite duplicados (Dijkstra descarta las entradas viejas).
+     */
+    private static final class MonticuloMinimo {
+        private double[] claves;
+        private int[] valores;
+        private int tamanio;
+
+        MonticuloMinimo(int capacidadInicial) {
+            this.claves = new double[Math.max(16, capacidadInicial)];
+            this.valores = new int[this.claves.length];
+        }
+
+        void vaciar() {
+            this.tamanio = 0;
+        }
+
+        boolean estaVacio() {
+            return this.tamanio == 0;
+        }
+
+        double minimaClave() {
+            return this.claves[0];
+        }
+
+        void agregar(double clave, int valor) {
+            if (this.tamanio == this.claves.length) {
+                this.claves = Arrays.copyOf(this.claves, this.tamanio * 2);
+                this.valores = Arrays.copyOf(this.valores, this.tamanio * 2);
+            }
+            int i = this.tamanio++;
+            while (i > 0) {
+                int padre = (i - 1) >>> 1;
+                if (this.claves[padre] <= clave) {
+                    break;
+                }
+                this.claves[i] = this.claves[padre];
+                this.valores[i] = this.valores[padre];
+                i = padre;
+            }
+            this.claves[i] = clave;
+            this.valores[i] = valor;
+        }
+
+        int quitarMinimo() {
+            int minimo = this.valores[0];
+            double clave = this.claves[--this.tamanio];
+            int valor = this.valores[this.tamanio];
+            int i = 0;
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= this.tamanio) {
+                    break;
+                }
+                if (hijo + 1 < this.tamanio && this.claves[hijo + 1] < this.claves[hijo]) {
+                    hijo++;
+                }
+                if (this.claves[hijo] >= clave) {
+                    break;
+                }
+                this.claves[i] = this.claves[hijo];
+                this.valores[i] = this.valores[hijo];
+                i = hijo;
+            }
+            this.claves[i] = clave;
+            this.valores[i] = valor;
+            return minimo;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package sinfonia;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ Almacena los contratos del recital indexados por artista, por cancion
+ y por el par (artista, cancion).
+ Todas las consultas de pertenencia, los conteos por artista y las bajas
+ son O(1): cada Contrato recuerda su posicion en cada lista y al quitarlo
+ solo se deja un hueco en su lugar. Las listas conservan el orden en que
+ se agregaron los contratos; los huecos se eliminan (en O(n)) en la
+ siguiente lectura de la lista, o antes si llegan a ser mas que los
+ contratos vigentes.
+ No es seguro para usar desde varios hilos si alguno modifica el registro.
+ */
+public class RegistroContratos {
+
+    private static final int GLOBAL = 0;
+    private static final int POR_ARTISTA = 1;
+    private static final int POR_CANCION = 2;
+
+    private ListaContratos todos;
+    private ListaContratos[] porArtista;
+    private ListaContratos[] porCancion;
+    private ConjuntoDePares porArtistaYCancion;
+
+    /**
+     Crea un registro vacio.
+     @param cantidadArtistas Cantidad de artistas candidatos (IDs 0..n-1).
+     @param cantidadCanciones Cantidad de canciones del setlist (IDs 0..m-1).
+     */
+    public RegistroContratos(int cantidadArtistas, int cantidadCanciones) {
+        this.todos = new ListaContratos(GLOBAL);
+        this.porArtista = new ListaContratos[cantidadArtistas];
+        for (int i = 0; i < cantidadArtistas; i++) {
+            this.porArtista[i] = new ListaContratos(POR_ARTISTA);
+        }
+        this.porCancion = new ListaContratos[cantidadCanciones];
+        for (int i = 0; i < cantidadCanciones; i++) {
+            this.porCancion[i] = new ListaContratos(POR_CANCION);
+        }
+        this.porArtistaYCancion = new ConjuntoDePares();
+    }
+
+    /**
+     Agrega un contrato a todos los indices.
+     @param contrato El contrato a registrar (su artista y cancion deben tener ID asignado).
+     */
+    public void agregar(Contrato contrato) {
+        this.todos.agregar(contrato);
+        this.porArtista[contrato.getArtista().getId()].agregar(contrato);
+        this.porCancion[contrato.getCancion().getId()].agregar(contrato);
+        this.porArtistaYCancion.agregar(clave(contrato.getArtista().getId(), contrato.getCancion().getId()));
+    }
+
+    /**
+     Quita un contrato de todos los indices en O(1).
+     @param contrato El contrato a quitar.
+     @return true si el contrato estaba registrado, false si no.
+     */
+    public boolean quitar(Contrato contrato) {
+        if (!this.todos.quitar(contrato)) {
+            return false;
+        }
+        this.porArtista[contrato.getArtista().getId()].quitar(contrato);
+        this.porCancion[contrato.getCancion().getId()].quitar(contrato);
+        this.porArtistaYCancion.quitar(clave(contrato.getArtista().getId(), contrato.getCancion().getId()));
+        return true;
+    }
+
+    /**
+     Quita todos los contratos de un artista.
+     @param idArtista El ID del artista candidato.
+     @return Los contratos quitados.
+     */
+    public List<Contrato> quitarDeArtista(int idArtista) {
+        List<Contrato> quitados = new ArrayList<>(this.porArtista[idArtista]);
+        for (Contrato contrato : quitados) {
+            this.quitar(contrato);
+        }
+        return quitados;
+    }
+
+    /**
+     Verifica si un artista tiene un contrato en una cancion.
+     @param idArtista El ID del artista candidato.
+     @param idCancion El ID de la cancion.
+     @return true si existe el contrato, false si no.
+     */
+    public boolean contiene(int idArtista, int idCancion) {
+        return this.porArtistaYCancion.contiene(clave(idArtista, idCancion));
+    }
+
+    /**
+     Cuenta en cuantas canciones esta contratado un artista.
+     Como un artista tiene a lo sumo un contrato por cancion, es la cantidad de sus contratos.
+     @param idArtista El ID del artista candidato.
+     @return La cantidad de canciones asignadas.
+     */
+    public int cantidadDeArtista(int idArtista) {
+        return this.porArtista[idArtista].vigentes;
+    }
+
+    /**
+     Devuelve los contratos de un artista, en el orden en que se registraron.
+     @param idArtista El ID del artista candidato.
+     @return Vista de solo lectura de sus contratos.
+     */
+    public List<Contrato> getDeArtista(int idArtista) {
+        return this.porArtista[idArtista];
+    }
+
+    /**
+     Devuelve los contratos de una cancion, en el orden en que se registraron.
+     @param idCancion El ID de la cancion.
+     @return Vista de solo lectura de sus contratos.
+     */
+    public List<Contrato> getDeCancion(int idCancion) {
+        return this.porCancion[idCancion];
+    }
+
+    /**
+     Devuelve todos los contratos registrados, en el orden en que se registraron.
+     @return Vista de solo lectura de todos los contratos.
+     */
+    public List<Contrato> getTodos() {
+        return this.todos;
+    }
+
+    public int size() {
+        return this.todos.vigentes;
+    }
+
+    public boolean isEmpty() {
+        return this.todos.vigentes == 0;
+    }
+
+    private static long clave(int idArtista, int idCancion) {
+        return ((long) idArtista << 32) | (idCancion & 0xFFFFFFFFL);
+    }
+
+    /**
+     Lista de contratos con bajas en O(1) que no cambian el orden: la baja deja
+     un hueco (null) y los huecos se eliminan al leer la lista. Es de solo
+     lectura para quien la recibe; los iteradores fallan si el registro cambia.
+     */
+    private static final class ListaContratos extends AbstractList<Contrato> {
+
+        private final int indice; // Que posicion del Contrato corresponde a esta lista
+        private Contrato[] elementos = new Contrato[0];
+        private int usados;       // Elementos mas huecos
+        private int vigentes;
+
+        ListaContratos(int indice) {
+            this.indice = indice;
+        }
+
+        void agregar(Contrato contrato) {
+            if (this.usados == this.elementos.length) {
+                this.compactar();
+                if (this.usados == this.elementos.length) {
+                    this.elementos = Arrays.copyOf(this.elementos, Math.max(4, this.usados * 2));
+                }
+            }
+            this.setPosicion(contrato, this.usados);
+            this.elementos[this.usados++] = contrato;
+            this.vigentes++;
+            this.modCount++;
+        }
+
+        boolean quitar(Contrato contrato) {
+            int pos = this.getPosicion(contrato);
+            if (pos < 0 || pos >= this.usados || this.elementos[pos] != contrato) {
+                return false;
+            }
+            this.elementos[pos] = null;
+            this.setPosicion(contrato, -1);
+            this.vigentes--;
+            this.modCount++;
+            if (pos == this.usados - 1) {
+                // Sin huecos al final, la proxima lectura puede no tener que compactar
+                while (this.usados > 0 && this.elementos[this.usados - 1] == null) {
+                    this.usados--;
+                }
+            } else if (this.usados - this.vigentes > this.vigentes) {
+                this.compactar();
+            }
+            return true;
+        }
+
+        // Corre los contratos hacia adelante sobre los huecos, sin cambiar su orden
+        private void compactar() {
+            if (this.usados == this.vigentes) {
+                return;
+            }
+            int destino = 0;
+            for (int i = 0; i < this.usados; i++) {
+                Contrato contrato = this.elementos[i];
+                if (contrato != null) {
+                    this.setPosicion(contrato, destino);
+                    this.elementos[destino++] = contrato;
+                }
+            }
+            Arrays.fill(this.elementos, destino, this.usados, null);
+            this.usados = destino;
+        }
+
+        @Override
+        public Contrato get(int i) {
+            this.compactar();
+            if (i < 0 || i >= this.usados) {
+                throw new IndexOutOfBoundsException("Indice " + i + ", tamanio " + this.usados);
+            }
+            return this.elementos[i];
+        }
+
+        @Override
+        public int size() {
+            return this.vigentes;
+        }
+
+        private int getPosicion(Contrato contrato) {
+            switch (this.indice) {
+                case GLOBAL:
+                    return contrato.posicionGlobal;
+                case POR_ARTISTA:
+                    return contrato.posicionEnArtista;
+                default:
+                    return contrato.posicionEnCancion;
+            }
+        }
+
+        private void setPosicion(Contrato contrato, int posicion) {
+            switch (this.indice) {
+                case GLOBAL:
+                    contrato.posicionGlobal = posicion;
+                    break;
+                case POR_ARTISTA:
+                    contrato.posicionEnArtista = posicion;
+                    break;
+                default:
+                    contrato.posicionEnCancion = posicion;
+            }
+        }
+    }
+
+    /**
+     Conjunto de claves (artista, cancion) con direccionamiento abierto sobre un
+     long[], para no crear un Long en cada consulta. Las claves nunca son
+     negativas, asi que -1 marca un lugar libre.
+     */
+    private static final class ConjuntoDePares {
+
+        private static final long LIBRE = -1L;
+
+        private long[] claves = nuevaTabla(16);
+        private int cantidad;
+
+        private static long[] nuevaTabla(int capacidad) {
+            long[] tabla = new long[capacidad];
+            Arrays.fill(tabla, LIBRE);
+            return tabla;
+        }
+
+        boolean contiene(long clave) {
+            int mascara = this.claves.length - 1;
+            for (int i = posicionInicial(clave, mascara); ; i = (i + 1) & mascara) {
+                if (this.claves[i] == clave) {
+                    return true;
+                }
+                if (this.claves[i] == LIBRE) {
+                    return false;
+                }
+            }
+        }
+
+        void agregar(long clave) {
+            // Se mantiene a lo sumo 1/2 lleno para que las busquedas sean cortas
+            if (2 * (this.cantidad + 1) > this.claves.length) {
+                long[] anteriores = this.claves;
+                this.claves = nuevaTabla(anteriores.length * 2);
+                this.cantidad = 0;
+                for (long anterior : anteriores) {
+                    if (anterior != LIBRE) {
+                        this.agregar(anterior);
+                    }
+                }
+            }
+            int mascara = this.claves.length - 1;
+            int i = posicionInicial(clave, mascara);
+            while (this.claves[i] != LIBRE) {
+                if (this.claves[i] == clave) {
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+            this.claves[i] = clave;
+            this.cantidad++;
+        }
+
+        void quitar(long clave) {
+            int mascara = this.claves.length - 1;
+            int i = posicionInicial(clave, mascara);
+            while (this.claves[i] != clave) {
+                if (this.claves[i] == LIBRE) {
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+            // Corremos hacia atras las claves siguientes que quedarian inalcanzables
+            int hueco = i;
+            for (int j = (i + 1) & mascara; this.claves[j] != LIBRE; j = (j + 1) & mascara) {
+                int inicial = posicionInicial(this.claves[j], mascara);
+                // La clave en j puede ocupar el hueco si su posicion inicial no esta entre (hueco, j]
+                if (((j - inicial) & mascara) >= ((j - hueco) & mascara)) {
+                    this.claves[hueco] = this.claves[j];
+                    hueco = j;
+                }
+            }
+            this.claves[hueco] = LIBRE;
+            this.cantidad--;
+        }
+
+        private static int posicionInicial(long clave, int mascara) {
+            long h = clave * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mascara;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package sinfonia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Reproduce sin interfaz una sesion grabada con TrazaSesion sobre un recital
+ recien cargado, y mide cuanto tarda cada operacion. Sirve para medir el
+ rendimiento con la mezcla real de operaciones de los usuarios en lugar de
+ microbenchmarks. Se usa desde la linea de comandos:
+   java sinfonia.ReproductorSesion <traza> [artistas.json recital.json artistas-discografica.json]
+ */
+public class ReproductorSesion {
+
+    /*
+     Tiempos medidos de un tipo de operacion.
+     */
+    public static class Latencias {
+        private long[] nanos = new long[16];
+        private int cantidad;
+        private int errores;
+        private boolean ordenado = true;
+
+        void agregar(long duracion) {
+            if (this.cantidad == this.nanos.length) {
+                this.nanos = Arrays.copyOf(this.nanos, this.cantidad * 2);
+            }
+            this.nanos[this.cantidad++] = duracion;
+            this.ordenado = false;
+        }
+
+        void contarError() {
+            this.errores++;
+        }
+
+        public int getCantidad() {
+            return this.cantidad;
+        }
+
+        /**
+         Cantidad de ejecuciones que terminaron con una excepcion
+         (por ejemplo, una cancion sin candidatos). Tambien estan medidas.
+         */
+        public int getErrores() {
+            return this.errores;
+        }
+
+        /**
+         Devuelve el percentil pedido, por el metodo del rango mas cercano.
+         @param percentil Valor entre 0 y 100.
+         @return La latencia en nanosegundos, o 0 si no hubo ejecuciones.
+         */
+        public long percentil(double percentil) {
+            if (this.cantidad == 0) {
+                return 0;
+            }
+            if (!this.ordenado) {
+                Arrays.sort(this.nanos, 0, this.cantidad);
+                this.ordenado = true;
+            }
+            int rango = (int) Math.ceil(percentil / 100.0 * this.cantidad);
+            return this.nanos[Math.min(Math.max(rango, 1), this.cantidad) - 1];
+        }
+
+        public long getMaximo() {
+            return this.percentil(100);
+        }
+    }
+
+    private final Recital recital;
+    private int pasosOmitidos;
+
+    public ReproductorSesion(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Ejecuta los pasos en orden sobre el recital y mide cada uno. Lo que las
+     operaciones imprimen por consola se descarta mientras tanto.
+     Los pasos que nombran canciones, artistas o contratos que no existen en
+     este recital no se ejecutan y se cuentan en getPasosOmitidos.
+     @param pasos Los pasos leidos de una traza.
+     @return Las latencias de cada tipo de operacion ejecutada.
+     @throws IOException Si no se puede crear el archivo temporal de las exportaciones.
+     */
+    public Map<TrazaSesion.Operacion, Latencias> reproducir(List<TrazaSesion.Paso> pasos) throws IOException {
+        Map<TrazaSesion.Operacion, Latencias> latencias = new EnumMap<>(TrazaSesion.Operacion.class);
+        Path exportacion = Files.createTempFile("sinfonia-reproduccion", ".json");
+        PrintStream salidaOriginal = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (TrazaSesion.Paso paso : pasos) {
+                Runnable operacion = this.preparar(paso, exportacion);
+                if (operacion == null) {
+                    this.pasosOmitidos++;
+                    continue;
+                }
+                Latencias medidas = latencias.computeIfAbsent(paso.getOperacion(), o -> new Latencias());
+                long inicio = System.nanoTime();
+                try {
+                    operacion.run();
+                } catch (RuntimeException e) {
+                    medidas.contarError();
+                }
+                medidas.agregar(System.nanoTime() - inicio);
+            }
+        } finally {
+            System.setOut(salidaOriginal);
+            Files.deleteIfExists(exportacion);
+        }
+        return latencias;
+    }
+
+    public int getPasosOmitidos() {
+        return this.pasosOmitidos;
+    }
+
+    // Resuelve los nombres del paso antes de medir; null si algo no existe
+    private Runnable preparar(TrazaSesion.Paso paso, Path exportacion) {
+        switch (paso.getOperacion()) {
+            case LISTAR_ESTADO:
+                return this.recital::listarEstadoCanciones;
+            case FALTANTES_RECITAL:
+                return this.recital::getRolesFaltantesRecital;
+            case FALTANTES_CANCION: {
+                Cancion cancion = this.buscarCancion(paso.getArgumento(0), paso.getArgumento(1));
+                return cancion == null ? null : () -> this.recital.getRolesFaltantesCancion(cancion);
+            }
+            case CONTRATAR_CANCION: {
+                Cancion cancion = this.buscarCancion(paso.getArgumento(0), paso.getArgumento(1));
+                return cancion == null ? null : () -> this.recital.contratarParaCancion(cancion);
+            }
+            case CONTRATAR_RECITAL:
+                return this.recital::contratarParaRecital;
+            case ENTRENAR:
+                return () -> this.recital.entrenarArtista(paso.getArgumento(0), paso.getArgumento(1));
+            case QUITAR_CONTRATO: {
+                ArtistaExterno artista = this.buscarCandidato(paso.getArgumento(0), paso.getArgumento(1));
+                Cancion cancion = this.buscarCancion(paso.getArgumento(2), paso.getArgumento(3));
+                if (artista == null || cancion == null) {
+                    return null;
+                }
+                for (Contrato contrato : this.recital.getContratosDeArtista(artista)) {
+                    if (contrato.getCancion() == cancion && contrato.getRolAsignado().equals(paso.getArgumento(4))) {
+                        return () -> this.recital.quitarContrato(contrato);
+                    }
+                }
+                return null;
+            }
+            case QUITAR_CONTRATOS_ARTISTA: {
+                ArtistaExterno artista = this.buscarCandidato(paso.getArgumento(0), paso.getArgumento(1));
+                return artista == null ? null : () -> this.recital.quitarTodosLosContratosDeArtista(artista);
+            }
+            case LISTAR_CONTRATADOS:
+                return this.recital::listarArtistasContratados;
+            case EXPORTAR:
+                return () -> {
+                    try (Writer writer = Files.newBufferedWriter(exportacion)) {
+                        this.recital.exportarEstado(writer);
+                    } catch (IOException e) {
+                        throw new RuntimeException("No se pudo exportar: " + e.getMessage(), e);
+                    }
+                };
+            case EXPORTAR_CAMBIOS:
+                return () -> {
+                    try (Writer writer = Files.newBufferedWriter(exportacion)) {
+                        this.recital.exportarCambios(writer);
+                    } catch (IOException e) {
+                        throw new RuntimeException("No se pudo exportar: " + e.getMessage(), e);
+                    }
+                };
+            case CONTRATAR_RECITAL_OPTIMO:
+                return this.recital::contratarParaRecitalOptimo;
+            case MEJORAR: {
+                long presupuesto = Long.parseLong(paso.getArgumento(0));
+                return () -> this.recital.mejorarContrataciones(presupuesto);
+            }
+            case CONTRATAR_RECITAL_PARALELO:
+                return this.recital::contratarParaRecitalEnParalelo;
+            case CONTRATAR_RECITAL_CONCURRENTE:
+                return this.recital::contratarParaRecitalConcurrente;
+            default:
+                return null;
+        }
+    }
+
+    // La cancion en esa posicion del setlist, si tiene ese titulo (si no, la traza es de otro catalogo)
+    private Cancion buscarCancion(String posicion, String titulo) {
+        List<Cancion> setlist = this.recital.getSetlist();
+        try {
+            int indice = Integer.parseInt(posicion);
+            if (indice >= 0 && indice < setlist.size() && setlist.get(indice).getTitulo().equals(titulo)) {
+                return setlist.get(indice);
+            }
+        } catch (NumberFormatException e) {
+            // Se omite el paso, igual que si no existiera
+        }
+        return null;
+    }
+
+    // El candidato en esa posicion, si tiene ese nombre
+    private ArtistaExterno buscarCandidato(String indice, String nombre) {
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        try {
+            int id = Integer.parseInt(indice);
+            if (id >= 0 && id < candidatos.size() && candidatos.get(id).getNombre().equals(nombre)) {
+                return candidatos.get(id);
+            }
+        } catch (NumberFormatException e) {
+            // Se omite el paso, igual que si no existiera
+        }
+        return null;
+    }
+
+    /**
+     Escribe una tabla con la cantidad de ejecuciones, errores y percentiles
+     (en microsegundos) de cada operacion.
+     @param latencias El resultado de reproducir.
+     @param salida Donde se escribe la tabla.
+     */
+    public static void imprimirReporte(Map<TrazaSesion.Operacion, Latencias> latencias, PrintStream salida) {
+        salida.printf("%-30s %7s %7s %10s %10s %10s %10s%n", "Operacion", "Veces", "Errores", "p50 us", "p90 us", "p99 us", "max us");
+        for (Map.Entry<TrazaSesion.Operacion, Latencias> entrada : latencias.entrySet()) {
+            Latencias medidas = entrada.getValue();
+            salida.printf("%-30s %7d %7d %10.1f %10.1f %10.1f %10.1f%n", entrada.getKey(), medidas.getCantidad(), medidas.getErrores(),
+                medidas.percentil(50) / 1000.0, medidas.percentil(90) / 1000.0, medidas.percentil(99) / 1000.0, medidas.getMaximo() / 1000.0);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 4) {
+            System.err.println("Uso: java sinfonia.ReproductorSesion <traza> [artistas.json recital.json artistas-discografica.json]");
+            return;
+        }
+        List<TrazaSesion.Paso> pasos = TrazaSesion.leer(Paths.get(args[0]));
+        Recital recital = args.length == 4
+            ? CargarDatos.cargarRecitalDesdeArchivos(args[1], args[2], args[3])
+            : CargarDatos.cargarRecitalDesdeArchivos(Archivos.elegirVersion("artistas.json"), Archivos.elegirVersion("recital.json"),
+                Archivos.elegirVersion("artistas-discografica.json"));
+
+        ReproductorSesion reproductor = new ReproductorSesion(recital);
+        Map<TrazaSesion.Operacion, Latencias> latencias = reproductor.reproducir(pasos);
+        System.out.println("\nReproducidos " + (pasos.size() - reproductor.getPasosOmitidos()) + " pasos de " + pasos.size()
+            + " (" + reproductor.getPasosOmitidos() + " omitidos porque no corresponden a este catalogo).");
+        imprimirReporte(latencias, System.out);
+    }
+}
@@ -0,0 +1,130 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Resultado de una contratacion (de una cancion o de todo el recital):
+ que paso con cada cancion, los contratos creados, los roles que quedaron
+ sin cubrir y cuanto se gasto. Lo devuelven los metodos intentarContratar...
+ de Recital, que no imprimen nada ni lanzan excepciones cuando no hay candidatos.
+ */
+public class ResultadoContratacion {
+
+    /*
+     Estado de una cancion despues de intentar contratar para ella.
+     */
+    public enum Estado {
+        YA_COMPLETA,   // No le faltaba ningun rol, no se contrato a nadie
+        COMPLETADA,    // Se cubrieron todos los roles que faltaban
+        INCOMPLETA     // Algun rol quedo sin cubrir por falta de candidatos
+    }
+
+    private List<ResultadoCancion> canciones;
+    private double costoTotal;
+
+    public ResultadoContratacion() {
+        this.canciones = new ArrayList<>();
+        this.costoTotal = 0.0;
+    }
+
+    /**
+     Agrega el resultado de una cancion y suma su costo al total.
+     @param resultado El resultado de la cancion.
+     */
+    public void agregar(ResultadoCancion resultado) {
+        this.canciones.add(resultado);
+        this.costoTotal += resultado.getCosto();
+    }
+
+    public List<ResultadoCancion> getCanciones() {
+        return Collections.unmodifiableList(this.canciones);
+    }
+
+    /**
+     Devuelve cuanto se gasto en los contratos creados.
+     @return La suma de los costos de los contratos nuevos.
+     */
+    public double getCostoTotal() {
+        return this.costoTotal;
+    }
+
+    /**
+     Devuelve todos los contratos creados, en el orden en que se hicieron.
+     @return La lista de contratos nuevos.
+     */
+    public List<Contrato> getContratos() {
+        List<Contrato> contratos = new ArrayList<>();
+        for (ResultadoCancion resultado : this.canciones) {
+            contratos.addAll(resultado.getContratos());
+        }
+        return contratos;
+    }
+
+    /**
+     Cuenta las canciones que terminaron en un estado.
+     @param estado El estado buscado.
+     @return La cantidad de canciones en ese estado.
+     */
+    public int contar(Estado estado) {
+        int cantidad = 0;
+        for (ResultadoCancion resultado : this.canciones) {
+            if (resultado.getEstado() == estado) {
+                cantidad++;
+            }
+        }
+        return cantidad;
+    }
+
+    /**
+     Indica si ninguna cancion quedo incompleta.
+     @return true si todas las canciones quedaron cubiertas.
+     */
+    public boolean estaCompleto() {
+        return this.contar(Estado.INCOMPLETA) == 0;
+    }
+
+    /*
+     Resultado de una cancion: su estado, los contratos creados, los roles
+     que quedaron sin cubrir (rol -> cantidad) y el costo de esos contratos.
+     */
+    public static class ResultadoCancion {
+        private Cancion cancion;
+        private Estado estado;
+        private List<Contrato> contratos;
+        private Map<String, Integer> rolesSinCubrir;
+        private double costo;
+
+        public ResultadoCancion(Cancion cancion, Estado estado, List<Contrato> contratos, Map<String, Integer> rolesSinCubrir) {
+            this.cancion = cancion;
+            this.estado = estado;
+            this.contratos = contratos;
+            this.rolesSinCubrir = rolesSinCubrir;
+            for (Contrato contrato : contratos) {
+                this.costo += contrato.getCostoPagado();
+            }
+        }
+
+        public Cancion getCancion() {
+            return cancion;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        public List<Contrato> getContratos() {
+            return Collections.unmodifiableList(contratos);
+        }
+
+        public Map<String, Integer> getRolesSinCubrir() {
+            return Collections.unmodifiableMap(rolesSinCubrir);
+        }
+
+        public double getCosto() {
+            return costo;
+        }
+    }
+}
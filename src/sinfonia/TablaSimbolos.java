@@ -0,0 +1,76 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ Tabla de simbolos que asigna a cada string (ej. un rol o una banda) un ID entero denso
+ (0, 1, 2, ...). Permite que las comparaciones del recital se hagan con
+ enteros y BitSets en lugar de hashear strings en cada consulta.
+ */
+public class TablaSimbolos {
+
+    // Tabla compartida por todos los artistas y canciones para los roles
+    public static final TablaSimbolos ROLES = new TablaSimbolos();
+    
+    // Tabla compartida por todos los artistas para las bandas
+    public static final TablaSimbolos BANDAS = new TablaSimbolos();
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private final List<String> nombres;
+
+    public TablaSimbolos() {
+        this.ids = new ConcurrentHashMap<>();
+        this.nombres = new ArrayList<>();
+    }
+
+    /**
+     Devuelve el ID del simbolo, registrandolo si es la primera vez que aparece.
+     @param nombre El string a registrar (ej. "guitarra eléctrica").
+     @return El ID entero asignado al simbolo.
+     */
+    public int getId(String nombre) {
+        Integer id = this.ids.get(nombre);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            // Volvemos a consultar por si otro hilo lo registro mientras esperabamos
+            id = this.ids.get(nombre);
+            if (id == null) {
+                id = this.nombres.size();
+                this.nombres.add(nombre);
+                this.ids.put(nombre, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     Busca el ID de un simbolo sin registrarlo.
+     @param nombre El string a buscar.
+     @return El ID del simbolo, o -1 si nunca fue registrado.
+     */
+    public int buscarId(String nombre) {
+        Integer id = this.ids.get(nombre);
+        return id != null ? id : -1;
+    }
+
+    /**
+     Devuelve el string asociado a un ID.
+     @param id El ID del simbolo.
+     @return El string original.
+     */
+    public synchronized String getNombre(int id) {
+        return this.nombres.get(id);
+    }
+
+    /**
+     Devuelve la cantidad de simbolos registrados.
+     @return Cantidad de IDs asignados hasta el momento.
+     */
+    public synchronized int size() {
+        return this.nombres.size();
+    }
+}
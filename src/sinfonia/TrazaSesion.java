@@ -0,0 +1,187 @@
+package sinfonia;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ Traza de una sesion del menu: la secuencia de consultas y modificaciones
+ que se hicieron sobre el recital, para poder repetirla despues con
+ ReproductorSesion. Es un archivo de texto con una operacion por linea:
+ el codigo de la operacion y sus argumentos separados por tabulaciones.
+ Canciones y artistas se guardan por su posicion en el setlist o en la
+ lista de candidatos (puede haber titulos repetidos) y por su nombre, para
+ que ReproductorSesion verifique que la traza es de ese catalogo al
+ reproducirla sobre el catalogo recien cargado.
+ */
+public class TrazaSesion implements Closeable {
+
+    static final String ENCABEZADO = "# sinfonia-traza 2";
+
+    /*
+     Operaciones que se graban, con la cantidad de argumentos de cada una.
+     */
+    public enum Operacion {
+        LISTAR_ESTADO(0),
+        FALTANTES_RECITAL(0),
+        FALTANTES_CANCION(2),        // posicion, titulo
+        CONTRATAR_CANCION(2),        // posicion, titulo
+        CONTRATAR_RECITAL(0),
+        ENTRENAR(2),                 // artista, rol
+        QUITAR_CONTRATO(5),          // indice del candidato, artista, posicion, titulo, rol
+        QUITAR_CONTRATOS_ARTISTA(2), // indice del candidato, artista
+        LISTAR_CONTRATADOS(0),
+        EXPORTAR(0),
+        CONTRATAR_RECITAL_OPTIMO(0),
+        MEJORAR(1),                  // milisegundos
+        CONTRATAR_RECITAL_PARALELO(0),
+        CONTRATAR_RECITAL_CONCURRENTE(0),
+        EXPORTAR_CAMBIOS(0);
+
+        private final int argumentos;
+
+        Operacion(int argumentos) {
+            this.argumentos = argumentos;
+        }
+
+        public int getArgumentos() {
+            return this.argumentos;
+        }
+    }
+
+    /*
+     Una linea de la traza.
+     */
+    public static class Paso {
+        private final Operacion operacion;
+        private final List<String> argumentos;
+
+        public Paso(Operacion operacion, List<String> argumentos) {
+            this.operacion = operacion;
+            this.argumentos = Collections.unmodifiableList(new ArrayList<>(argumentos));
+        }
+
+        public Operacion getOperacion() {
+            return this.operacion;
+        }
+
+        public String getArgumento(int indice) {
+            return this.argumentos.get(indice);
+        }
+
+        public List<String> getArgumentos() {
+            return this.argumentos;
+        }
+    }
+
+    private final BufferedWriter writer;
+
+    private TrazaSesion(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     Crea (o reemplaza) el archivo de traza y deja el grabador listo.
+     @param ruta Archivo donde se graba la sesion.
+     @return El grabador.
+     @throws IOException Si no se puede crear el archivo.
+     */
+    public static TrazaSesion grabar(Path ruta) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(ruta, StandardCharsets.UTF_8);
+        writer.write(ENCABEZADO);
+        writer.newLine();
+        writer.flush();
+        return new TrazaSesion(writer);
+    }
+
+    /**
+     Agrega una operacion a la traza. Cada linea se escribe al disco enseguida,
+     para no perder la sesion si el programa termina mal.
+     @param operacion La operacion realizada.
+     @param argumentos Sus argumentos, en el orden de Operacion.
+     @throws IOException Si no se puede escribir.
+     */
+    public synchronized void registrar(Operacion operacion, String... argumentos) throws IOException {
+        if (argumentos.length != operacion.getArgumentos()) {
+            throw new IllegalArgumentException(operacion + " lleva " + operacion.getArgumentos() + " argumentos.");
+        }
+        StringBuilder linea = new StringBuilder(operacion.name());
+        for (String argumento : argumentos) {
+            linea.append('\t').append(escapar(argumento));
+        }
+        this.writer.write(linea.toString());
+        this.writer.newLine();
+        this.writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.writer.close();
+    }
+
+    /**
+     Lee una traza grabada.
+     @param ruta El archivo de traza.
+     @return Los pasos, en el orden en que se hicieron.
+     @throws IOException Si no se puede leer o el formato no es valido.
+     */
+    public static List<Paso> leer(Path ruta) throws IOException {
+        List<Paso> pasos = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(ruta, StandardCharsets.UTF_8)) {
+            String linea = reader.readLine();
+            if (!ENCABEZADO.equals(linea)) {
+                throw new IOException("El archivo " + ruta + " no es una traza de sesion (o es de una version anterior).");
+            }
+            int numero = 1;
+            while ((linea = reader.readLine()) != null) {
+                numero++;
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                String[] campos = linea.split("\t", -1);
+                Operacion operacion;
+                try {
+                    operacion = Operacion.valueOf(campos[0]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Operacion desconocida en la linea " + numero + ": " + campos[0]);
+                }
+                if (campos.length - 1 != operacion.getArgumentos()) {
+                    throw new IOException("Cantidad de argumentos incorrecta en la linea " + numero + ".");
+                }
+                List<String> argumentos = new ArrayList<>();
+                for (String campo : Arrays.asList(campos).subList(1, campos.length)) {
+                    argumentos.add(desescapar(campo));
+                }
+                pasos.add(new Paso(operacion, argumentos));
+            }
+        }
+        return pasos;
+    }
+
+    // Los nombres no deberian tener tabulaciones ni saltos de linea, pero por las dudas
+    static String escapar(String texto) {
+        return texto.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String desescapar(String texto) {
+        StringBuilder resultado = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c == '\\' && i + 1 < texto.length()) {
+                char siguiente = texto.charAt(++i);
+                resultado.append(siguiente == 't' ? '\t' : siguiente == 'n' ? '\n' : siguiente == 'r' ? '\r' : siguiente);
+            } else {
+                resultado.append(c);
+            }
+        }
+        return resultado.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package sinfonia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Verifica, sin modificar el recital, cuantos de los roles faltantes se
+ pueden cubrir con los candidatos disponibles, resolviendo un flujo maximo
+ (Dinic) sobre una red sin costos:
+
+   fuente -> grupo de candidatos -> (grupo@clase) -> rol de la clase de canciones -> sumidero
+
+ Para que la red no crezca con el tamanio del recital se agrupa en los dos lados:
+   - Los candidatos sin contratos se agrupan por (roles que tocan, maxCanciones).
+     Con capacidades iguales, alcanza con que el grupo no aporte mas de
+     "cantidad de miembros" musicos a cada cancion para poder repartir el
+     flujo entre artistas distintos. Los candidatos que ya tienen contratos
+     van solos, porque no pueden repetir en las canciones donde ya estan.
+   - Las canciones con los mismos roles faltantes forman una clase, y la
+     clase pide n veces lo que pide cada una. Las canciones donde toco un
+     candidato que va solo quedan en una clase propia.
+ Ambas agrupaciones son exactas: cualquier flujo entero de la red agrupada
+ se puede repartir en una asignacion cancion por cancion y artista por artista.
+ */
+public class VerificadorFactibilidad {
+
+    private Recital recital;
+
+    public VerificadorFactibilidad(Recital recital) {
+        this.recital = recital;
+    }
+
+    /**
+     Calcula los roles que no se pueden cubrir con los candidatos disponibles.
+     El total sin cubrir es exacto; si varias canciones compiten por los mismos
+     artistas, el faltante se informa en las ultimas del setlist.
+     @return Un mapa cancion -> (rol -> cantidad sin cubrir), en orden de setlist.
+     Vacio si todo el recital se puede completar.
+     */
+    public Map<Cancion, Map<String, Integer>> verificar() {
+        List<Cancion> setlist = this.recital.getSetlist();
+        List<ArtistaExterno> candidatos = this.recital.getArtistasCandidatos();
+        RegistroContratos contratos = this.recital.getRegistroContratos();
+
+        RedDeFlujo red = new RedDeFlujo(2);
+        int fuente = 0;
+        int sumidero = 1;
+
+        // Agrupamos a los candidatos libres y separamos a los que ya tienen contratos
+        Map<BitSet, Map<Integer, Grupo>> gruposPorRoles = new HashMap<>();
+        List<Grupo> grupos = new ArrayList<>();
+        boolean[] vaSolo = new boolean[candidatos.size()];
+        for (ArtistaExterno candidato : candidatos) {
+            int contratados = contratos.cantidadDeArtista(candidato.getId());
+            int restante = candidato.getMaxCanciones() - contratados;
+            if (restante <= 0) {
+                continue;
+            }
+            if (contratados > 0) {
+                Grupo individual = new Grupo(candidato.getIdsRoles(), restante, candidato.getId());
+                individual.miembros = 1;
+                grupos.add(individual);
+                vaSolo[candidato.getId()] = true;
+                continue;
+            }
+            Grupo grupo = gruposPorRoles
+                .computeIfAbsent(candidato.getIdsRoles(), roles -> new HashMap<>())
+                .computeIfAbsent(restante, capacidad -> {
+                    Grupo nuevo = new Grupo(candidato.getIdsRoles(), capacidad, -1);
+                    grupos.add(nuevo);
+                    return nuevo;
+                });
+            grupo.miembros++;
+        }
+
+        // Agrupamos las canciones incompletas por sus roles faltantes
+        Map<Firma, Clase> clasesPorFirma = new HashMap<>();
+        List<Clase> clases = new ArrayList<>();
+        for (Cancion cancion : setlist) {
+            if (this.recital.estaCompleta(cancion)) {
+                continue;
+            }
+            Firma firma = new Firma(cancion, this.recital.calcularFaltantes(cancion));
+            boolean unica = false;
+            for (Contrato contrato : contratos.getDeCancion(cancion.getId())) {
+                unica |= vaSolo[contrato.getArtista().getId()];
+            }
+            Clase clase = unica ? null : clasesPorFirma.get(firma);
+            if (clase == null) {
+                clase = new Clase(firma);
+                clases.add(clase);
+                if (!unica) {
+                    clasesPorFirma.put(firma, clase);
+                }
+            }
+            clase.canciones.add(cancion);
+        }
+
+        for (Grupo grupo : grupos) {
+            grupo.nodo = red.agregarNodo();
+            red.agregarArista(fuente, grupo.nodo, acotar((long) grupo.miembros * grupo.capacidad), 0.0);
+        }
+
+        for (Clase clase : clases) {
+            int[] idsRoles = clase.firma.idsRoles;
+            int[] faltantes = clase.firma.faltantes;
+            int n = clase.canciones.size();
+            int[] nodoRol = new int[idsRoles.length];
+            clase.aristasRol = new int[idsRoles.length];
+            for (int r = 0; r < idsRoles.length; r++) {
+                nodoRol[r] = red.agregarNodo();
+                clase.aristasRol[r] = red.agregarArista(nodoRol[r], sumidero, acotar((long) faltantes[r] * n), 0.0);
+            }
+
+            Cancion unica = n == 1 ? clase.canciones.get(0) : null;
+            for (Grupo grupo : grupos) {
+                if (grupo.idArtista >= 0 && unica != null && contratos.contiene(grupo.idArtista, unica.getId())) {
+                    continue;
+                }
+                int cubre = 0;
+                for (int idRol : idsRoles) {
+                    if (grupo.roles.get(idRol)) {
+                        cubre++;
+                    }
+                }
+                if (cubre == 0) {
+                    continue;
+                }
+
+                // Cada miembro del grupo puede tomar un solo rol por cancion
+                int porClase = acotar((long) grupo.miembros * n);
+                int origen = grupo.nodo;
+                if (cubre > 1) {
+                    origen = red.agregarNodo();
+                    red.agregarArista(grupo.nodo, origen, porClase, 0.0);
+                }
+                for (int r = 0; r < idsRoles.length; r++) {
+                    if (grupo.roles.get(idsRoles[r])) {
+                        red.agregarArista(origen, nodoRol[r], porClase, 0.0);
+                    }
+                }
+            }
+        }
+
+        red.flujoMaximo(fuente, sumidero);
+
+        // Repartimos lo que no se cubrio de cada clase empezando por su ultima cancion
+        Map<Cancion, Map<String, Integer>> porCancion = new HashMap<>();
+        for (Clase clase : clases) {
+            int[] idsRoles = clase.firma.idsRoles;
+            for (int r = 0; r < idsRoles.length; r++) {
+                int sinCubrir = acotar((long) clase.firma.faltantes[r] * clase.canciones.size()) - red.getFlujo(clase.aristasRol[r]);
+                String rol = TablaSimbolos.ROLES.getNombre(idsRoles[r]);
+                for (int i = clase.canciones.size() - 1; i >= 0 && sinCubrir > 0; i--) {
+                    int faltan = Math.min(sinCubrir, clase.firma.faltantes[r]);
+                    porCancion.computeIfAbsent(clase.canciones.get(i), c -> new LinkedHashMap<>()).put(rol, faltan);
+                    sinCubrir -= faltan;
+                }
+            }
+        }
+
+        Map<Cancion, Map<String, Integer>> resultado = new LinkedHashMap<>();
+        for (Cancion cancion : setlist) {
+            if (porCancion.containsKey(cancion)) {
+                resultado.put(cancion, porCancion.get(cancion));
+            }
+        }
+        return resultado;
+    }
+
+    private static int acotar(long valor) {
+        return (int) Math.min(valor, Integer.MAX_VALUE);
+    }
+
+    /*
+     Candidatos intercambiables: mismos roles y misma capacidad restante.
+     idArtista es -1 salvo en los grupos de un solo artista ya contratado.
+     */
+    private static final class Grupo {
+        private final BitSet roles;
+        private final int capacidad;
+        private final int idArtista;
+        private int miembros;
+        private int nodo;
+
+        Grupo(BitSet roles, int capacidad, int idArtista) {
+            this.roles = roles;
+            this.capacidad = capacidad;
+            this.idArtista = idArtista;
+        }
+    }
+
+    /*
+     Canciones con los mismos roles faltantes, y las aristas rol -> sumidero de la clase.
+     */
+    private static final class Clase {
+        private final Firma firma;
+        private final List<Cancion> canciones = new ArrayList<>();
+        private int[] aristasRol;
+
+        Clase(Firma firma) {
+            this.firma = firma;
+        }
+    }
+
+    /*
+     Roles que le faltan a una cancion (solo los que tienen faltantes) y cuantos de cada uno.
+     */
+    private static final class Firma {
+        private final int[] idsRoles;
+        private final int[] faltantes;
+        private final int hash;
+
+        Firma(Cancion cancion, int[] faltantesPorRol) {
+            int[] idsCancion = cancion.getIdsRoles();
+            int cantidad = 0;
+            for (int f : faltantesPorRol) {
+                if (f > 0) {
+                    cantidad++;
+                }
+            }
+            this.idsRoles = new int[cantidad];
+            this.faltantes = new int[cantidad];
+            int j = 0;
+            for (int r = 0; r < idsCancion.length; r++) {
+                if (faltantesPorRol[r] > 0) {
+                    this.idsRoles[j] = idsCancion[r];
+                    this.faltantes[j++] = faltantesPorRol[r];
+                }
+            }
+            this.hash = 31 * Arrays.hashCode(this.idsRoles) + Arrays.hashCode(this.faltantes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Firma)) {
+                return false;
+            }
+            Firma otra = (Firma) o;
+            return Arrays.equals(this.idsRoles, otra.idsRoles) && Arrays.equals(this.faltantes, otra.faltantes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
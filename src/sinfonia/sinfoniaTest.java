@@ -8,11 +8,28 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoubleFunction;
+import java.util.stream.Collectors;
 
 /**
 * Clase de pruebas para Recital y la lógica de negocio asociada.
@@ -32,6 +49,10 @@ public class sinfoniaTest {
  private Cancion somebodyToLove;
  private Cancion underPressure;
 
+ // Directorio para los archivos de cada test (JUnit lo borra al terminar)
+ @TempDir
+ Path directorio;
+
  /**
   * Configura un escenario de prueba complejo antes de CADA test.
   */
@@ -114,6 +135,22 @@ public class sinfoniaTest {
      assertEquals(2250.0, eltonJohn.getCostoContratacion()); // El costo no cambia
  }
 
+ // --- Tests de Cancion ---
+
+ @Test
+ public void testCancionAgrupaRolesRepetidos() {
+     // underPressure requiere: 2 voces y 1 bajo -> 2 roles distintos
+     int[] idsRoles = underPressure.getIdsRoles();
+     int[] cantidades = underPressure.getCantidadesRoles();
+     assertEquals(2, idsRoles.length);
+
+     int iVoz = underPressure.indiceDeRol(TablaSimbolos.ROLES.getId("voz principal"));
+     int iBajo = underPressure.indiceDeRol(TablaSimbolos.ROLES.getId("bajo"));
+     assertEquals(2, cantidades[iVoz]);
+     assertEquals(1, cantidades[iBajo]);
+     assertTrue(underPressure.indiceDeRol(TablaSimbolos.ROLES.getId("piano")) < 0);
+ }
+
  // --- Tests de Recital (Lógica de Consulta) ---
 
  @Test
@@ -154,6 +191,44 @@ public class sinfoniaTest {
      assertEquals(1, faltantes.get("piano"));
  }
 
+ @Test
+ public void testFaltantesRecitalSeActualizanAlContratar() {
+     assertFalse(recital.estaCompleta(somebodyToLove));
+
+     // Cubrimos Somebody to Love: solo quedan las 2 voces de Under Pressure
+     recital.contratarParaCancion(somebodyToLove);
+
+     Map<String, Integer> faltantes = recital.getRolesFaltantesRecital();
+     assertTrue(recital.estaCompleta(somebodyToLove));
+     assertEquals(1, faltantes.size());
+     assertEquals(2, faltantes.get("voz principal"));
+     assertFalse(recital.getCancionesCompletas().get(underPressure.getId()));
+ }
+
+ @Test
+ public void testAgregarArtistaBaseRecalculaFaltantes() {
+     Recital recitalConPianista = new Recital(Arrays.asList(somebodyToLove, underPressure),
+         new ArrayList<>(Arrays.asList(brianMay, johnDeacon)), new ArrayList<>());
+
+     ArtistaBase freddie = new ArtistaBase("Freddie Mercury",
+         Arrays.asList("piano"), Arrays.asList("Queen"));
+     recitalConPianista.agregarArtistaBase(freddie);
+
+     // Ahora el piano de Somebody to Love lo cubre un artista base
+     Map<String, Integer> faltantes = recitalConPianista.getRolesFaltantesRecital();
+     assertFalse(faltantes.containsKey("piano"));
+     assertEquals(3, faltantes.get("voz principal"));
+ }
+
+ @Test
+ public void testDescuentoPorBandaCompartida() {
+     // Bowie tocó en Queen, igual que los artistas base
+     assertTrue(davidBowie.tieneDescuentoPorBanda());
+     assertFalse(eltonJohn.tieneDescuentoPorBanda());
+     assertEquals(750.0, recital.getCostoEfectivo(davidBowie));
+     assertEquals(2, recital.getArtistasBasePorBanda("Queen").size());
+ }
+
  // --- Tests de Recital (Lógica de Contratación) ---
 
  @Test
@@ -222,6 +297,821 @@ public class sinfoniaTest {
      assertTrue(faltantes.isEmpty(), "Under Pressure debería estar completa");
  }
 
+ @Test
+ public void testQuitarContratoLiberaArtistaYRol() {
+     // somebodyToLove contrata a Annie (voz) y a Elton (piano)
+     recital.contratarParaCancion(somebodyToLove);
+     assertEquals(2, recital.getContrataciones().size());
+     assertEquals(1, recital.getCancionesAsignadas(annieLennox));
+
+     // Quitamos el contrato de Annie
+     Contrato contratoAnnie = recital.getContratosDeArtista(annieLennox).get(0);
+     recital.quitarContrato(contratoAnnie);
+
+     assertEquals(1, recital.getContrataciones().size());
+     assertEquals(0, recital.getCancionesAsignadas(annieLennox));
+     assertFalse(annieLennox.YaContratado());
+     assertEquals(1, recital.getRolesFaltantesCancion(somebodyToLove).get("voz principal"));
+
+     // El contrato restante sigue indexado por artista
+     assertEquals(1, recital.getContratosDeArtista(eltonJohn).size());
+ }
+
+ @Test
+ public void testContratarUsaArtistaRecienEntrenado() {
+     Cancion soloDeBateria = new Cancion("Solo de Batería", Arrays.asList("batería"));
+     Recital recitalBateria = new Recital(Arrays.asList(soloDeBateria), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(eltonJohn, georgeMichael)));
+
+     // Nadie toca batería todavía
+     assertThrows(RuntimeException.class, () -> recitalBateria.contratarParaCancion(soloDeBateria));
+
+     // George (800 -> 1200 con el entrenamiento) pasa a ser candidato para batería
+     recitalBateria.entrenarArtista("George Michael", "batería");
+     recitalBateria.contratarParaCancion(soloDeBateria);
+
+     assertTrue(recitalBateria.estaCompleta(soloDeBateria));
+     assertEquals(1200.0, recitalBateria.getCostoTotalContratos());
+ }
+
+ @Test
+ public void testContratacionOptimaCubreLoQueGreedyNoPuede() {
+     // Elton es el más barato para voz, pero es el único que toca piano y solo tiene 1 canción
+     ArtistaExterno elton = new ArtistaExterno("Elton John",
+         Arrays.asList("voz principal", "piano"), Arrays.asList("Elton John Band"), 100.0, 1);
+     ArtistaExterno george = new ArtistaExterno("George Michael",
+         Arrays.asList("voz principal"), Arrays.asList("Wham!"), 800.0, 1);
+     Cancion conVoz = new Cancion("Careless Whisper", Arrays.asList("voz principal"));
+     Cancion conPiano = new Cancion("Your Song", Arrays.asList("piano"));
+
+     Recital greedy = new Recital(Arrays.asList(conVoz, conPiano), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(elton, george)));
+     greedy.contratarParaRecital();
+     assertFalse(greedy.estaCompleta(conPiano));
+
+     Recital optimo = new Recital(Arrays.asList(conVoz, conPiano), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(elton, george)));
+     optimo.contratarParaRecitalOptimo();
+     assertTrue(optimo.getRolesFaltantesRecital().isEmpty());
+     assertEquals(900.0, optimo.getCostoTotalContratos());
+ }
+
+ @Test
+ public void testContratacionEnParaleloIgualAlGreedy() {
+     // Dos grupos independientes: cuerdas (guitarra/bajo) y vientos (saxo)
+     List<Cancion> canciones = Arrays.asList(
+         new Cancion("Rock 1", Arrays.asList("guitarra eléctrica", "bajo")),
+         new Cancion("Jazz 1", Arrays.asList("saxo")),
+         new Cancion("Rock 2", Arrays.asList("guitarra eléctrica")),
+         new Cancion("Jazz 2", Arrays.asList("saxo", "saxo")));
+     List<ArtistaExterno> secuenciales = new ArrayList<>();
+     List<ArtistaExterno> paralelos = new ArrayList<>();
+     for (List<ArtistaExterno> lista : Arrays.asList(secuenciales, paralelos)) {
+         lista.add(new ArtistaExterno("Slash", Arrays.asList("guitarra eléctrica"), Arrays.asList("Guns N' Roses"), 300.0, 1));
+         lista.add(new ArtistaExterno("Flea", Arrays.asList("bajo", "guitarra eléctrica"), Arrays.asList("RHCP"), 200.0, 2));
+         lista.add(new ArtistaExterno("Kenny G", Arrays.asList("saxo"), Arrays.asList("Solo"), 100.0, 3));
+         lista.add(new ArtistaExterno("Coltrane", Arrays.asList("saxo"), Arrays.asList("Quartet"), 400.0, 3));
+     }
+
+     Recital secuencial = new Recital(canciones, new ArrayList<>(), secuenciales);
+     ResultadoContratacion resultadoSecuencial = secuencial.contratarParaRecital();
+     Recital paralelo = new Recital(canciones, new ArrayList<>(), paralelos);
+     ResultadoContratacion resultadoParalelo = paralelo.contratarParaRecitalEnParalelo();
+
+     // Los dos arman el mismo resumen
+     assertEquals(resultadoSecuencial.getCostoTotal(), resultadoParalelo.getCostoTotal());
+     assertEquals(resultadoSecuencial.getContratos().size(), resultadoParalelo.getContratos().size());
+     assertEquals(resultadoSecuencial.contar(ResultadoContratacion.Estado.INCOMPLETA),
+         resultadoParalelo.contar(ResultadoContratacion.Estado.INCOMPLETA));
+
+     assertEquals(2, new PlanificadorComponentes(new Recital(canciones, new ArrayList<>(),
+         new ArrayList<>(secuenciales))).armarComponentes().size());
+     assertEquals(secuencial.getCostoTotalContratos(), paralelo.getCostoTotalContratos());
+     assertEquals(secuencial.getRolesFaltantesRecital(), paralelo.getRolesFaltantesRecital());
+     for (int i = 0; i < secuenciales.size(); i++) {
+         assertEquals(secuencial.getCancionesAsignadas(secuenciales.get(i)), paralelo.getCancionesAsignadas(paralelos.get(i)));
+     }
+ }
+
+ @Test
+ public void testContratacionConcurrenteRespetaCapacidadYEsTodoONada() {
+     // Un solo violinista con 2 canciones para 6 canciones que lo piden
+     ArtistaExterno violinista = new ArtistaExterno("Vanessa-Mae",
+         Arrays.asList("violín"), Arrays.asList("Solo"), 300.0, 2);
+     ArtistaExterno pianista = new ArtistaExterno("Yanni",
+         Arrays.asList("piano"), Arrays.asList("Solo"), 200.0, 5);
+     List<Cancion> canciones = new ArrayList<>();
+     for (int i = 0; i < 6; i++) {
+         canciones.add(new Cancion("Concierto " + i, Arrays.asList("piano", "violín")));
+     }
+     Recital concurrente = new Recital(canciones, new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(violinista, pianista)));
+     concurrente.contratarParaRecitalConcurrente();
+
+     assertEquals(2, concurrente.getCancionesAsignadas(violinista));
+     // Las canciones sin violinista no se quedan con el pianista reservado
+     assertEquals(2, concurrente.getCancionesAsignadas(pianista));
+     assertEquals(2, concurrente.getCancionesCompletas().cardinality());
+ }
+
+ @Test
+ public void testContratacionConcurrenteReintentaLasCancionesQueFallaronPorUnaReservaDevuelta() {
+     // Las "Imposible" piden dos violinistas y hay uno solo: lo reservan un
+     // momento y lo devuelven. "Posible" tiene que quedarse con el igual
+     for (int intento = 0; intento < 50; intento++) {
+         ArtistaExterno violinista = new ArtistaExterno("Itzhak",
+             Arrays.asList("violín"), Arrays.asList("Solo"), 300.0, 1);
+         ArtistaExterno pianista = new ArtistaExterno("Martha",
+             Arrays.asList("piano"), Arrays.asList("Solo"), 200.0, 1);
+         List<Cancion> canciones = new ArrayList<>();
+         for (int i = 0; i < 16; i++) {
+             canciones.add(new Cancion("Imposible " + i, Arrays.asList("violín", "violín")));
+         }
+         Cancion posible = new Cancion("Posible", Arrays.asList("piano", "violín"));
+         canciones.add(8, posible);
+         Recital concurrente = new Recital(canciones, new ArrayList<>(),
+             new ArrayList<>(Arrays.asList(violinista, pianista)));
+         ResultadoContratacion resultado = concurrente.contratarParaRecitalConcurrente();
+
+         assertTrue(concurrente.estaCompleta(posible));
+         assertEquals(1, concurrente.getCancionesAsignadas(violinista));
+         assertEquals(1, resultado.contar(ResultadoContratacion.Estado.COMPLETADA));
+     }
+ }
+
+ @Test
+ public void testCoberturaBaseNoDependeDeLosIdsDeLosRoles() {
+     // "zampoña" se registra antes, asi que tiene un ID menor que "arpa"
+     Cancion cancion = new Cancion("Orden de carga", Arrays.asList("zampoña de prueba", "arpa de prueba"));
+     ArtistaBase ambos = new ArtistaBase("Multiinstrumentista",
+         Arrays.asList("zampoña de prueba", "arpa de prueba"), Arrays.asList("Banda"));
+     Recital local = new Recital(Arrays.asList(cancion), new ArrayList<>(Arrays.asList(ambos)), new ArrayList<>());
+
+     // El artista base cubre el rol que va primero por nombre, no por ID
+     assertEquals(Map.of("zampoña de prueba", 1), local.getRolesFaltantesCancion(cancion));
+ }
+
+ @Test
+ public void testVerificarFactibilidadNoContrataYReportaFaltantes() {
+     // Elton es el único pianista y solo tiene 1 canción; George cubre la voz
+     ArtistaExterno elton = new ArtistaExterno("Elton John",
+         Arrays.asList("voz principal", "piano"), Arrays.asList("Elton John Band"), 100.0, 1);
+     ArtistaExterno george = new ArtistaExterno("George Michael",
+         Arrays.asList("voz principal"), Arrays.asList("Wham!"), 800.0, 1);
+     Cancion conVoz = new Cancion("Careless Whisper", Arrays.asList("voz principal"));
+     Cancion conPiano = new Cancion("Your Song", Arrays.asList("piano"));
+     Cancion otraConPiano = new Cancion("Rocket Man", Arrays.asList("piano"));
+
+     Recital factible = new Recital(Arrays.asList(conVoz, conPiano), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(elton, george)));
+     assertTrue(factible.verificarFactibilidad().isEmpty());
+
+     Recital infactible = new Recital(Arrays.asList(conVoz, conPiano, otraConPiano), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(elton, george)));
+     Map<Cancion, Map<String, Integer>> sinCubrir = infactible.verificarFactibilidad();
+     assertEquals(1, sinCubrir.size());
+     assertEquals(1, sinCubrir.values().iterator().next().get("piano"));
+     assertTrue(infactible.getContrataciones().isEmpty());
+ }
+
+ @Test
+ public void testIntentarContratarDevuelveResultadoSinLanzar() {
+     Cancion cancionImposible = new Cancion("Flauta Mágica", Arrays.asList("flauta"));
+     Recital conFlauta = new Recital(Arrays.asList(somebodyToLove, cancionImposible),
+         recital.getArtistasBase(), recital.getArtistasCandidatos());
+
+     ResultadoContratacion resultado = conFlauta.intentarContratarParaRecital();
+
+     assertEquals(2, resultado.getCanciones().size());
+     assertEquals(1, resultado.contar(ResultadoContratacion.Estado.COMPLETADA));
+     assertEquals(1, resultado.contar(ResultadoContratacion.Estado.INCOMPLETA));
+     assertFalse(resultado.estaCompleto());
+
+     ResultadoContratacion.ResultadoCancion flauta = resultado.getCanciones().get(1);
+     assertEquals(cancionImposible, flauta.getCancion());
+     assertEquals(1, flauta.getRolesSinCubrir().get("flauta"));
+     assertTrue(flauta.getContratos().isEmpty());
+     assertEquals(conFlauta.getCostoTotalContratos(), resultado.getCostoTotal());
+     assertEquals(resultado.getContratos().size(), conFlauta.getContrataciones().size());
+
+     // Una segunda pasada no toca la cancion que ya quedo completa
+     assertEquals(1, conFlauta.intentarContratarParaRecital().getCanciones().size());
+ }
+
+ @Test
+ public void testEventosConsolaImprimeContratacionesAlVaciar() {
+     ByteArrayOutputStream salida = new ByteArrayOutputStream();
+     ByteArrayOutputStream errores = new ByteArrayOutputStream();
+     recital.setEventos(new EventosConsola(new PrintStream(salida, true), new PrintStream(errores, true)));
+
+     recital.contratarParaCancion(somebodyToLove);
+     recital.entrenarArtista("Elton John", "voz principal");
+     recital.getEventos().vaciar();
+
+     String texto = salida.toString();
+     assertTrue(texto.contains("Iniciando contratacion para 'Somebody to Love'"));
+     assertTrue(texto.contains("*Contratado: "));
+     assertTrue(texto.contains("Contratacion finalizada para 'Somebody to Love'"));
+     assertTrue(texto.contains("El entrenamiento de Elton John no pudo completarse."));
+     assertTrue(texto.contains("-Buscando artista para "));
+     assertEquals("", errores.toString());
+
+     // Los mensajes que antes se imprimian directo tambien pasan por los eventos
+     recital.entrenarArtista("Nadie", "voz principal");
+     recital.quitarTodosLosContratosDeArtista(recital.getArtistasCandidatos().get(0));
+     recital.getEventos().vaciar();
+     assertTrue(errores.toString().contains("con el nombre 'Nadie'"));
+     texto = salida.toString();
+     assertTrue(texto.contains(" no tenia contratos para eliminar.") || texto.contains("Se eliminaron "));
+ }
+
+ @Test
+ public void testEventosConsolaSigueDespuesDeUnEventoQueFalla() {
+     ByteArrayOutputStream salida = new ByteArrayOutputStream();
+     ByteArrayOutputStream errores = new ByteArrayOutputStream();
+     EventosConsola consola = new EventosConsola(new PrintStream(salida, true), new PrintStream(errores, true));
+
+     // Formatear este evento lanza NullPointerException en el hilo de consola
+     consola.contratoQuitado(null);
+     consola.vaciar();
+     consola.artistaNoEncontrado("Nadie");
+     consola.vaciar();
+
+     assertTrue(errores.toString().contains("Error al mostrar un evento"));
+     assertTrue(errores.toString().contains("con el nombre 'Nadie'"));
+ }
+
+ @Test
+ public void testMejorarContratacionesReasignaEnCadena() {
+     // El greedy usa a Sting (barato, 1 canción) para el bajo y después paga caro la voz
+     ArtistaExterno sting = new ArtistaExterno("Sting",
+         Arrays.asList("voz principal", "bajo"), Arrays.asList("The Police"), 100.0, 1);
+     ArtistaExterno bono = new ArtistaExterno("Bono",
+         Arrays.asList("voz principal"), Arrays.asList("U2"), 500.0, 1);
+     ArtistaExterno flea = new ArtistaExterno("Flea",
+         Arrays.asList("bajo"), Arrays.asList("Red Hot Chili Peppers"), 150.0, 1);
+     Cancion conBajo = new Cancion("Walking on the Moon", Arrays.asList("bajo"));
+     Cancion conVoz = new Cancion("Roxanne", Arrays.asList("voz principal"));
+
+     Recital local = new Recital(Arrays.asList(conBajo, conVoz), new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(sting, bono, flea)));
+     local.contratarParaRecital();
+     assertEquals(600.0, local.getCostoTotalContratos());
+
+     MejoradorContrataciones.ResultadoMejora resultado = local.mejorarContrataciones(200);
+     assertEquals(600.0, resultado.getCostoAntes());
+     assertEquals(250.0, resultado.getCostoDespues());
+     assertEquals(250.0, local.getCostoTotalContratos());
+     assertTrue(local.getRolesFaltantesRecital().isEmpty());
+     assertEquals(0, local.getCancionesAsignadas(bono));
+     assertFalse(bono.YaContratado());
+ }
+
+ @Test
+ public void testGeneradorCatalogoEscribeArchivosQueCargarDatosLee() throws IOException {
+     GeneradorCatalogo generador = new GeneradorCatalogo(500, 200, 7L)
+         .conRoles(20, 1.2)
+         .conRolesPorCancion(4, 4)
+         .conFraccionBase(0.02);
+     Path[] rutas = generador.escribirJson(directorio);
+
+     Recital cargado = CargarDatos.cargarRecitalDesdeArchivos(rutas[0].toString(), rutas[1].toString(), rutas[2].toString());
+     Recital enMemoria = generador.crearRecital();
+     assertEquals(10, generador.getCantidadBase());
+     assertEquals(490, cargado.getArtistasCandidatos().size());
+     assertEquals(200, cargado.getSetlist().size());
+     assertEquals(enMemoria.getRolesFaltantesRecital(), cargado.getRolesFaltantesRecital());
+     assertEquals(enMemoria.getArtistasCandidatos().get(0).getCostoContratacion(),
+         cargado.getArtistasCandidatos().get(0).getCostoContratacion());
+
+     // Misma semilla, mismos archivos
+     Path[] otraVez = generador.escribirJson(Files.createDirectory(directorio.resolve("otra vez")));
+     assertEquals(Files.readString(rutas[0]), Files.readString(otraVez[0]));
+     assertEquals(Files.readString(rutas[1]), Files.readString(otraVez[1]));
+
+     // Con Zipf el rol mas popular se pide mucho mas que el menos popular
+     int primero = 0;
+     int ultimo = 0;
+     for (Cancion cancion : cargado.getSetlist()) {
+         primero += cancion.getRolesRequeridos().contains("rol 0") ? 1 : 0;
+         ultimo += cancion.getRolesRequeridos().contains("rol 19") ? 1 : 0;
+     }
+     assertTrue(primero > 3 * ultimo);
+ }
+
+ @Test
+ public void testReproductorSesionRepiteLaTrazaYMideCadaOperacion() throws IOException {
+     Path archivo = directorio.resolve("traza.txt");
+     try (TrazaSesion traza = TrazaSesion.grabar(archivo)) {
+         String posicion = String.valueOf(underPressure.getId());
+         traza.registrar(TrazaSesion.Operacion.FALTANTES_CANCION, posicion, "Under Pressure");
+         traza.registrar(TrazaSesion.Operacion.CONTRATAR_CANCION, posicion, "Under Pressure");
+         traza.registrar(TrazaSesion.Operacion.QUITAR_CONTRATO, String.valueOf(annieLennox.getId()), "Annie Lennox",
+             posicion, "Under Pressure", "voz principal");
+         traza.registrar(TrazaSesion.Operacion.CONTRATAR_CANCION, posicion, "Cancion\tinexistente");
+         traza.registrar(TrazaSesion.Operacion.FALTANTES_RECITAL);
+     }
+     List<TrazaSesion.Paso> pasos = TrazaSesion.leer(archivo);
+     assertEquals(5, pasos.size());
+     assertEquals("Cancion\tinexistente", pasos.get(3).getArgumento(1));
+
+     ReproductorSesion reproductor = new ReproductorSesion(recital);
+     Map<TrazaSesion.Operacion, ReproductorSesion.Latencias> latencias = reproductor.reproducir(pasos);
+
+     assertEquals(1, reproductor.getPasosOmitidos());
+     assertEquals(1, latencias.get(TrazaSesion.Operacion.CONTRATAR_CANCION).getCantidad());
+     assertEquals(1, latencias.get(TrazaSesion.Operacion.QUITAR_CONTRATO).getCantidad());
+     assertTrue(latencias.get(TrazaSesion.Operacion.FALTANTES_RECITAL).percentil(99) > 0);
+     // Annie Lennox se contrató y después se le quitó el contrato
+     assertEquals(0, recital.getCancionesAsignadas(annieLennox));
+     assertEquals(1, recital.getRolesFaltantesCancion(underPressure).get("voz principal"));
+
+     // Con titulos repetidos se repite la cancion de la posicion grabada, no la primera
+     Recital intros = new Recital(
+         Arrays.asList(new Cancion("Intro", Arrays.asList("piano")), new Cancion("Intro", Arrays.asList("piano"))),
+         new ArrayList<>(), Arrays.asList(new ArtistaExterno("Keith", Arrays.asList("piano"), new ArrayList<>(), 100, 2)));
+     new ReproductorSesion(intros).reproducir(Arrays.asList(
+         new TrazaSesion.Paso(TrazaSesion.Operacion.CONTRATAR_CANCION, Arrays.asList("1", "Intro"))));
+     assertTrue(intros.getRolesFaltantesCancion(intros.getSetlist().get(0)).containsKey("piano"));
+     assertTrue(intros.getRolesFaltantesCancion(intros.getSetlist().get(1)).isEmpty());
+ }
+
+ @Test
+ public void testCargarDatosLeeUtf8EIgnoraCamposDesconocidos() throws IOException {
+     Path artistas = directorio.resolve("artistas.json");
+     Path canciones = directorio.resolve("recital.json");
+     Path base = directorio.resolve("artistas-discografica.json");
+     Files.writeString(artistas, "[{\"nombre\": \"Roger Taylor\", \"roles\": [\"batería\"], \"bandas\": [\"Queen\"], \"costo\": 0, \"maxCanciones\": 100},"
+         + " {\"nombre\": \"Björk\", \"apodo\": {\"x\": [1, 2]}, \"roles\": [\"voz principal\"], \"bandas\": [\"Sugarcubes\"],"
+         + " \"costo\": 1250.5, \"maxCanciones\": 2}]", StandardCharsets.UTF_8);
+     Files.writeString(canciones, "[{\"titulo\": \"Jóga\", \"rolesRequeridos\": [\"voz principal\", \"batería\"], \"duracion\": 305}]",
+         StandardCharsets.UTF_8);
+     Files.writeString(base, "[\"Roger Taylor\"]", StandardCharsets.UTF_8);
+
+     Recital cargado = CargarDatos.cargarRecitalDesdeArchivos(artistas.toString(), canciones.toString(), base.toString());
+
+     assertEquals(1, cargado.getArtistasBase().size());
+     assertEquals(1, cargado.getArtistasCandidatos().size());
+     ArtistaExterno bjork = cargado.getArtistasCandidatos().get(0);
+     assertEquals("Björk", bjork.getNombre());
+     assertEquals(1250.5, bjork.getCostoContratacion());
+     assertEquals("Jóga", cargado.getSetlist().get(0).getTitulo());
+     // La batería la cubre el artista base; falta solo la voz
+     assertEquals(Map.of("voz principal", 1), cargado.getRolesFaltantesCancion(cargado.getSetlist().get(0)));
+ }
+
+ @Test
+ public void testCargarDatosEnParaleloInformaElArchivoQueFalta() throws IOException {
+     Path[] rutas = new GeneradorCatalogo(50, 10, 3L).escribirJson(directorio);
+     Files.delete(rutas[2]);
+
+     // El error de lectura de un hilo llega como IOException, igual que en la carga secuencial
+     assertThrows(IOException.class, () ->
+         CargarDatos.cargarRecitalDesdeArchivos(rutas[0].toString(), rutas[1].toString(), rutas[2].toString()));
+
+     Files.writeString(rutas[2], "[\"Artista base 0\"]");
+     Recital cargado = CargarDatos.cargarRecitalDesdeArchivos(rutas[0].toString(), rutas[1].toString(), rutas[2].toString());
+     assertEquals(1, cargado.getArtistasBase().size());
+     assertEquals(49, cargado.getArtistasCandidatos().size());
+     assertEquals(10, cargado.getSetlist().size());
+ }
+
+ @Test
+ public void testCargarDatosCsvArmaElMismoRecitalQueElJson() throws IOException {
+     GeneradorCatalogo generador = new GeneradorCatalogo(300, 80, 11L).conFraccionBase(0.05);
+     Path[] json = generador.escribirJson(directorio);
+     Recital desdeJson = CargarDatos.cargarRecitalDesdeArchivos(json[0].toString(), json[1].toString(), json[2].toString());
+
+     // Pasamos el mismo catalogo a TSV (artistas y canciones) y CSV (discografica)
+     List<String> artistas = new ArrayList<>(List.of("nombre\troles\tbandas\tcosto\tmaxCanciones"));
+     List<String> base = new ArrayList<>(List.of("nombre"));
+     for (ArtistaBase artista : desdeJson.getArtistasBase()) {
+         artistas.add(artista.getNombre() + "\t" + String.join("|", artista.getRolesHistoricos()) + "\t"
+             + String.join("|", artista.getBandasHistoricas()) + "\t0\t100");
+         base.add("\"" + artista.getNombre() + "\"");
+     }
+     for (ArtistaExterno artista : desdeJson.getArtistasCandidatos()) {
+         artistas.add(artista.getNombre() + "\t" + String.join("|", artista.getRolesHistoricos()) + "\t"
+             + String.join("|", artista.getBandasHistoricas()) + "\t" + artista.getCostoBase() + "\t" + artista.getMaxCanciones());
+     }
+     List<String> canciones = new ArrayList<>(List.of("titulo\trolesRequeridos"));
+     for (Cancion cancion : desdeJson.getSetlist()) {
+         canciones.add(cancion.getTitulo() + "\t" + String.join("|", cancion.getRolesRequeridos()));
+     }
+     Path rutaArtistas = Files.write(directorio.resolve("artistas.tsv"), artistas);
+     Path rutaCanciones = Files.write(directorio.resolve("recital.tsv"), canciones);
+     Path rutaBase = Files.write(directorio.resolve("discografica.csv"), base);
+
+     // Bloques chicos para que el archivo se parta en muchos pedazos
+     Recital desdeCsv = CargarDatosCsv.cargarRecitalDesdeArchivos(rutaArtistas, rutaCanciones, rutaBase, 256);
+
+     assertEquals(desdeJson.getArtistasBase().size(), desdeCsv.getArtistasBase().size());
+     assertEquals(desdeJson.getArtistasCandidatos().size(), desdeCsv.getArtistasCandidatos().size());
+     for (int i = 0; i < desdeJson.getArtistasCandidatos().size(); i++) {
+         ArtistaExterno esperado = desdeJson.getArtistasCandidatos().get(i);
+         ArtistaExterno cargado = desdeCsv.getArtistasCandidatos().get(i);
+         assertEquals(esperado.getNombre(), cargado.getNombre());
+         assertEquals(esperado.getCostoContratacion(), cargado.getCostoContratacion());
+         assertEquals(esperado.getRolesHistoricos(), cargado.getRolesHistoricos());
+     }
+     assertEquals(desdeJson.getSetlist().size(), desdeCsv.getSetlist().size());
+     assertEquals(desdeJson.getSetlist().get(79).getTitulo(), desdeCsv.getSetlist().get(79).getTitulo());
+     assertEquals(desdeJson.getRolesFaltantesRecital(), desdeCsv.getRolesFaltantesRecital());
+
+     assertEquals(List.of("Crosby, Stills & Nash", "voz|guitarra", "", "1 \"A\""),
+         CargarDatosCsv.campos("\"Crosby, Stills & Nash\",voz|guitarra,,\"1 \"\"A\"\"\"", ','));
+ }
+
+ @Test
+ public void testCargaYExportacionConGzip() throws IOException {
+     GeneradorCatalogo generador = new GeneradorCatalogo(200, 40, 5L);
+     Path[] json = generador.escribirJson(directorio);
+     Path[] comprimidos = new Path[json.length];
+     for (int i = 0; i < json.length; i++) {
+         comprimidos[i] = directorio.resolve(json[i].getFileName() + ".gz");
+         try (Writer writer = Archivos.abrirEscritura(comprimidos[i])) {
+             writer.write(Files.readString(json[i]));
+         }
+     }
+     assertTrue(Files.size(comprimidos[0]) * 3 < Files.size(json[0]));
+
+     Recital comprimido = CargarDatos.cargarRecitalDesdeArchivos(comprimidos[0].toString(), comprimidos[1].toString(), comprimidos[2].toString());
+     Recital plano = CargarDatos.cargarRecitalDesdeArchivos(json[0].toString(), json[1].toString(), json[2].toString());
+     assertEquals(plano.getArtistasCandidatos().size(), comprimido.getArtistasCandidatos().size());
+     assertEquals(plano.getRolesFaltantesRecital(), comprimido.getRolesFaltantesRecital());
+
+     // La exportacion a .gz se lee igual que la exportacion sin comprimir
+     comprimido.intentarContratarParaRecital();
+     Path salida = directorio.resolve("recital-out.json.gz");
+     try (Writer writer = Archivos.abrirEscritura(salida)) {
+         comprimido.exportarEstado(writer);
+     }
+     StringWriter esperado = new StringWriter();
+     comprimido.exportarEstado(esperado);
+     try (BufferedReader reader = Archivos.abrirLectura(salida)) {
+         assertEquals(esperado.toString(), reader.lines().collect(Collectors.joining("\n")));
+     }
+ }
+
+ @Test
+ public void testInstantaneaCatalogoSeUsaMientrasLosJsonNoCambian() throws IOException {
+     Path[] json = new GeneradorCatalogo(300, 60, 9L).conFraccionBase(0.05).escribirJson(directorio);
+     Path instantanea = directorio.resolve("catalogo.instantanea");
+
+     // La primera vez se lee de los JSON y se escribe la instantanea
+     Recital desdeJson = InstantaneaCatalogo.cargar(json[0].toString(), json[1].toString(), json[2].toString(), instantanea);
+     assertTrue(InstantaneaCatalogo.estaVigente(instantanea, json));
+
+     Recital desdeInstantanea = InstantaneaCatalogo.leer(instantanea);
+     assertEquals(desdeJson.getArtistasBase().size(), desdeInstantanea.getArtistasBase().size());
+     assertEquals(desdeJson.getArtistasCandidatos().size(), desdeInstantanea.getArtistasCandidatos().size());
+     for (int i = 0; i < desdeJson.getArtistasCandidatos().size(); i++) {
+         ArtistaExterno esperado = desdeJson.getArtistasCandidatos().get(i);
+         ArtistaExterno leido = desdeInstantanea.getArtistasCandidatos().get(i);
+         assertEquals(esperado.getNombre(), leido.getNombre());
+         assertEquals(esperado.getCostoContratacion(), leido.getCostoContratacion());
+         assertEquals(esperado.getMaxCanciones(), leido.getMaxCanciones());
+         assertEquals(esperado.getBandasHistoricas(), leido.getBandasHistoricas());
+     }
+     assertEquals(desdeJson.getSetlist().get(59).getRolesRequeridos(), desdeInstantanea.getSetlist().get(59).getRolesRequeridos());
+     assertEquals(desdeJson.getRolesFaltantesRecital(), desdeInstantanea.getRolesFaltantesRecital());
+
+     // Si cambia un JSON, la instantanea queda vencida y se reconstruye
+     Files.writeString(json[2], "[]");
+     assertFalse(InstantaneaCatalogo.estaVigente(instantanea, json));
+     Recital reconstruido = InstantaneaCatalogo.cargar(json[0].toString(), json[1].toString(), json[2].toString(), instantanea);
+     assertEquals(0, reconstruido.getArtistasBase().size());
+     assertTrue(InstantaneaCatalogo.estaVigente(instantanea, json));
+     assertEquals(300, InstantaneaCatalogo.leer(instantanea).getArtistasCandidatos().size());
+
+     // Una instantanea danada se descarta y se vuelve a los JSON
+     Files.write(instantanea, Arrays.copyOf(Files.readAllBytes(instantanea), 200));
+     assertThrows(IOException.class, () -> InstantaneaCatalogo.leer(instantanea));
+     assertEquals(300, InstantaneaCatalogo.cargar(json[0].toString(), json[1].toString(), json[2].toString(), instantanea)
+         .getArtistasCandidatos().size());
+ }
+
+ @Test
+ public void testExportarEstadoEscribeElMismoJsonQueLosDtoDeGson() throws IOException {
+     recital.contratarParaCancion(underPressure);
+
+     // Lo que armaba antes App con DTOs y Gson: mapas en lugar de clases, mismo orden de campos
+     StringWriter exportado = new StringWriter();
+     recital.exportarEstado(exportado);
+
+     Map<String, Object> esperado = new LinkedHashMap<>();
+     // El identificador del estado es lo unico nuevo respecto de los DTO
+     esperado.put("base", JsonParser.parseString(exportado.toString()).getAsJsonObject().get("base").getAsString());
+     esperado.put("costoTotal", recital.getCostoTotalContratos());
+     List<Object> canciones = new ArrayList<>();
+     for (Cancion cancion : recital.getSetlist()) {
+         Map<String, Object> dto = new LinkedHashMap<>();
+         dto.put("titulo", cancion.getTitulo());
+         dto.put("estaCompleta", recital.estaCompleta(cancion));
+         dto.put("rolesFaltantes", recital.estaCompleta(cancion) ? null : recital.getRolesFaltantesCancion(cancion));
+         List<Object> asignados = new ArrayList<>();
+         for (Contrato contrato : recital.getContrataciones()) {
+             if (contrato.getCancion() == cancion) {
+                 Map<String, Object> contratoDto = new LinkedHashMap<>();
+                 contratoDto.put("artista", contrato.getArtista().getNombre());
+                 contratoDto.put("rol", contrato.getRolAsignado());
+                 contratoDto.put("costoPagado", contrato.getCostoPagado());
+                 asignados.add(contratoDto);
+             }
+         }
+         dto.put("artistasAsignados", asignados);
+         canciones.add(dto);
+     }
+     esperado.put("canciones", canciones);
+
+     assertEquals(new GsonBuilder().setPrettyPrinting().create().toJson(esperado), exportado.toString());
+     assertTrue(exportado.toString().contains("\"artistasAsignados\": []"));
+ }
+
+ @Test
+ public void testExportarCambiosSoloLasCancionesModificadasYCombinarlos() throws IOException {
+     PrintStream salidaOriginal = System.out;
+     System.setOut(new PrintStream(new ByteArrayOutputStream()));
+     try {
+         Recital grande = new GeneradorCatalogo(300, 80, 11L).conFraccionBase(0.02).crearRecital();
+         grande.intentarContratarParaRecital();
+         Path completa = directorio.resolve("recital-out.json");
+         try (Writer writer = Files.newBufferedWriter(completa)) {
+             grande.exportarEstado(writer);
+         }
+
+         // Sin cambios, la exportacion de cambios no trae canciones
+         StringWriter vacio = new StringWriter();
+         assertEquals(1, grande.exportarCambios(vacio));
+         assertTrue(vacio.toString().contains("\"canciones\": []"));
+
+         Contrato quitado = grande.getContrataciones().get(0);
+         long cancionesDelArtista = grande.getContratosDeArtista(quitado.getArtista()).stream().map(Contrato::getCancion).distinct().count();
+         grande.quitarTodosLosContratosDeArtista(quitado.getArtista());
+         Path segundo = directorio.resolve("recital-cambios-2.json");
+         try (Writer writer = Files.newBufferedWriter(segundo)) {
+             assertEquals(2, grande.exportarCambios(writer));
+         }
+         long cancionesEnCambios = Files.readAllLines(segundo).stream().filter(l -> l.contains("\"posicion\"")).count();
+         assertEquals(cancionesDelArtista, cancionesEnCambios);
+
+         grande.contratarParaCancion(quitado.getCancion());
+         Path tercero = directorio.resolve("recital-cambios-3.json");
+         try (Writer writer = Files.newBufferedWriter(tercero)) {
+             grande.exportarCambios(writer);
+         }
+         Path primero = directorio.resolve("recital-cambios-1.json");
+         Files.writeString(primero, vacio.toString());
+
+         // Combinar da lo mismo que una exportacion completa de ahora
+         StringWriter combinada = new StringWriter();
+         CombinarExportaciones.combinar(completa, Arrays.asList(tercero, primero, segundo), combinada);
+         StringWriter actual = new StringWriter();
+         grande.exportarEstado(actual);
+         assertEquals(actual.toString(), combinada.toString());
+         assertEquals(0, grande.getSecuenciaExportacion());
+
+         // Si falta una secuencia no se combina
+         assertThrows(IOException.class, () -> CombinarExportaciones.combinar(completa, Arrays.asList(primero, tercero), new StringWriter()));
+
+         // Ni con una exportacion completa distinta de la que parten los cambios
+         Path otra = directorio.resolve("recital-otro.json");
+         Files.writeString(otra, actual.toString());
+         assertThrows(IOException.class, () -> CombinarExportaciones.combinar(otra, Arrays.asList(primero, segundo, tercero), new StringWriter()));
+     } finally {
+         System.setOut(salidaOriginal);
+     }
+ }
+
+ @Test
+ public void testExportarCambiosSigueLaCadenaDeUnaSesionAnterior() throws IOException {
+     PrintStream salidaOriginal = System.out;
+     System.setOut(new PrintStream(new ByteArrayOutputStream()));
+     try {
+         GeneradorCatalogo generador = new GeneradorCatalogo(200, 40, 17L).conFraccionBase(0.02);
+         Recital anterior = generador.crearRecital();
+         anterior.intentarContratarParaRecital();
+         Path completa = directorio.resolve("recital-out.json");
+         try (Writer writer = Files.newBufferedWriter(completa)) {
+             anterior.exportarEstado(writer);
+         }
+         anterior.quitarTodosLosContratosDeArtista(anterior.getContrataciones().get(0).getArtista());
+         Path primero = directorio.resolve("recital-cambios-1.json");
+         try (Writer writer = Files.newBufferedWriter(primero)) {
+             anterior.exportarCambios(writer);
+         }
+
+         // Otra sesion con los mismos contratos (como si los hubiera recuperado del diario)
+         Recital nueva = generador.crearRecital();
+         nueva.intentarContratarParaRecital();
+         nueva.quitarTodosLosContratosDeArtista(nueva.getContrataciones().get(0).getArtista());
+         nueva.contratarParaCancion(nueva.getSetlist().get(0));
+         assertFalse(nueva.hayExportacionCompleta());
+         assertThrows(IllegalStateException.class, () -> nueva.exportarCambios(new StringWriter()));
+
+         assertEquals(null, CombinarExportaciones.leerCadena(directorio.resolve("no-existe.json"), new ArrayList<>()));
+         long[] cadena = CombinarExportaciones.leerCadena(completa, Arrays.asList(primero));
+         assertEquals(1L, cadena[1]);
+         nueva.retomarExportaciones(cadena[0], cadena[1]);
+         Path segundo = directorio.resolve("recital-cambios-2.json");
+         try (Writer writer = Files.newBufferedWriter(segundo)) {
+             assertEquals(2, nueva.exportarCambios(writer));
+         }
+
+         StringWriter combinada = new StringWriter();
+         CombinarExportaciones.combinar(completa, Arrays.asList(primero, segundo), combinada);
+         StringWriter actual = new StringWriter();
+         nueva.exportarEstado(actual);
+         assertEquals(actual.toString(), combinada.toString());
+     } finally {
+         System.setOut(salidaOriginal);
+     }
+ }
+
+ @Test
+ public void testExportarCambiosNoArrastraErrorDeRedondeoEnElCostoTotal() throws IOException {
+     Cancion trio = new Cancion("Trio", Arrays.asList("flauta", "oboe", "fagot"));
+     List<ArtistaExterno> vientos = new ArrayList<>(Arrays.asList(
+         new ArtistaExterno("Flautista", Arrays.asList("flauta"), Arrays.asList("Solo"), 0.1, 1),
+         new ArtistaExterno("Oboista", Arrays.asList("oboe"), Arrays.asList("Solo"), 0.2, 1),
+         new ArtistaExterno("Fagotista", Arrays.asList("fagot"), Arrays.asList("Solo"), 0.7, 1)));
+     Recital local = new Recital(Arrays.asList(trio), new ArrayList<>(), vientos);
+     local.exportarEstado(new StringWriter());
+
+     // Contratar y quitar a los tres deja el costo exactamente en 0
+     local.contratarParaCancion(trio);
+     for (ArtistaExterno artista : vientos) {
+         local.quitarTodosLosContratosDeArtista(artista);
+     }
+     StringWriter cambios = new StringWriter();
+     local.exportarCambios(cambios);
+     assertEquals(0.0, JsonParser.parseString(cambios.toString()).getAsJsonObject().get("costoTotal").getAsDouble());
+     // Sin contratos, el estado vuelve a ser el de la exportacion completa
+     assertEquals(JsonParser.parseString(cambios.toString()).getAsJsonObject().get("base"),
+         JsonParser.parseString(cambios.toString()).getAsJsonObject().get("estado"));
+ }
+
+ // Contratos del recital como texto, para comparar dos recitales distintos
+ private static List<String> contratosComoTexto(Recital r) {
+     return r.getContrataciones().stream()
+         .map(c -> c.getArtista().getNombre() + "|" + c.getCancion().getTitulo() + "|" + c.getRolAsignado() + "|" + c.getCostoPagado())
+         .sorted()
+         .collect(Collectors.toList());
+ }
+
+ @Test
+ public void testDiarioOperacionesRecuperaLaSesionTrasCompactarYConUnaLineaCortada() throws IOException {
+     GeneradorCatalogo generador = new GeneradorCatalogo(200, 40, 5L).conFraccionBase(0.05);
+
+     Recital original = generador.crearRecital();
+     DiarioOperaciones diario = DiarioOperaciones.abrir(original, directorio, 50);
+     original.setEventos(diario);
+     ArtistaExterno entrenado = original.getArtistasCandidatos().get(0);
+     original.entrenarArtista(entrenado.getNombre(), "rol de prueba");
+     original.contratarParaRecital();
+     assertTrue(original.getContrataciones().size() > 50);
+     // contratarParaRecital llama a vaciar: con mas de 50 registros ya se compacto
+     assertTrue(Files.exists(directorio.resolve(DiarioOperaciones.ARCHIVO_CONTROL)));
+     assertEquals(0, Files.size(directorio.resolve(DiarioOperaciones.ARCHIVO_DIARIO)));
+
+     Contrato quitado = original.getContrataciones().get(3);
+     original.quitarTodosLosContratosDeArtista(quitado.getArtista());
+     original.contratarParaCancion(quitado.getCancion());
+     diario.close();
+
+     // Una caida a mitad de una escritura deja una linea sin terminar
+     Files.write(directorio.resolve(DiarioOperaciones.ARCHIVO_DIARIO), "1a2b\t999\tBAJA\tArt".getBytes(StandardCharsets.UTF_8),
+         StandardOpenOption.APPEND);
+
+     Recital recuperado = generador.crearRecital();
+     DiarioOperaciones reabierto = DiarioOperaciones.abrir(recuperado, directorio, 50);
+     assertEquals(0, reabierto.getRegistrosOmitidos());
+     assertEquals(contratosComoTexto(original), contratosComoTexto(recuperado));
+     assertEquals(original.getRolesFaltantesRecital(), recuperado.getRolesFaltantesRecital());
+     ArtistaExterno entrenadoRecuperado = recuperado.getArtistasCandidatos().get(0);
+     assertTrue(entrenadoRecuperado.getRolesHistoricos().contains("rol de prueba"));
+     assertEquals(entrenado.getCostoContratacion(), entrenadoRecuperado.getCostoContratacion());
+     // La linea cortada se quito del archivo y lo que se grabe despues queda legible
+     assertFalse(new String(Files.readAllBytes(directorio.resolve(DiarioOperaciones.ARCHIVO_DIARIO)), StandardCharsets.UTF_8).contains("999"));
+     reabierto.close();
+ }
+
+ @Test
+ public void testDiarioOperacionesUsaPosicionesValidaYRechazaOtroCatalogo() throws IOException {
+     // Dos canciones con el mismo titulo: el diario las distingue por posicion
+     DoubleFunction<Recital> crear = costo -> new Recital(
+         Arrays.asList(new Cancion("Intro", Arrays.asList("piano")), new Cancion("Intro", Arrays.asList("piano"))),
+         new ArrayList<>(),
+         new ArrayList<>(Arrays.asList(new ArtistaExterno("Keith", Arrays.asList("piano"), Arrays.asList("Solo"), costo, 1))));
+
+     Recital original = crear.apply(100.0);
+     DiarioOperaciones diario = DiarioOperaciones.abrir(original, directorio);
+     original.setEventos(diario);
+     original.contratarParaCancion(original.getSetlist().get(1));
+     diario.close();
+
+     // Un registro repetido no puede pasar por encima de la capacidad ni duplicar el contrato
+     Path rutaDiario = directorio.resolve(DiarioOperaciones.ARCHIVO_DIARIO);
+     List<String> lineas = Files.readAllLines(rutaDiario, StandardCharsets.UTF_8);
+     assertEquals(1, lineas.size());
+     Files.write(rutaDiario, lineas, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+     Recital recuperado = crear.apply(100.0);
+     DiarioOperaciones reabierto = DiarioOperaciones.abrir(recuperado, directorio);
+     assertEquals(1, reabierto.getRegistrosRecuperados());
+     assertEquals(1, reabierto.getRegistrosOmitidos());
+     assertEquals(1, recuperado.getContrataciones().size());
+     assertTrue(recuperado.getContrataciones().get(0).getCancion() == recuperado.getSetlist().get(1));
+     assertFalse(recuperado.estaCompleta(recuperado.getSetlist().get(0)));
+     reabierto.close();
+
+     // Con otro catalogo (otro costo) el diario no se repite
+     assertThrows(IOException.class, () -> DiarioOperaciones.abrir(crear.apply(200.0), directorio));
+ }
+
+ @Test
+ public void testContratarNoDependeDelOrdenDeLosRoles() throws IOException {
+     // Los roles de cada recital se internan en orden distinto: primero voz y
+     // despues guitarra, o al reves. El greedy los cubre siempre por nombre.
+     TablaSimbolos.ROLES.getId("voz (orden a)");
+     TablaSimbolos.ROLES.getId("guitarra (orden a)");
+     TablaSimbolos.ROLES.getId("guitarra (orden b)");
+     TablaSimbolos.ROLES.getId("voz (orden b)");
+     for (String orden : Arrays.asList("a", "b")) {
+         String voz = "voz (orden " + orden + ")";
+         String guitarra = "guitarra (orden " + orden + ")";
+         Cancion cancion = new Cancion("Dueto", Arrays.asList(voz, guitarra));
+         Recital local = new Recital(Arrays.asList(cancion), new ArrayList<>(), Arrays.asList(
+             new ArtistaExterno("X", Arrays.asList(voz, guitarra), new ArrayList<>(), 10, 5),
+             new ArtistaExterno("Y", Arrays.asList(voz), new ArrayList<>(), 20, 5),
+             new ArtistaExterno("Z", Arrays.asList(guitarra), new ArrayList<>(), 100, 5)));
+         local.intentarContratarParaCancion(cancion);
+         assertEquals(30.0, local.getCostoTotalContratos());
+     }
+
+     // El mismo catalogo cargado varias veces da siempre los mismos contratos
+     Path[] rutas = new GeneradorCatalogo(400, 60, 13L).conRoles(12, 1.0).conFraccionBase(0.02)
+         .escribirJson(directorio);
+     List<String> primeros = null;
+     for (int vez = 0; vez < 4; vez++) {
+         Recital cargado = CargarDatos.cargarRecitalDesdeArchivos(rutas[0].toString(), rutas[1].toString(), rutas[2].toString());
+         cargado.intentarContratarParaRecital();
+         List<String> contratos = cargado.getContrataciones().stream()
+             .map(c -> c.getArtista().getNombre() + "/" + c.getCancion().getTitulo() + "/" + c.getRolAsignado())
+             .collect(Collectors.toList());
+         if (primeros == null) {
+             primeros = contratos;
+             assertFalse(primeros.isEmpty());
+         } else {
+             assertEquals(primeros, contratos);
+         }
+     }
+ }
+
+ @Test
+ public void testQuitarContratoConservaElOrdenDeLosDemas() {
+     Cancion coro = new Cancion("Coro", Arrays.asList("voz", "voz", "voz", "voz"));
+     List<ArtistaExterno> voces = new ArrayList<>();
+     for (int i = 0; i < 4; i++) {
+         voces.add(new ArtistaExterno("A" + i, Arrays.asList("voz"), new ArrayList<>(), 10 + i, 5));
+     }
+     Recital local = new Recital(Arrays.asList(coro), new ArrayList<>(), voces);
+     local.intentarContratarParaCancion(coro);
+     assertEquals(4, local.getContrataciones().size());
+
+     local.quitarContrato(local.getContrataciones().get(0));
+     List<String> nombres = local.getContrataciones().stream()
+         .map(c -> c.getArtista().getNombre()).collect(Collectors.toList());
+     assertEquals(Arrays.asList("A1", "A2", "A3"), nombres);
+
+     // Se puede volver a contratar y queda al final
+     local.intentarContratarParaCancion(coro);
+     nombres = local.getContrataciones().stream()
+         .map(c -> c.getArtista().getNombre()).collect(Collectors.toList());
+     assertEquals(Arrays.asList("A1", "A2", "A3", "A0"), nombres);
+     local.quitarContrato(local.getContrataciones().get(1));
+     assertEquals(3, local.getCancionesAsignadas(voces.get(0)) + local.getCancionesAsignadas(voces.get(1))
+         + local.getCancionesAsignadas(voces.get(2)) + local.getCancionesAsignadas(voces.get(3)));
+     assertFalse(local.getRegistroContratos().contiene(voces.get(2).getId(), coro.getId()));
+     assertTrue(local.getRegistroContratos().contiene(voces.get(0).getId(), coro.getId()));
+ }
+
+ @Test
+ public void testRecitalNoRenumeraObjetosDeOtroRecital() {
+     Cancion intro = new Cancion("Intro", Arrays.asList("piano"));
+     Cancion cierre = new Cancion("Cierre", Arrays.asList("piano"));
+     ArtistaExterno keith = new ArtistaExterno("Keith", Arrays.asList("piano"), new ArrayList<>(), 100, 2);
+     Recital primero = new Recital(Arrays.asList(intro, cierre), new ArrayList<>(), Arrays.asList(keith));
+
+     // En la misma posicion se puede compartir; en otra posicion no, porque el primero dejaria de encontrarlo
+     new Recital(Arrays.asList(intro), new ArrayList<>(), Arrays.asList(keith));
+     assertThrows(IllegalArgumentException.class,
+         () -> new Recital(Arrays.asList(cierre), new ArrayList<>(), Arrays.asList(keith)));
+     assertEquals(1, cierre.getId());
+     primero.contratarParaCancion(cierre);
+     assertEquals(1, primero.getCancionesAsignadas(keith));
+ }
+
  @Test
  public void testEntrenarArtistaEnRecital() {
      // Verificamos el costo original de Elton (1000)